@@ -3,6 +3,7 @@ package com.arogyasakhi;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,6 +28,18 @@ public class ArogyaSakhiApplication implements CommandLineRunner {
     
     @Value("${gemini.api.key}")
     private String geminiApiKey;
+    
+    @Value("${telegram.bot.mode:polling}")
+    private String botMode;
+    
+    @Value("${telegram.webhook.url:}")
+    private String webhookUrl;
+    
+    @Value("${telegram.webhook.path:/telegram/webhook}")
+    private String webhookPath;
+    
+    @Value("${telegram.webhook.secret:}")
+    private String webhookSecret;
 
     public static void main(String[] args) {
         // Load environment variables from .env file
@@ -49,10 +62,14 @@ public class ArogyaSakhiApplication implements CommandLineRunner {
             mongoTemplate.getDb().runCommand(new org.bson.Document("ping", 1));
             System.out.println("✅ MongoDB Atlas connected successfully!");
             
-            // Register Telegram bot
-            System.out.println("🤖 Registering Telegram bot...");
-            TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
-            botsApi.registerBot(arogyaSakhiBot);
+            if ("webhook".equalsIgnoreCase(botMode)) {
+                registerWebhook();
+            } else {
+                // Register Telegram bot
+                System.out.println("🤖 Registering Telegram bot (long polling)...");
+                TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
+                botsApi.registerBot(arogyaSakhiBot);
+            }
             System.out.println("🏥 Arogya-Sakhi Bot started successfully!");
             System.out.println("🌐 Multi-language support: Hindi & English");
             System.out.println("🚀 Bot is ready to receive messages!");
@@ -66,4 +83,17 @@ public class ArogyaSakhiApplication implements CommandLineRunner {
             e.printStackTrace();
         }
     }
+    
+    private void registerWebhook() throws TelegramApiException {
+        if (webhookUrl == null || webhookUrl.isEmpty()) {
+            throw new TelegramApiException("telegram.webhook.url must be set in webhook mode");
+        }
+        String url = webhookUrl.replaceAll("/+$", "") + webhookPath;
+        System.out.println("🤖 Registering Telegram webhook: " + url);
+        
+        // TelegramWebhookController refuses to start without a secret
+        SetWebhook setWebhook = new SetWebhook(url);
+        setWebhook.setSecretToken(webhookSecret);
+        arogyaSakhiBot.execute(setWebhook);
+    }
 }
@@ -1,24 +1,48 @@
 package com.arogyasakhi;
 
 import com.arogyasakhi.model.HealthConsultation;
+import com.arogyasakhi.model.Recommendation;
+import com.arogyasakhi.model.UserContext;
 import com.arogyasakhi.model.UserProfile;
-import com.arogyasakhi.repository.HealthConsultationRepository;
+import com.arogyasakhi.service.ConsultationWriter;
+import com.arogyasakhi.service.GeminiQuotaScheduler;
 import com.arogyasakhi.service.GeminiService;
+import com.arogyasakhi.service.HealthHistoryService;
 import com.arogyasakhi.service.LanguageService;
+import com.arogyasakhi.service.OutboundMessageQueue;
+import com.arogyasakhi.service.ProfileDraftStore;
+import com.arogyasakhi.service.RecommendationRenderer;
+import com.arogyasakhi.service.SeverityDetector;
+import com.arogyasakhi.service.TelegramFormatter;
+import com.arogyasakhi.service.UpdateDispatcher;
+import com.arogyasakhi.service.UserContextLoader;
 import com.arogyasakhi.service.UserProfileService;
 import com.arogyasakhi.service.UserSessionService;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardButton;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Component
 public class ArogyaSakhiBot extends TelegramLongPollingBot {
@@ -26,8 +50,11 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
     @Value("${telegram.bot.username}")
     private String botUsername;
     
-    @Value("${telegram.bot.token}")
-    private String botToken;
+    @Value("${gemini.streaming.enabled:true}")
+    private boolean streamingEnabled;
+    
+    @Value("${gemini.streaming.edit-interval-ms:700}")
+    private long streamEditIntervalMs;
     
     @Autowired
     private UserProfileService userProfileService;
@@ -36,7 +63,7 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
     private GeminiService geminiService;
     
     @Autowired
-    private HealthConsultationRepository consultationRepository;
+    private ConsultationWriter consultationWriter;
     
     @Autowired
     private LanguageService languageService;
@@ -44,7 +71,52 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
     @Autowired
     private UserSessionService userSessionService;
     
-    private final Map<Long, UserProfile> tempProfiles = new HashMap<>();
+    @Autowired
+    private UpdateDispatcher updateDispatcher;
+    
+    @Autowired
+    private OutboundMessageQueue outboundMessageQueue;
+    
+    @Autowired
+    private TelegramFormatter telegramFormatter;
+    
+    @Autowired
+    private SeverityDetector severityDetector;
+    
+    @Autowired
+    private UserContextLoader userContextLoader;
+    
+    @Autowired
+    private ProfileDraftStore profileDraftStore;
+    
+    @Autowired
+    private HealthHistoryService healthHistoryService;
+    
+    @Autowired
+    private RecommendationRenderer recommendationRenderer;
+    
+    private static final String RECOMMENDATION_HEADER = "🩺 <b>HEALTH RECOMMENDATION</b>\n\n";
+    private static final String STREAMING_MARKER = " ⏳";
+    private static final String HISTORY_OLDER = "history:older:";
+    private static final String HISTORY_NEWER = "history:newer:";
+    private static final int HISTORY_SYMPTOMS_PREVIEW = 200;
+    
+    public ArogyaSakhiBot(@Value("${telegram.bot.api-url:https://api.telegram.org/bot}") String apiUrl,
+                          @Value("${telegram.bot.token}") String botToken) {
+        super(botOptions(apiUrl), botToken);
+    }
+    
+    private static DefaultBotOptions botOptions(String apiUrl) {
+        // Overridable so the bot can talk to a local fake Telegram server
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl(apiUrl);
+        return options;
+    }
+    
+    @PostConstruct
+    public void bindOutboundQueue() {
+        outboundMessageQueue.bind(this);
+    }
     
     @Override
     public String getBotUsername() {
@@ -52,12 +124,19 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
     }
     
     @Override
-    public String getBotToken() {
-        return botToken;
+    public void onUpdateReceived(Update update) {
+        handleUpdate(update, true);
     }
     
-    @Override
-    public void onUpdateReceived(Update update) {
+    /**
+     * Webhook entry point: hands the update to the dispatcher without waiting for capacity.
+     * Returns false if the dispatcher is at its in-flight limit and the update was not taken.
+     */
+    public boolean offerUpdate(Update update) {
+        return handleUpdate(update, false);
+    }
+    
+    private boolean handleUpdate(Update update, boolean waitForCapacity) {
         if (update.hasMessage() && update.getMessage().hasText()) {
             Long chatId = update.getMessage().getChatId();
             String messageText = update.getMessage().getText();
@@ -65,13 +144,66 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
             
             System.out.println("📨 Received message from " + firstName + " (ID: " + chatId + "): " + messageText);
             
-            handleMessage(chatId, messageText, firstName);
+            // Handle off the receiving thread: ordered per chat, parallel across chats
+            return dispatch(chatId, () -> handleMessage(chatId, messageText, firstName), waitForCapacity);
+        } else if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null) {
+            CallbackQuery callbackQuery = update.getCallbackQuery();
+            Long chatId = callbackQuery.getMessage().getChatId();
+            
+            // Same lane as messages so a page turn cannot overtake the chat's pending updates
+            return dispatch(chatId, () -> {
+                handleCallbackQuery(chatId, callbackQuery);
+                return CompletableFuture.completedFuture(null);
+            }, waitForCapacity);
         }
+        // Other update types are ignored
+        return true;
     }
     
-    private void handleMessage(Long chatId, String messageText, String firstName) {
-        String currentState = userSessionService.getUserState(chatId);
-        String userLanguage = userSessionService.getUserLanguage(chatId);
+    private boolean dispatch(long chatId, Supplier<CompletableFuture<Void>> task, boolean waitForCapacity) {
+        if (waitForCapacity) {
+            updateDispatcher.dispatchAsync(chatId, task);
+            return true;
+        }
+        return updateDispatcher.tryDispatchAsync(chatId, task);
+    }
+    
+    private void handleCallbackQuery(Long chatId, CallbackQuery callbackQuery) {
+        String data = callbackQuery.getData();
+        try {
+            if (data != null && data.startsWith(HISTORY_OLDER)) {
+                HealthHistoryService.Cursor cursor = HealthHistoryService.Cursor.parse(data.substring(HISTORY_OLDER.length()));
+                showHistoryPage(callbackQuery.getMessage(), healthHistoryService.older(chatId, cursor));
+            } else if (data != null && data.startsWith(HISTORY_NEWER)) {
+                HealthHistoryService.Cursor cursor = HealthHistoryService.Cursor.parse(data.substring(HISTORY_NEWER.length()));
+                showHistoryPage(callbackQuery.getMessage(), healthHistoryService.newer(chatId, cursor));
+            } else {
+                System.err.println("⚠️ Unknown callback data from user " + chatId + ": " + data);
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Failed to handle callback query for user " + chatId + ": " + e.getMessage());
+        } finally {
+            // Always answer, otherwise the button keeps its loading indicator
+            outboundMessageQueue.answerCallback(chatId, new AnswerCallbackQuery(callbackQuery.getId()));
+        }
+    }
+    
+    /**
+     * Handles one message. Completes when the chat may move on to its next update; most
+     * branches finish synchronously, consultations complete when Gemini has answered.
+     */
+    private CompletableFuture<Void> handleMessage(Long chatId, String messageText, String firstName) {
+        // Session and profile in one non-blocking round-trip; handlers below take them from the context
+        return userContextLoader.loadAsync(chatId)
+                .publishOn(Schedulers.boundedElastic())
+                .toFuture()
+                .thenCompose(context -> handleMessage(context, messageText, firstName));
+    }
+    
+    private CompletableFuture<Void> handleMessage(UserContext context, String messageText, String firstName) {
+        Long chatId = context.getChatId();
+        String currentState = context.getState();
+        String userLanguage = context.getLanguage();
         
         System.out.println("🔄 Processing message - State: " + currentState + ", Language: " + userLanguage);
         
@@ -81,38 +213,38 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
                 break;
             case "🏥 Health Consultation":
             case "🏥 स्वास्थ्य परामर्श":
-                startHealthConsultation(chatId);
+                startHealthConsultation(context);
                 break;
             case "👤 My Profile":
             case "👤 मेरी प्रोफाइल":
-                showUserProfile(chatId);
+                showUserProfile(context);
                 break;
             case "📝 Update Profile":
             case "📝 प्रोफाइल अपडेट करें":
-                startProfileUpdate(chatId);
+                startProfileUpdate(context);
                 break;
             case "📊 Health History":
             case "📊 स्वास्थ्य इतिहास":
-                showHealthHistory(chatId);
+                showHealthHistory(context);
                 break;
             case "ℹ️ Help":
             case "ℹ️ सहायता":
-                showHelp(chatId);
+                showHelp(context);
                 break;
             case "🌐 Language":
             case "🌐 भाषा":
                 showLanguageSelection(chatId);
                 break;
             case "🇺🇸 English":
-                setUserLanguage(chatId, "en");
+                setUserLanguage(context, "en");
                 break;
             case "🇮🇳 हिंदी":
-                setUserLanguage(chatId, "hi");
+                setUserLanguage(context, "hi");
                 break;
             default:
-                handleStateBasedMessage(chatId, messageText, currentState);
-                break;
+                return handleStateBasedMessage(context, messageText, currentState);
         }
+        return CompletableFuture.completedFuture(null);
     }
     
     private void handleStartCommand(Long chatId, String firstName) {
@@ -136,27 +268,26 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
     }
     
     private void showLanguageSelection(Long chatId) {
-        String userLanguage = userSessionService.getUserLanguage(chatId);
-        String message = languageService.getMessage("welcome", userLanguage, "");
         sendMessageWithKeyboard(chatId, "Choose your language / भाषा चुनें:", getLanguageKeyboard());
     }
     
-    private void setUserLanguage(Long chatId, String language) {
+    private void setUserLanguage(UserContext context, String language) {
+        Long chatId = context.getChatId();
         userSessionService.updateUserLanguage(chatId, language);
         String message = languageService.getMessage("language_selected", language);
         sendMessageWithKeyboard(chatId, message, getMainKeyboard(language));
         
         // Check if user profile exists
-        UserProfile profile = userProfileService.getUserProfile(chatId);
-        if (!userProfileService.isProfileComplete(profile)) {
+        if (!userProfileService.isProfileComplete(context.getProfile())) {
             String incompleteMessage = languageService.getMessage("profile_incomplete", language);
             sendMessage(chatId, incompleteMessage);
         }
     }
     
-    private void startHealthConsultation(Long chatId) {
-        String userLanguage = userSessionService.getUserLanguage(chatId);
-        UserProfile profile = userProfileService.getUserProfile(chatId);
+    private void startHealthConsultation(UserContext context) {
+        Long chatId = context.getChatId();
+        String userLanguage = context.getLanguage();
+        UserProfile profile = context.getProfile();
         
         System.out.println("🩺 Starting health consultation for user: " + chatId);
         
@@ -171,102 +302,154 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
         sendMessage(chatId, message);
     }
     
-    private void startProfileUpdate(Long chatId) {
-        String userLanguage = userSessionService.getUserLanguage(chatId);
-        UserProfile profile = userProfileService.getUserProfile(chatId);
-        tempProfiles.put(chatId, profile);
+    private void startProfileUpdate(UserContext context) {
+        Long chatId = context.getChatId();
+        String userLanguage = context.getLanguage();
+        UserProfile profile = context.getProfile();
+        profileDraftStore.put(chatId, profile);
         userSessionService.updateUserState(chatId, "PROFILE_NAME");
         
         String message = languageService.getMessage("profile_setup", userLanguage);
         sendMessage(chatId, message);
     }
     
-    private void handleStateBasedMessage(Long chatId, String messageText, String currentState) {
+    /**
+     * Returns the chat's profile draft. If it has expired (or was lost), the wizard is reset
+     * and the user is asked to start the profile update again.
+     */
+    private UserProfile profileDraft(Long chatId, String userLanguage) {
+        UserProfile profile = profileDraftStore.get(chatId);
+        if (profile == null) {
+            userSessionService.updateUserState(chatId, null);
+            String message = languageService.getMessage("profile_draft_expired", userLanguage);
+            sendMessageWithKeyboard(chatId, message, getMainKeyboard(userLanguage));
+        }
+        return profile;
+    }
+    
+    private CompletableFuture<Void> handleStateBasedMessage(UserContext context, String messageText, String currentState) {
+        Long chatId = context.getChatId();
         System.out.println("🔄 Handling state-based message - State: " + currentState);
         
         if (currentState == null) {
-            String userLanguage = userSessionService.getUserLanguage(chatId);
+            String userLanguage = context.getLanguage();
             sendMessage(chatId, "I didn't understand that. Please use the menu options or type /start to begin.");
-            return;
+            return CompletableFuture.completedFuture(null);
         }
         
         switch (currentState) {
             case "AWAITING_SYMPTOMS":
-                handleSymptomsInput(chatId, messageText);
-                break;
+                return handleSymptomsInput(context, messageText);
             case "PROFILE_NAME":
-                handleNameInput(chatId, messageText);
+                handleNameInput(context, messageText);
                 break;
             case "PROFILE_AGE":
-                handleAgeInput(chatId, messageText);
+                handleAgeInput(context, messageText);
                 break;
             case "PROFILE_GENDER":
-                handleGenderInput(chatId, messageText);
+                handleGenderInput(context, messageText);
                 break;
             case "PROFILE_WEIGHT":
-                handleWeightInput(chatId, messageText);
+                handleWeightInput(context, messageText);
                 break;
             case "PROFILE_HEIGHT":
-                handleHeightInput(chatId, messageText);
+                handleHeightInput(context, messageText);
                 break;
             case "PROFILE_BLOOD_GROUP":
-                handleBloodGroupInput(chatId, messageText);
+                handleBloodGroupInput(context, messageText);
                 break;
             case "PROFILE_ALLERGIES":
-                handleAllergiesInput(chatId, messageText);
+                handleAllergiesInput(context, messageText);
                 break;
             case "PROFILE_DISEASES":
-                handleDiseasesInput(chatId, messageText);
+                handleDiseasesInput(context, messageText);
                 break;
             case "PROFILE_MEDICATIONS":
-                handleMedicationsInput(chatId, messageText);
+                handleMedicationsInput(context, messageText);
                 break;
             case "PROFILE_EMERGENCY":
-                handleEmergencyContactInput(chatId, messageText);
+                handleEmergencyContactInput(context, messageText);
                 break;
             default:
-                String userLanguage = userSessionService.getUserLanguage(chatId);
+                String userLanguage = context.getLanguage();
                 sendMessage(chatId, "I didn't understand that. Please use the menu options or type /start to begin.");
                 break;
         }
+        return CompletableFuture.completedFuture(null);
     }
     
-    private void handleSymptomsInput(Long chatId, String symptoms) {
-        String userLanguage = userSessionService.getUserLanguage(chatId);
+    private CompletableFuture<Void> handleSymptomsInput(UserContext context, String symptoms) {
+        Long chatId = context.getChatId();
+        String userLanguage = context.getLanguage();
         String analyzingMessage = languageService.getMessage("analyzing_symptoms", userLanguage);
-        sendMessage(chatId, analyzingMessage);
         
         System.out.println("🔍 Analyzing symptoms for user: " + chatId);
         
-        UserProfile profile = userProfileService.getUserProfile(chatId);
-        String recommendation = geminiService.getHealthRecommendation(symptoms, profile, userLanguage);
+        UserProfile profile = context.getProfile();
+        Mono<Recommendation> recommendation;
+        if (isStreaming()) {
+            // The placeholder is edited as text arrives, so the recommendation is already on screen
+            recommendation = streamRecommendation(chatId, symptoms, profile, userLanguage, analyzingMessage)
+                    .map(Recommendation::unstructured);
+        } else if (geminiService.isStructuredOutputEnabled()) {
+            sendMessage(chatId, analyzingMessage);
+            recommendation = geminiService.recommendStructuredAsync(symptoms, profile, userLanguage, queueNotifier(chatId, userLanguage));
+        } else {
+            sendMessage(chatId, analyzingMessage);
+            recommendation = geminiService.recommendAsync(symptoms, profile, userLanguage, queueNotifier(chatId, userLanguage))
+                    .map(Recommendation::unstructured);
+        }
         
+        // No thread waits for Gemini; persistence still uses blocking repositories, so hop off the event loop
+        return recommendation
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(result -> completeConsultation(chatId, symptoms, result, userLanguage))
+                .then()
+                .toFuture();
+    }
+    
+    /**
+     * Structured (JSON) answers cannot be shown while they stream, so that mode always uses
+     * the single-response call.
+     */
+    private boolean isStreaming() {
+        return streamingEnabled && !geminiService.isStructuredOutputEnabled();
+    }
+    
+    private void completeConsultation(Long chatId, String symptoms, Recommendation recommendation, String userLanguage) {
         // Save consultation
         HealthConsultation consultation = new HealthConsultation(chatId, symptoms);
-        consultation.setAiRecommendation(recommendation);
-        
-        // Determine if doctor is recommended based on keywords
-        String lowerRecommendation = recommendation.toLowerCase();
-        boolean doctorRecommended = lowerRecommendation.contains("doctor") || 
-                                   lowerRecommendation.contains("emergency") ||
-                                   lowerRecommendation.contains("hospital") ||
-                                   lowerRecommendation.contains("urgent") ||
-                                   lowerRecommendation.contains("डॉक्टर") ||
-                                   lowerRecommendation.contains("आपातकाल") ||
-                                   lowerRecommendation.contains("अस्पताल");
+        consultation.setAiRecommendation(recommendation.getText());
         
+        boolean doctorRecommended;
+        if (recommendation.isStructured()) {
+            // Structured answers carry severity and referral as fields, so nothing has to be scanned
+            consultation.setSeverity(recommendation.getSeverity());
+            consultation.setHomeRemedies(recommendation.getHomeRemedies());
+            consultation.setOtcMedications(recommendation.getOtcMedications());
+            consultation.setWarningSigns(recommendation.getWarningSigns());
+            consultation.setWhenToConsultDoctor(recommendation.getWhenToConsultDoctor());
+            doctorRecommended = recommendation.isDoctorRecommended() || recommendation.isUrgent();
+            System.out.println("🔎 Severity: " + recommendation.getSeverity() + ", doctor recommended: " + doctorRecommended);
+        } else {
+            // Severity and doctor referral come from one pass of the keyword automaton
+            SeverityDetector.Detection detection = severityDetector.detect(recommendation.getText());
+            doctorRecommended = detection.isDoctorRecommended();
+            if (detection.getSeverity() != null) {
+                consultation.setSeverity(detection.getSeverity().value());
+            }
+            System.out.println("🔎 Severity: " + detection.getSeverity() + ", doctor recommended: " + doctorRecommended
+                    + ", evidence: " + detection.getEvidence());
+        }
         consultation.setDoctorRecommended(doctorRecommended);
         
-        try {
-            consultationRepository.save(consultation);
-            System.out.println("✅ Consultation saved successfully for user: " + chatId);
-        } catch (Exception e) {
-            System.err.println("❌ Failed to save consultation: " + e.getMessage());
-            e.printStackTrace();
-        }
+        // Stored in the background (batched, logged locally while MongoDB is unreachable)
+        consultationWriter.submit(consultation);
         
         // Send recommendation
-        sendMessage(chatId, "🩺 HEALTH RECOMMENDATION\n\n" + recommendation);
+        if (!isStreaming()) {
+            showFinalRecommendation(chatId, null, recommendation.getText());
+        }
         
         if (doctorRecommended) {
             String doctorMessage = languageService.getMessage("doctor_recommendation", userLanguage);
@@ -278,22 +461,94 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
         sendMessageWithKeyboard(chatId, anythingElseMessage, getMainKeyboard(userLanguage));
     }
     
-    private void handleNameInput(Long chatId, String name) {
-        String userLanguage = userSessionService.getUserLanguage(chatId);
-        UserProfile profile = tempProfiles.get(chatId);
+    /**
+     * Sends the placeholder, then edits it with the partial recommendation while Gemini streams
+     * (at most once per edit interval) and finally with the complete text, which is returned.
+     */
+    private Mono<String> streamRecommendation(Long chatId, String symptoms, UserProfile profile, String language, String placeholderText) {
+        CompletableFuture<Message> placeholder = outboundMessageQueue.sendStandalone(new SendMessage(chatId.toString(), placeholderText));
+        long editIntervalNanos = TimeUnit.MILLISECONDS.toNanos(streamEditIntervalMs);
+        long[] lastEditNanos = {System.nanoTime() - editIntervalNanos};
+        // Progress edits run when the placeholder is delivered; they must never land after the final edit
+        boolean[] finished = {false};
+        
+        return geminiService.streamHealthRecommendation(symptoms, profile, language, queueNotifier(chatId, language))
+                .doOnNext(partial -> {
+                    long now = System.nanoTime();
+                    if (now - lastEditNanos[0] >= editIntervalNanos) {
+                        lastEditNanos[0] = now;
+                        String preview = telegramFormatter.toHtmlMessages(RECOMMENDATION_HEADER, partial,
+                                TelegramFormatter.MAX_MESSAGE_LENGTH - STREAMING_MARKER.length()).get(0) + STREAMING_MARKER;
+                        placeholder.thenAccept(message -> {
+                            synchronized (finished) {
+                                if (!finished[0]) {
+                                    editMessage(message, preview);
+                                }
+                            }
+                        });
+                    }
+                })
+                .last("Unable to process the AI response. Please try again.")
+                .flatMap(recommendation -> Mono.fromFuture(placeholder, true)
+                        .timeout(Duration.ofSeconds(10))
+                        .map(Optional::of)
+                        .onErrorResume(e -> {
+                            System.err.println("❌ Placeholder message was not delivered to user " + chatId + ", sending recommendation instead");
+                            return Mono.just(Optional.empty());
+                        })
+                        .map(placeholderMessage -> {
+                            synchronized (finished) {
+                                finished[0] = true;
+                            }
+                            showFinalRecommendation(chatId, placeholderMessage.orElse(null), recommendation);
+                            return recommendation;
+                        }));
+    }
+    
+    /**
+     * Tells the user where they stand when their consultation has to wait for Gemini quota.
+     */
+    private GeminiQuotaScheduler.QueueListener queueNotifier(Long chatId, String language) {
+        return (position, estimatedWait) -> {
+            long seconds = Math.max(1, estimatedWait.toSeconds());
+            sendMessage(chatId, String.format(languageService.getMessage("queued_position", language), position, seconds));
+        };
+    }
+    
+    private void showFinalRecommendation(Long chatId, Message placeholderMessage, String recommendation) {
+        List<String> parts = telegramFormatter.toHtmlMessages(RECOMMENDATION_HEADER, recommendation,
+                TelegramFormatter.MAX_MESSAGE_LENGTH);
+        for (int i = 0; i < parts.size(); i++) {
+            if (i == 0 && placeholderMessage != null) {
+                editMessage(placeholderMessage, parts.get(0));
+            } else {
+                sendHtmlMessage(chatId, parts.get(i));
+            }
+        }
+    }
+    
+    private void handleNameInput(UserContext context, String name) {
+        Long chatId = context.getChatId();
+        String userLanguage = context.getLanguage();
+        UserProfile profile = profileDraft(chatId, userLanguage);
+        if (profile == null) {
+            return;
+        }
         String[] nameParts = name.trim().split(" ", 2);
         profile.setFirstName(nameParts[0]);
         if (nameParts.length > 1) {
             profile.setLastName(nameParts[1]);
         }
         
+        profileDraftStore.put(chatId, profile);
         userSessionService.updateUserState(chatId, "PROFILE_AGE");
         String message = languageService.getMessage("enter_age", userLanguage);
         sendMessage(chatId, message);
     }
     
-    private void handleAgeInput(Long chatId, String ageText) {
-        String userLanguage = userSessionService.getUserLanguage(chatId);
+    private void handleAgeInput(UserContext context, String ageText) {
+        Long chatId = context.getChatId();
+        String userLanguage = context.getLanguage();
         try {
             int age = Integer.parseInt(ageText.trim());
             if (age < 1 || age > 120) {
@@ -301,9 +556,13 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
                 return;
             }
             
-            UserProfile profile = tempProfiles.get(chatId);
+            UserProfile profile = profileDraft(chatId, userLanguage);
+            if (profile == null) {
+                return;
+            }
             profile.setAge(age);
             
+            profileDraftStore.put(chatId, profile);
             userSessionService.updateUserState(chatId, "PROFILE_GENDER");
             String message = languageService.getMessage("select_gender", userLanguage);
             sendMessage(chatId, message);
@@ -312,8 +571,9 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
         }
     }
     
-    private void handleGenderInput(Long chatId, String genderInput) {
-        String userLanguage = userSessionService.getUserLanguage(chatId);
+    private void handleGenderInput(UserContext context, String genderInput) {
+        Long chatId = context.getChatId();
+        String userLanguage = context.getLanguage();
         String gender;
         switch (genderInput.trim()) {
             case "1":
@@ -331,16 +591,21 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
                 return;
         }
         
-        UserProfile profile = tempProfiles.get(chatId);
+        UserProfile profile = profileDraft(chatId, userLanguage);
+        if (profile == null) {
+            return;
+        }
         profile.setGender(gender);
         
+        profileDraftStore.put(chatId, profile);
         userSessionService.updateUserState(chatId, "PROFILE_WEIGHT");
         String message = languageService.getMessage("enter_weight", userLanguage);
         sendMessage(chatId, message);
     }
     
-    private void handleWeightInput(Long chatId, String weightText) {
-        String userLanguage = userSessionService.getUserLanguage(chatId);
+    private void handleWeightInput(UserContext context, String weightText) {
+        Long chatId = context.getChatId();
+        String userLanguage = context.getLanguage();
         try {
             double weight = Double.parseDouble(weightText.trim());
             if (weight < 10 || weight > 300) {
@@ -348,9 +613,13 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
                 return;
             }
             
-            UserProfile profile = tempProfiles.get(chatId);
+            UserProfile profile = profileDraft(chatId, userLanguage);
+            if (profile == null) {
+                return;
+            }
             profile.setWeight(weight);
             
+            profileDraftStore.put(chatId, profile);
             userSessionService.updateUserState(chatId, "PROFILE_HEIGHT");
             String message = languageService.getMessage("enter_height", userLanguage);
             sendMessage(chatId, message);
@@ -359,8 +628,9 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
         }
     }
     
-    private void handleHeightInput(Long chatId, String heightText) {
-        String userLanguage = userSessionService.getUserLanguage(chatId);
+    private void handleHeightInput(UserContext context, String heightText) {
+        Long chatId = context.getChatId();
+        String userLanguage = context.getLanguage();
         try {
             double height = Double.parseDouble(heightText.trim());
             if (height < 50 || height > 250) {
@@ -368,9 +638,13 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
                 return;
             }
             
-            UserProfile profile = tempProfiles.get(chatId);
+            UserProfile profile = profileDraft(chatId, userLanguage);
+            if (profile == null) {
+                return;
+            }
             profile.setHeight(height);
             
+            profileDraftStore.put(chatId, profile);
             userSessionService.updateUserState(chatId, "PROFILE_BLOOD_GROUP");
             String message = languageService.getMessage("enter_blood_group", userLanguage);
             sendMessage(chatId, message);
@@ -379,63 +653,87 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
         }
     }
     
-    private void handleBloodGroupInput(Long chatId, String bloodGroup) {
-        String userLanguage = userSessionService.getUserLanguage(chatId);
-        UserProfile profile = tempProfiles.get(chatId);
+    private void handleBloodGroupInput(UserContext context, String bloodGroup) {
+        Long chatId = context.getChatId();
+        String userLanguage = context.getLanguage();
+        UserProfile profile = profileDraft(chatId, userLanguage);
+        if (profile == null) {
+            return;
+        }
         if (!bloodGroup.trim().equalsIgnoreCase("skip")) {
             profile.setBloodGroup(bloodGroup.trim().toUpperCase());
         }
         
+        profileDraftStore.put(chatId, profile);
         userSessionService.updateUserState(chatId, "PROFILE_ALLERGIES");
         String message = languageService.getMessage("enter_allergies", userLanguage);
         sendMessage(chatId, message);
     }
     
-    private void handleAllergiesInput(Long chatId, String allergiesText) {
-        String userLanguage = userSessionService.getUserLanguage(chatId);
-        UserProfile profile = tempProfiles.get(chatId);
+    private void handleAllergiesInput(UserContext context, String allergiesText) {
+        Long chatId = context.getChatId();
+        String userLanguage = context.getLanguage();
+        UserProfile profile = profileDraft(chatId, userLanguage);
+        if (profile == null) {
+            return;
+        }
         if (!allergiesText.trim().equalsIgnoreCase("none")) {
             List<String> allergies = Arrays.asList(allergiesText.split(","));
             allergies.replaceAll(String::trim);
             profile.setAllergies(allergies);
         }
         
+        profileDraftStore.put(chatId, profile);
         userSessionService.updateUserState(chatId, "PROFILE_DISEASES");
         String message = languageService.getMessage("enter_diseases", userLanguage);
         sendMessage(chatId, message);
     }
     
-    private void handleDiseasesInput(Long chatId, String diseasesText) {
-        String userLanguage = userSessionService.getUserLanguage(chatId);
-        UserProfile profile = tempProfiles.get(chatId);
+    private void handleDiseasesInput(UserContext context, String diseasesText) {
+        Long chatId = context.getChatId();
+        String userLanguage = context.getLanguage();
+        UserProfile profile = profileDraft(chatId, userLanguage);
+        if (profile == null) {
+            return;
+        }
         if (!diseasesText.trim().equalsIgnoreCase("none")) {
             List<String> diseases = Arrays.asList(diseasesText.split(","));
             diseases.replaceAll(String::trim);
             profile.setPreviousDiseases(diseases);
         }
         
+        profileDraftStore.put(chatId, profile);
         userSessionService.updateUserState(chatId, "PROFILE_MEDICATIONS");
         String message = languageService.getMessage("enter_medications", userLanguage);
         sendMessage(chatId, message);
     }
     
-    private void handleMedicationsInput(Long chatId, String medicationsText) {
-        String userLanguage = userSessionService.getUserLanguage(chatId);
-        UserProfile profile = tempProfiles.get(chatId);
+    private void handleMedicationsInput(UserContext context, String medicationsText) {
+        Long chatId = context.getChatId();
+        String userLanguage = context.getLanguage();
+        UserProfile profile = profileDraft(chatId, userLanguage);
+        if (profile == null) {
+            return;
+        }
         if (!medicationsText.trim().equalsIgnoreCase("none")) {
             List<String> medications = Arrays.asList(medicationsText.split(","));
             medications.replaceAll(String::trim);
             profile.setCurrentMedications(medications);
         }
         
+        profileDraftStore.put(chatId, profile);
         userSessionService.updateUserState(chatId, "PROFILE_EMERGENCY");
         String message = languageService.getMessage("enter_emergency_contact", userLanguage);
         sendMessage(chatId, message);
     }
     
-    private void handleEmergencyContactInput(Long chatId, String emergencyContact) {
-        String userLanguage = userSessionService.getUserLanguage(chatId);
-        UserProfile profile = tempProfiles.get(chatId);
+    private void handleEmergencyContactInput(UserContext context, String emergencyContact) {
+        Long chatId = context.getChatId();
+        String userLanguage = context.getLanguage();
+        UserProfile profile = profileDraft(chatId, userLanguage);
+        if (profile == null) {
+            return;
+        }
         if (!emergencyContact.trim().equalsIgnoreCase("skip")) {
             profile.setEmergencyContact(emergencyContact.trim());
         }
@@ -454,7 +752,7 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
         }
         
         // Clean up
-        tempProfiles.remove(chatId);
+        profileDraftStore.remove(chatId);
         userSessionService.updateUserState(chatId, null);
         
         double bmi = profile.getBMI();
@@ -481,9 +779,10 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
         sendMessageWithKeyboard(chatId, completionMessage, getMainKeyboard(userLanguage));
     }
     
-    private void showUserProfile(Long chatId) {
-        String userLanguage = userSessionService.getUserLanguage(chatId);
-        UserProfile profile = userProfileService.getUserProfile(chatId);
+    private void showUserProfile(UserContext context) {
+        Long chatId = context.getChatId();
+        String userLanguage = context.getLanguage();
+        UserProfile profile = context.getProfile();
         
         if (!userProfileService.isProfileComplete(profile)) {
             String message = languageService.getMessage("profile_incomplete", userLanguage);
@@ -534,11 +833,12 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
         sendMessage(chatId, profileText.toString());
     }
     
-    private void showHealthHistory(Long chatId) {
-        String userLanguage = userSessionService.getUserLanguage(chatId);
-        List<HealthConsultation> consultations = consultationRepository.findByChatIdOrderByConsultationTimeDesc(chatId);
+    private void showHealthHistory(UserContext context) {
+        Long chatId = context.getChatId();
+        String userLanguage = context.getLanguage();
+        HealthHistoryService.HistoryPage page = healthHistoryService.latest(chatId);
         
-        if (consultations.isEmpty()) {
+        if (page.getConsultations().isEmpty()) {
             String message = "hi".equals(userLanguage) ? 
                 "📊 कोई स्वास्थ्य परामर्श नहीं मिला। '🏥 स्वास्थ्य परामर्श' का उपयोग करके अपना पहला परामर्श शुरू करें।" :
                 "📊 No health consultations found. Start your first consultation using '🏥 Health Consultation'.";
@@ -546,27 +846,69 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
             return;
         }
         
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId.toString());
+        message.setText(renderHistoryPage(page, userLanguage));
+        message.setReplyMarkup(historyKeyboard(page, userLanguage));
+        
+        // Standalone: the page turn buttons edit this message, so it must not be merged with others
+        outboundMessageQueue.sendStandalone(message);
+    }
+    
+    private void showHistoryPage(Message target, HealthHistoryService.HistoryPage page) {
+        String userLanguage = userSessionService.getUserLanguage(target.getChatId());
+        EditMessageText edit = new EditMessageText();
+        edit.setChatId(target.getChatId().toString());
+        edit.setMessageId(target.getMessageId());
+        edit.setText(renderHistoryPage(page, userLanguage));
+        edit.setReplyMarkup(historyKeyboard(page, userLanguage));
+        
+        outboundMessageQueue.edit(edit);
+    }
+    
+    private String renderHistoryPage(HealthHistoryService.HistoryPage page, String userLanguage) {
         StringBuilder historyText = new StringBuilder();
         historyText.append("hi".equals(userLanguage) ? "📊 आपका स्वास्थ्य इतिहास\n\n" : "📊 YOUR HEALTH HISTORY\n\n");
         
-        int count = 0;
-        for (HealthConsultation consultation : consultations) {
-            if (count >= 5) break; // Show last 5 consultations
+        for (HealthConsultation consultation : page.getConsultations()) {
+            String symptoms = consultation.getSymptoms() == null ? "" : consultation.getSymptoms();
+            if (symptoms.length() > HISTORY_SYMPTOMS_PREVIEW) {
+                symptoms = symptoms.substring(0, HISTORY_SYMPTOMS_PREVIEW) + "…";
+            }
             
             historyText.append("📅 ").append(consultation.getConsultationTime().toLocalDate()).append("\n");
-            historyText.append("hi".equals(userLanguage) ? "🔸 लक्षण: " : "🔸 Symptoms: ").append(consultation.getSymptoms()).append("\n");
+            historyText.append("hi".equals(userLanguage) ? "🔸 लक्षण: " : "🔸 Symptoms: ").append(symptoms).append("\n");
+            String severity = recommendationRenderer.severityLabel(consultation.getSeverity(), userLanguage);
+            if (severity != null) {
+                historyText.append("hi".equals(userLanguage) ? "🔍 गंभीरता: " : "🔍 Severity: ").append(severity).append("\n");
+            }
             if (consultation.isDoctorRecommended()) {
                 historyText.append("hi".equals(userLanguage) ? "⚠️ डॉक्टर परामर्श की सिफारिश की गई थी\n" : "⚠️ Doctor consultation was recommended\n");
             }
             historyText.append("\n");
-            count++;
         }
-        
-        sendMessage(chatId, historyText.toString());
+        return historyText.toString();
     }
     
-    private void showHelp(Long chatId) {
-        String userLanguage = userSessionService.getUserLanguage(chatId);
+    private InlineKeyboardMarkup historyKeyboard(HealthHistoryService.HistoryPage page, String userLanguage) {
+        List<InlineKeyboardButton> row = new ArrayList<>();
+        if (page.hasOlder()) {
+            InlineKeyboardButton older = new InlineKeyboardButton("hi".equals(userLanguage) ? "⬅️ पुराने" : "⬅️ Older");
+            older.setCallbackData(HISTORY_OLDER + page.olderCursor());
+            row.add(older);
+        }
+        if (page.hasNewer()) {
+            InlineKeyboardButton newer = new InlineKeyboardButton("hi".equals(userLanguage) ? "नए ➡️" : "Newer ➡️");
+            newer.setCallbackData(HISTORY_NEWER + page.newerCursor());
+            row.add(newer);
+        }
+        // Without a markup an edit also removes the buttons of a page that has no neighbours
+        return row.isEmpty() ? null : new InlineKeyboardMarkup(List.of(row));
+    }
+    
+    private void showHelp(UserContext context) {
+        Long chatId = context.getChatId();
+        String userLanguage = context.getLanguage();
         String helpText = "hi".equals(userLanguage) ?
             "ℹ️ आरोग्य-सखी सहायता\n\n" +
             "🏥 स्वास्थ्य परामर्श:\n" +
@@ -682,13 +1024,35 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
         message.setChatId(chatId.toString());
         message.setText(text);
         
-        try {
-            execute(message);
-            System.out.println("✅ Message sent successfully to user: " + chatId);
-        } catch (TelegramApiException e) {
-            System.err.println("❌ Failed to send message to user " + chatId + ": " + e.getMessage());
-            e.printStackTrace();
-        }
+        // Queued: rate limited, coalesced with neighbouring texts and retried off this thread
+        outboundMessageQueue.send(message).whenComplete((sent, error) -> {
+            if (error == null) {
+                System.out.println("✅ Message sent successfully to user: " + chatId);
+            }
+        });
+    }
+    
+    private void editMessage(Message target, String text) {
+        EditMessageText edit = new EditMessageText();
+        edit.setChatId(target.getChatId().toString());
+        edit.setMessageId(target.getMessageId());
+        edit.setText(text);
+        edit.setParseMode(TelegramFormatter.PARSE_MODE);
+        
+        outboundMessageQueue.edit(edit);
+    }
+    
+    private void sendHtmlMessage(Long chatId, String html) {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId.toString());
+        message.setText(html);
+        message.setParseMode(TelegramFormatter.PARSE_MODE);
+        
+        outboundMessageQueue.send(message).whenComplete((sent, error) -> {
+            if (error == null) {
+                System.out.println("✅ Message sent successfully to user: " + chatId);
+            }
+        });
     }
     
     private void sendMessageWithKeyboard(Long chatId, String text, ReplyKeyboardMarkup keyboard) {
@@ -697,12 +1061,10 @@ public class ArogyaSakhiBot extends TelegramLongPollingBot {
         message.setText(text);
         message.setReplyMarkup(keyboard);
         
-        try {
-            execute(message);
-            System.out.println("✅ Message with keyboard sent successfully to user: " + chatId);
-        } catch (TelegramApiException e) {
-            System.err.println("❌ Failed to send message with keyboard to user " + chatId + ": " + e.getMessage());
-            e.printStackTrace();
-        }
+        outboundMessageQueue.send(message).whenComplete((sent, error) -> {
+            if (error == null) {
+                System.out.println("✅ Message with keyboard sent successfully to user: " + chatId);
+            }
+        });
     }
 }
@@ -1,15 +1,27 @@
 package com.arogyasakhi.config;
 
+import com.arogyasakhi.model.HealthConsultation;
+import com.arogyasakhi.service.RecommendationCompressor;
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.config.AbstractMongoClientConfiguration;
-import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 @Configuration
@@ -18,6 +30,27 @@ public class MongoConfig extends AbstractMongoClientConfiguration {
     @Value("${spring.data.mongodb.uri}")
     private String mongoUri;
     
+    @Value("${mongo.pool.max-size:50}")
+    private int poolMaxSize;
+    
+    @Value("${mongo.pool.min-size:0}")
+    private int poolMinSize;
+    
+    @Value("${mongo.pool.max-connecting:2}")
+    private int poolMaxConnecting;
+    
+    @Value("${mongo.pool.max-wait-ms:5000}")
+    private long poolMaxWaitMs;
+    
+    @Value("${mongo.pool.max-idle-time-ms:60000}")
+    private long poolMaxIdleTimeMs;
+    
+    @Value("${mongo.network.compressors:}")
+    private String[] networkCompressorNames;
+    
+    @Autowired
+    private RecommendationCompressor recommendationCompressor;
+    
     @Override
     protected String getDatabaseName() {
         return "arogya-sakhi";
@@ -27,30 +60,104 @@ public class MongoConfig extends AbstractMongoClientConfiguration {
     @Bean
     public MongoClient mongoClient() {
         try {
-            ConnectionString connectionString = new ConnectionString(mongoUri);
-            MongoClientSettings mongoClientSettings = MongoClientSettings.builder()
-                    .applyConnectionString(connectionString)
-                    .applyToSocketSettings(builder -> 
-                        builder.connectTimeout(10, TimeUnit.SECONDS)
-                               .readTimeout(10, TimeUnit.SECONDS))
-                    .applyToClusterSettings(builder -> 
-                        builder.serverSelectionTimeout(10, TimeUnit.SECONDS))
-                    .build();
-            
-            return MongoClients.create(mongoClientSettings);
+            return MongoClients.create(clientSettings());
         } catch (Exception e) {
             System.err.println("❌ Error creating MongoDB client: " + e.getMessage());
             throw e;
         }
     }
     
+    /**
+     * Reactive Streams client for the non-blocking persistence path. It has its own connection
+     * pool, sized by the same settings as the blocking client's.
+     */
+    @Bean
+    public com.mongodb.reactivestreams.client.MongoClient reactiveMongoClient() {
+        try {
+            return com.mongodb.reactivestreams.client.MongoClients.create(clientSettings());
+        } catch (Exception e) {
+            System.err.println("❌ Error creating reactive MongoDB client: " + e.getMessage());
+            throw e;
+        }
+    }
+    
+    /**
+     * Connection, timeout and pool settings shared by both clients, so they are configured in
+     * one place.
+     */
+    private MongoClientSettings clientSettings() {
+        ConnectionString connectionString = new ConnectionString(mongoUri);
+        MongoClientSettings.Builder settings = MongoClientSettings.builder()
+                .applyConnectionString(connectionString)
+                .applyToSocketSettings(builder -> 
+                    builder.connectTimeout(10, TimeUnit.SECONDS)
+                           .readTimeout(10, TimeUnit.SECONDS))
+                .applyToClusterSettings(builder -> 
+                    builder.serverSelectionTimeout(10, TimeUnit.SECONDS))
+                .applyToConnectionPoolSettings(builder ->
+                    builder.maxSize(poolMaxSize)
+                           .minSize(poolMinSize)
+                           .maxConnecting(poolMaxConnecting)
+                           .maxWaitTime(poolMaxWaitMs, TimeUnit.MILLISECONDS)
+                           .maxConnectionIdleTime(poolMaxIdleTimeMs, TimeUnit.MILLISECONDS));
+        
+        List<MongoCompressor> compressors = networkCompressors();
+        if (!compressors.isEmpty()) {
+            // Offered in order; the server uses the first one it also supports
+            settings.compressorList(compressors);
+        }
+        return settings.build();
+    }
+    
+    private List<MongoCompressor> networkCompressors() {
+        List<MongoCompressor> compressors = new ArrayList<>();
+        for (String name : networkCompressorNames) {
+            switch (name.trim().toLowerCase()) {
+                case "zstd":
+                    compressors.add(MongoCompressor.createZstdCompressor());
+                    break;
+                case "snappy":
+                    compressors.add(MongoCompressor.createSnappyCompressor());
+                    break;
+                case "zlib":
+                    compressors.add(MongoCompressor.createZlibCompressor());
+                    break;
+                case "":
+                    break;
+                default:
+                    System.err.println("⚠️ Ignoring unknown MongoDB network compressor: " + name);
+            }
+        }
+        return compressors;
+    }
+    
     @Bean
-    public MongoTemplate mongoTemplate() {
-        return new MongoTemplate(mongoClient(), getDatabaseName());
+    public ReactiveMongoDatabaseFactory reactiveMongoDatabaseFactory() {
+        return new SimpleReactiveMongoDatabaseFactory(reactiveMongoClient(), getDatabaseName());
+    }
+    
+    @Bean
+    public ReactiveMongoTemplate reactiveMongoTemplate(MongoMappingContext mongoMappingContext, MongoCustomConversions customConversions) {
+        // Same mapping and conversions (e.g. recommendation compression) as the blocking template
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mongoMappingContext);
+        converter.setCustomConversions(customConversions);
+        converter.afterPropertiesSet();
+        return new ReactiveMongoTemplate(reactiveMongoDatabaseFactory(), converter);
+    }
+    
+    /**
+     * Stores {@code HealthConsultation.aiRecommendation} compressed when
+     * {@code consultation.compression.enabled} is set; see {@link RecommendationCompressor}.
+     */
+    @Override
+    protected void configureConverters(MongoCustomConversions.MongoConverterConfigurationAdapter adapter) {
+        adapter.configurePropertyConversions(registrar ->
+                registrar.registerConverter(HealthConsultation.class, "aiRecommendation", recommendationCompressor));
     }
     
     @Override
     protected boolean autoIndexCreation() {
-        return true;
+        // Declared indexes are created by MongoIndexVerifier once the application is ready
+        return false;
     }
 }
@@ -0,0 +1,204 @@
+package com.arogyasakhi.config;
+
+import com.arogyasakhi.model.ConsultationBucket;
+import com.arogyasakhi.model.HealthConsultation;
+import com.arogyasakhi.model.ProfileDraft;
+import com.arogyasakhi.model.UserProfile;
+import com.arogyasakhi.model.UserSession;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Creates the indexes declared on the document classes and checks that every query the
+ * repositories and services issue is served by one.
+ *
+ * Indexes are created here, once the application is up, rather than through
+ * {@link MongoConfig#autoIndexCreation()}, so an unreachable cluster or a failed index build
+ * (e.g. duplicate chat ids blocking a unique index) is reported instead of aborting startup.
+ *
+ * Each query shape is then run through {@code explain}; a winning plan containing a
+ * {@code COLLSCAN} or an in-memory {@code SORT} stage is reported. With
+ * {@code mongo.index-verification.mode=fail} such a plan stops the application; {@code off}
+ * skips the check (indexes are still created).
+ */
+@Component
+public class MongoIndexVerifier {
+    
+    private static final List<Class<?>> INDEXED_DOCUMENTS = List.of(
+            UserSession.class, UserProfile.class, HealthConsultation.class, ProfileDraft.class,
+            ConsultationBucket.class);
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Value("${mongo.index-verification.mode:warn}")
+    private String mode;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureAndVerifyIndexes() {
+        if (!ensureIndexes() || "off".equalsIgnoreCase(mode)) {
+            return;
+        }
+        
+        List<String> problems = new ArrayList<>();
+        for (QueryShape shape : queryShapes()) {
+            try {
+                String stage = findUnindexedStage(explain(shape));
+                if (stage != null) {
+                    problems.add(shape.name + " uses " + stage);
+                }
+            } catch (Exception e) {
+                System.err.println("⚠️ Could not explain query " + shape.name + ": " + e.getMessage());
+            }
+        }
+        
+        if (problems.isEmpty()) {
+            System.out.println("✅ All MongoDB queries are served by an index");
+            return;
+        }
+        for (String problem : problems) {
+            System.err.println("❌ Unindexed MongoDB query: " + problem);
+        }
+        if ("fail".equalsIgnoreCase(mode)) {
+            throw new IllegalStateException("Unindexed MongoDB queries: " + problems);
+        }
+    }
+    
+    /**
+     * Returns false if MongoDB could not be reached, in which case the remaining indexes are
+     * not attempted (each attempt would wait for the server selection timeout).
+     */
+    private boolean ensureIndexes() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        for (Class<?> documentClass : INDEXED_DOCUMENTS) {
+            IndexOperations indexOps = mongoTemplate.indexOps(documentClass);
+            for (IndexDefinition index : resolver.resolveIndexFor(documentClass)) {
+                try {
+                    indexOps.ensureIndex(index);
+                } catch (DataAccessResourceFailureException e) {
+                    System.err.println("❌ MongoDB unreachable, skipping index creation and verification: " + e.getMessage());
+                    return false;
+                } catch (Exception e) {
+                    System.err.println("❌ Failed to create index " + index.getIndexKeys().toJson()
+                            + " on " + mongoTemplate.getCollectionName(documentClass) + ": " + e.getMessage());
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * The query shapes issued against each collection, with placeholder values.
+     */
+    private List<QueryShape> queryShapes() {
+        List<QueryShape> shapes = new ArrayList<>();
+        shapes.add(new QueryShape("UserSessionRepository.findByChatId", UserSession.class,
+                new Document("chat_id", 0L), null));
+        shapes.add(new QueryShape("UserProfileRepository.findByChatId", UserProfile.class,
+                new Document("chat_id", 0L), null));
+        shapes.add(new QueryShape("UserProfileRepository.findByStatus", UserProfile.class,
+                new Document("status", UserProfile.ProfileStatus.COMPLETE.name()), null));
+        shapes.add(new QueryShape("HealthConsultationRepository.findByChatIdOrderByConsultationTimeDesc",
+                HealthConsultation.class, new Document("chat_id", 0L), new Document("consultation_time", -1)));
+        shapes.add(new QueryShape("HealthHistoryService.older", HealthConsultation.class,
+                new Document("chat_id", 0L).append("consultation_time", new Document("$lte", new Date()))
+                        .append("$or", List.of(new Document("consultation_time", new Document("$lt", new Date())),
+                                new Document("_id", new Document("$lt", new ObjectId())))),
+                new Document("consultation_time", -1).append("_id", -1)));
+        shapes.add(new QueryShape("HealthHistoryService.newer", HealthConsultation.class,
+                new Document("chat_id", 0L).append("consultation_time", new Document("$gte", new Date()))
+                        .append("$or", List.of(new Document("consultation_time", new Document("$gt", new Date())),
+                                new Document("_id", new Document("$gt", new ObjectId())))),
+                new Document("consultation_time", 1).append("_id", 1)));
+        shapes.add(new QueryShape("HealthConsultationRepository.findByDoctorRecommendedTrue",
+                HealthConsultation.class, new Document("doctor_recommended", true), null));
+        shapes.add(new QueryShape("HealthConsultationRepository.findBySeverity", HealthConsultation.class,
+                new Document("severity", "high"), null));
+        shapes.add(new QueryShape("ConsultationArchiver.archiveOlderThan", HealthConsultation.class,
+                new Document("_id", new Document("$lt", new ObjectId())), new Document("_id", 1)));
+        shapes.add(new QueryShape("HealthHistoryService.archivedBefore", ConsultationBucket.class,
+                new Document("chat_id", 0L).append("first_time", new Document("$lte", new Date())),
+                new Document("month", -1)));
+        shapes.add(new QueryShape("HealthHistoryService.archivedAfter", ConsultationBucket.class,
+                new Document("chat_id", 0L).append("last_time", new Document("$gt", new Date())),
+                new Document("month", 1)));
+        shapes.add(new QueryShape("ProfileDraftStore.get", ProfileDraft.class,
+                new Document("chat_id", 0L), null));
+        return shapes;
+    }
+    
+    private Document explain(QueryShape shape) {
+        Document find = new Document("find", mongoTemplate.getCollectionName(shape.documentClass))
+                .append("filter", shape.filter);
+        if (shape.sort != null) {
+            find.append("sort", shape.sort);
+        }
+        Document command = new Document("explain", find).append("verbosity", "queryPlanner");
+        return mongoTemplate.getDb().runCommand(command);
+    }
+    
+    /**
+     * Returns the first COLLSCAN or blocking SORT stage of the winning plan, or null. The plan is
+     * searched recursively since its nesting differs between server versions and query engines.
+     */
+    static String findUnindexedStage(Document explainResult) {
+        Object planner = explainResult.get("queryPlanner");
+        if (!(planner instanceof Document)) {
+            return null;
+        }
+        return findStage(((Document) planner).get("winningPlan"));
+    }
+    
+    private static String findStage(Object node) {
+        if (node instanceof Document) {
+            Document document = (Document) node;
+            Object stage = document.get("stage");
+            if ("COLLSCAN".equals(stage) || "SORT".equals(stage)) {
+                return (String) stage;
+            }
+            for (Object value : document.values()) {
+                String found = findStage(value);
+                if (found != null) {
+                    return found;
+                }
+            }
+        } else if (node instanceof List) {
+            for (Object value : (List<?>) node) {
+                String found = findStage(value);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+    
+    private static final class QueryShape {
+        private final String name;
+        private final Class<?> documentClass;
+        private final Document filter;
+        private final Document sort;
+        
+        private QueryShape(String name, Class<?> documentClass, Document filter, Document sort) {
+            this.name = name;
+            this.documentClass = documentClass;
+            this.filter = filter;
+            this.sort = sort;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.arogyasakhi.controller;
+
+import com.arogyasakhi.ArogyaSakhiBot;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+@RestController
+public class TelegramWebhookController {
+    
+    private static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+    
+    @Autowired
+    private ArogyaSakhiBot arogyaSakhiBot;
+    
+    @Value("${telegram.bot.mode:polling}")
+    private String botMode;
+    
+    @Value("${telegram.webhook.secret:}")
+    private String webhookSecret;
+    
+    @PostConstruct
+    public void requireSecret() {
+        // Without a secret anyone who finds the URL could post updates as any user
+        if ("webhook".equalsIgnoreCase(botMode) && (webhookSecret == null || webhookSecret.isEmpty())) {
+            throw new IllegalStateException("telegram.webhook.secret must be set in webhook mode");
+        }
+    }
+    
+    @PostMapping("${telegram.webhook.path:/telegram/webhook}")
+    public ResponseEntity<Void> receiveUpdate(@RequestHeader(value = SECRET_HEADER, required = false) String secretToken,
+                                              @RequestBody Update update) {
+        if (!"webhook".equalsIgnoreCase(botMode)) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        if (!isValidSecret(secretToken)) {
+            System.err.println("❌ Rejected webhook call with invalid secret token");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        // Hand off to the dispatcher and acknowledge right away so Telegram does not redeliver.
+        // When the dispatcher is saturated, refuse instead of holding the request thread:
+        // Telegram redelivers the update later, and only an acknowledged one counts as delivered.
+        if (!arogyaSakhiBot.offerUpdate(update)) {
+            System.err.println("⚠️ Dispatcher saturated, asking Telegram to redeliver update " + update.getUpdateId());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok().build();
+    }
+    
+    private boolean isValidSecret(String secretToken) {
+        if (webhookSecret == null || webhookSecret.isEmpty() || secretToken == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+                webhookSecret.getBytes(StandardCharsets.UTF_8),
+                secretToken.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,108 @@
+package com.arogyasakhi.model;
+
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One user's archived consultations for one calendar month (see {@code ConsultationArchiver}).
+ * The id is {@code <chat id>:<yyyyMM>}, so archiving a consultation is a single upsert into its
+ * bucket.
+ *
+ * Each entry keeps the fields the history view shows under one-letter names; everything else
+ * (recommendation text, structured advice) is a single zstd-compressed BSON document in
+ * {@code z}.
+ */
+@Document(collection = "health_consultation_archive")
+@CompoundIndex(name = "chat_id_month", def = "{'chat_id': 1, 'month': -1}")
+public class ConsultationBucket {
+    
+    @Id
+    private String id;
+    
+    @Field("chat_id")
+    private Long chatId;
+    
+    // yyyyMM, e.g. 202604
+    private int month;
+    
+    @Field("first_time")
+    private LocalDateTime firstTime;
+    
+    @Field("last_time")
+    private LocalDateTime lastTime;
+    
+    private List<Entry> entries;
+    
+    // Constructors
+    public ConsultationBucket() {}
+    
+    public static String bucketId(Long chatId, int month) {
+        return chatId + ":" + month;
+    }
+    
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public Long getChatId() { return chatId; }
+    public void setChatId(Long chatId) { this.chatId = chatId; }
+    
+    public int getMonth() { return month; }
+    public void setMonth(int month) { this.month = month; }
+    
+    public LocalDateTime getFirstTime() { return firstTime; }
+    public void setFirstTime(LocalDateTime firstTime) { this.firstTime = firstTime; }
+    
+    public LocalDateTime getLastTime() { return lastTime; }
+    public void setLastTime(LocalDateTime lastTime) { this.lastTime = lastTime; }
+    
+    public List<Entry> getEntries() { return entries; }
+    public void setEntries(List<Entry> entries) { this.entries = entries; }
+    
+    public static class Entry {
+        
+        // The consultation's original _id
+        @Field("i")
+        private ObjectId consultationId;
+        
+        @Field("t")
+        private LocalDateTime consultationTime;
+        
+        @Field("s")
+        private String symptoms;
+        
+        @Field("v")
+        private String severity;
+        
+        @Field("d")
+        private boolean doctorRecommended;
+        
+        // Remaining fields as compressed BSON
+        @Field("z")
+        private Binary detail;
+        
+        public ObjectId getConsultationId() { return consultationId; }
+        public void setConsultationId(ObjectId consultationId) { this.consultationId = consultationId; }
+        
+        public LocalDateTime getConsultationTime() { return consultationTime; }
+        public void setConsultationTime(LocalDateTime consultationTime) { this.consultationTime = consultationTime; }
+        
+        public String getSymptoms() { return symptoms; }
+        public void setSymptoms(String symptoms) { this.symptoms = symptoms; }
+        
+        public String getSeverity() { return severity; }
+        public void setSeverity(String severity) { this.severity = severity; }
+        
+        public boolean isDoctorRecommended() { return doctorRecommended; }
+        public void setDoctorRecommended(boolean doctorRecommended) { this.doctorRecommended = doctorRecommended; }
+        
+        public Binary getDetail() { return detail; }
+        public void setDetail(Binary detail) { this.detail = detail; }
+    }
+}
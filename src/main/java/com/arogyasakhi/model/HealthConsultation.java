@@ -1,11 +1,15 @@
 package com.arogyasakhi.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Document(collection = "health_consultations")
+@CompoundIndex(name = "chat_id_consultation_time_id", def = "{'chat_id': 1, 'consultation_time': -1, '_id': -1}")
 public class HealthConsultation {
     
     @Id
@@ -16,17 +20,33 @@ public class HealthConsultation {
     
     private String symptoms;
     
+    // Stored zstd-compressed when consultation.compression.enabled is set (RecommendationCompressor)
     @Field("ai_recommendation")
     private String aiRecommendation;
     
+    @Indexed
     private String severity;
     
+    @Indexed
     @Field("doctor_recommended")
     private boolean doctorRecommended;
     
     @Field("first_aid_advice")
     private String firstAidAdvice;
     
+    // Filled in when the recommendation came from the structured (JSON) output mode
+    @Field("home_remedies")
+    private List<String> homeRemedies;
+    
+    @Field("otc_medications")
+    private List<String> otcMedications;
+    
+    @Field("warning_signs")
+    private List<String> warningSigns;
+    
+    @Field("when_to_consult_doctor")
+    private List<String> whenToConsultDoctor;
+    
     @Field("consultation_time")
     private LocalDateTime consultationTime;
     
@@ -63,6 +83,18 @@ public class HealthConsultation {
     public String getFirstAidAdvice() { return firstAidAdvice; }
     public void setFirstAidAdvice(String firstAidAdvice) { this.firstAidAdvice = firstAidAdvice; }
     
+    public List<String> getHomeRemedies() { return homeRemedies; }
+    public void setHomeRemedies(List<String> homeRemedies) { this.homeRemedies = homeRemedies; }
+    
+    public List<String> getOtcMedications() { return otcMedications; }
+    public void setOtcMedications(List<String> otcMedications) { this.otcMedications = otcMedications; }
+    
+    public List<String> getWarningSigns() { return warningSigns; }
+    public void setWarningSigns(List<String> warningSigns) { this.warningSigns = warningSigns; }
+    
+    public List<String> getWhenToConsultDoctor() { return whenToConsultDoctor; }
+    public void setWhenToConsultDoctor(List<String> whenToConsultDoctor) { this.whenToConsultDoctor = whenToConsultDoctor; }
+    
     public LocalDateTime getConsultationTime() { return consultationTime; }
     public void setConsultationTime(LocalDateTime consultationTime) { this.consultationTime = consultationTime; }
 }
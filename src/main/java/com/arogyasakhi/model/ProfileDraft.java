@@ -0,0 +1,46 @@
+package com.arogyasakhi.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import java.time.LocalDateTime;
+
+/**
+ * A profile that is still being filled in by the profile wizard. The partial {@link UserProfile}
+ * is kept as a compact binary blob (see {@code ProfileDraftStore}) and MongoDB's TTL monitor
+ * deletes the document once {@code expires_at} has passed.
+ */
+@Document(collection = "profile_drafts")
+public class ProfileDraft {
+    
+    @Id
+    private String id;
+    
+    @Indexed(unique = true)
+    @Field("chat_id")
+    private Long chatId;
+    
+    private byte[] data;
+    
+    // TTL index: documents are removed once expires_at has passed
+    @Indexed(expireAfterSeconds = 0)
+    @Field("expires_at")
+    private LocalDateTime expiresAt;
+    
+    // Constructors
+    public ProfileDraft() {}
+    
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public Long getChatId() { return chatId; }
+    public void setChatId(Long chatId) { this.chatId = chatId; }
+    
+    public byte[] getData() { return data; }
+    public void setData(byte[] data) { this.data = data; }
+    
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+}
@@ -0,0 +1,68 @@
+package com.arogyasakhi.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A recommendation as returned by Gemini's structured (JSON) output mode. The fields mirror the
+ * response schema; {@code text} is the rendered recommendation shown to the user.
+ *
+ * A recommendation built with {@link #unstructured(String)} carries only the text, e.g. a free
+ * text answer or an error message.
+ */
+public class Recommendation {
+    
+    public static final String SEVERITY_LOW = "low";
+    public static final String SEVERITY_MODERATE = "moderate";
+    public static final String SEVERITY_HIGH = "high";
+    public static final String SEVERITY_EMERGENCY = "emergency";
+    
+    private boolean structured;
+    private String severity;
+    private List<String> homeRemedies = new ArrayList<>();
+    private List<String> otcMedications = new ArrayList<>();
+    private List<String> warningSigns = new ArrayList<>();
+    private List<String> whenToConsultDoctor = new ArrayList<>();
+    private boolean doctorRecommended;
+    private String text;
+    
+    // Constructors
+    public Recommendation() {
+        this.structured = true;
+    }
+    
+    public static Recommendation unstructured(String text) {
+        Recommendation recommendation = new Recommendation();
+        recommendation.structured = false;
+        recommendation.text = text;
+        return recommendation;
+    }
+    
+    public boolean isStructured() { return structured; }
+    
+    public boolean isUrgent() {
+        return SEVERITY_HIGH.equals(severity) || SEVERITY_EMERGENCY.equals(severity);
+    }
+    
+    // Getters and Setters
+    public String getSeverity() { return severity; }
+    public void setSeverity(String severity) { this.severity = severity; }
+    
+    public List<String> getHomeRemedies() { return homeRemedies; }
+    public void setHomeRemedies(List<String> homeRemedies) { this.homeRemedies = homeRemedies; }
+    
+    public List<String> getOtcMedications() { return otcMedications; }
+    public void setOtcMedications(List<String> otcMedications) { this.otcMedications = otcMedications; }
+    
+    public List<String> getWarningSigns() { return warningSigns; }
+    public void setWarningSigns(List<String> warningSigns) { this.warningSigns = warningSigns; }
+    
+    public List<String> getWhenToConsultDoctor() { return whenToConsultDoctor; }
+    public void setWhenToConsultDoctor(List<String> whenToConsultDoctor) { this.whenToConsultDoctor = whenToConsultDoctor; }
+    
+    public boolean isDoctorRecommended() { return doctorRecommended; }
+    public void setDoctorRecommended(boolean doctorRecommended) { this.doctorRecommended = doctorRecommended; }
+    
+    public String getText() { return text; }
+    public void setText(String text) { this.text = text; }
+}
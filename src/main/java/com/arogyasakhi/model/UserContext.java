@@ -0,0 +1,29 @@
+package com.arogyasakhi.model;
+
+/**
+ * Everything the bot needs to know about a chat while handling one update: its session
+ * (language and wizard state) and its profile, loaded together once per update.
+ */
+public class UserContext {
+    
+    private final UserSession session;
+    private final UserProfile profile;
+    
+    public UserContext(UserSession session, UserProfile profile) {
+        this.session = session;
+        this.profile = profile;
+    }
+    
+    public Long getChatId() { return session.getChatId(); }
+    
+    public UserSession getSession() { return session; }
+    
+    /**
+     * The stored profile, or an empty one for a chat that has not created a profile yet.
+     */
+    public UserProfile getProfile() { return profile; }
+    
+    public String getLanguage() { return session.getLanguage(); }
+    
+    public String getState() { return session.getCurrentState(); }
+}
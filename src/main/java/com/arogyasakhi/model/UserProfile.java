@@ -1,6 +1,7 @@
 package com.arogyasakhi.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import java.time.LocalDateTime;
@@ -12,6 +13,7 @@ public class UserProfile {
     @Id
     private String id;
     
+    @Indexed(unique = true)
     @Field("chat_id")
     private Long chatId;
     
@@ -46,6 +48,7 @@ public class UserProfile {
     @Field("updated_at")
     private LocalDateTime updatedAt;
     
+    @Indexed
     private ProfileStatus status = ProfileStatus.INCOMPLETE;
     
     // Constructors
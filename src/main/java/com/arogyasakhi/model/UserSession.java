@@ -1,6 +1,7 @@
 package com.arogyasakhi.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import java.time.LocalDateTime;
@@ -11,6 +12,7 @@ public class UserSession {
     @Id
     private String id;
     
+    @Indexed(unique = true)
     @Field("chat_id")
     private Long chatId;
     
@@ -0,0 +1,21 @@
+package com.arogyasakhi.repository;
+
+import com.arogyasakhi.model.UserProfile;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface ReactiveUserProfileRepository extends ReactiveMongoRepository<UserProfile, String> {
+    
+    @Query("{'chat_id': ?0}")
+    Mono<UserProfile> findByChatId(Long chatId);
+    
+    @Query(value = "{'chat_id': ?0}", delete = true)
+    Mono<Void> deleteByChatId(Long chatId);
+    
+    @Query("{'status': ?0}")
+    Flux<UserProfile> findByStatus(UserProfile.ProfileStatus status);
+}
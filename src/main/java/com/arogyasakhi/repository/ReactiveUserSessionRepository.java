@@ -0,0 +1,17 @@
+package com.arogyasakhi.repository;
+
+import com.arogyasakhi.model.UserSession;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface ReactiveUserSessionRepository extends ReactiveMongoRepository<UserSession, String> {
+    
+    @Query("{'chat_id': ?0}")
+    Mono<UserSession> findByChatId(Long chatId);
+    
+    @Query(value = "{'chat_id': ?0}", delete = true)
+    Mono<Void> deleteByChatId(Long chatId);
+}
@@ -0,0 +1,268 @@
+package com.arogyasakhi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * AIMD concurrency limit for outgoing Gemini calls.
+ *
+ * The limit grows by roughly one per round-trip while time-to-first-response stays under
+ * {@code gemini.limiter.latency-threshold-ms}, and is cut multiplicatively when a call is slow
+ * or fails with an overload error. Calls over the limit wait in a bounded FIFO queue for at
+ * most {@code gemini.limiter.max-wait-ms} and are then rejected with {@link LimitExceededException},
+ * so a degraded upstream cannot pile up an unbounded number of pending requests.
+ */
+@Service
+public class AdaptiveConcurrencyLimiter {
+    
+    @Value("${gemini.limiter.initial-limit:10}")
+    private int initialLimit;
+    
+    @Value("${gemini.limiter.min-limit:2}")
+    private int minLimit;
+    
+    @Value("${gemini.limiter.max-limit:64}")
+    private int maxLimit;
+    
+    @Value("${gemini.limiter.latency-threshold-ms:8000}")
+    private long latencyThresholdMs;
+    
+    @Value("${gemini.limiter.backoff-ratio:0.75}")
+    private double backoffRatio;
+    
+    @Value("${gemini.limiter.max-queue:100}")
+    private int maxQueue;
+    
+    @Value("${gemini.limiter.max-wait-ms:5000}")
+    private long maxWaitMs;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final Deque<Call<?>> waiting = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private Counter rejected;
+    
+    @PostConstruct
+    public void init() {
+        limit = initialLimit;
+        rejected = meterRegistry.counter("gemini.limiter.rejected");
+        Gauge.builder("gemini.limiter.limit", this, AdaptiveConcurrencyLimiter::getLimit).register(meterRegistry);
+        Gauge.builder("gemini.limiter.in_flight", this, AdaptiveConcurrencyLimiter::getInFlight).register(meterRegistry);
+        Gauge.builder("gemini.limiter.queued", this, AdaptiveConcurrencyLimiter::getQueued).register(meterRegistry);
+    }
+    
+    /**
+     * Runs {@code call} once a slot is free. {@code overload} decides which errors should shrink
+     * the limit; other errors are treated as an answered call.
+     */
+    public <T> Flux<T> execute(Supplier<? extends Flux<T>> call, Predicate<Throwable> overload) {
+        return Flux.create(sink -> {
+            Call<T> pending = new Call<>(sink, call, overload);
+            sink.onDispose(() -> cancel(pending));
+            
+            boolean start;
+            boolean full = false;
+            synchronized (this) {
+                start = inFlight < (int) limit;
+                if (start) {
+                    inFlight++;
+                    pending.state = State.RUNNING;
+                } else if (waiting.size() >= maxQueue) {
+                    full = true;
+                    pending.state = State.DONE;
+                } else {
+                    waiting.addLast(pending);
+                }
+            }
+            
+            if (start) {
+                run(pending);
+            } else if (full) {
+                reject(pending);
+            } else {
+                Schedulers.parallel().schedule(() -> expire(pending), maxWaitMs, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+    
+    public synchronized double getLimit() {
+        return limit;
+    }
+    
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+    
+    public synchronized int getQueued() {
+        return waiting.size();
+    }
+    
+    private <T> void run(Call<T> pending) {
+        long startedAt = System.nanoTime();
+        long[] firstResponseNanos = {-1};
+        
+        Flux<T> source;
+        try {
+            source = pending.call.get();
+        } catch (Exception e) {
+            release(pending, Outcome.IGNORED, 0);
+            pending.sink.error(e);
+            return;
+        }
+        
+        // Latency is time to first element: for streams that is when the upstream started
+        // answering, which tracks its load far better than the length of the generation.
+        Disposable subscription = source
+                .doOnNext(value -> {
+                    if (firstResponseNanos[0] < 0) {
+                        firstResponseNanos[0] = System.nanoTime() - startedAt;
+                    }
+                })
+                .subscribe(
+                        pending.sink::next,
+                        error -> {
+                            long latency = firstResponseNanos[0] >= 0 ? firstResponseNanos[0] : System.nanoTime() - startedAt;
+                            release(pending, pending.overload.test(error) ? Outcome.DROPPED : Outcome.SUCCESS, latency);
+                            pending.sink.error(error);
+                        },
+                        () -> {
+                            long latency = firstResponseNanos[0] >= 0 ? firstResponseNanos[0] : System.nanoTime() - startedAt;
+                            release(pending, Outcome.SUCCESS, latency);
+                            pending.sink.complete();
+                        });
+        
+        synchronized (this) {
+            pending.subscription = subscription;
+            if (pending.state == State.DONE) {
+                // Cancelled while we were subscribing
+                subscription.dispose();
+            }
+        }
+    }
+    
+    private void release(Call<?> pending, Outcome outcome, long latencyNanos) {
+        Call<?> next;
+        synchronized (this) {
+            if (pending.released) {
+                return;
+            }
+            pending.released = true;
+            inFlight--;
+            adjustLimit(outcome, latencyNanos);
+            next = pollStartable();
+        }
+        if (next != null) {
+            run(next);
+        }
+    }
+    
+    private void adjustLimit(Outcome outcome, long latencyNanos) {
+        if (outcome == Outcome.IGNORED) {
+            return;
+        }
+        boolean slow = latencyNanos > Duration.ofMillis(latencyThresholdMs).toNanos();
+        if (outcome == Outcome.DROPPED || slow) {
+            double reduced = Math.max(minLimit, limit * backoffRatio);
+            if ((int) reduced < (int) limit) {
+                System.out.println("📉 Gemini concurrency limit lowered to " + (int) reduced);
+            }
+            limit = reduced;
+        } else {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+    
+    private Call<?> pollStartable() {
+        if (inFlight >= (int) limit) {
+            return null;
+        }
+        Call<?> next = waiting.pollFirst();
+        if (next != null) {
+            inFlight++;
+            next.state = State.RUNNING;
+        }
+        return next;
+    }
+    
+    private void expire(Call<?> pending) {
+        synchronized (this) {
+            if (pending.state != State.QUEUED) {
+                return;
+            }
+            waiting.remove(pending);
+            pending.state = State.DONE;
+        }
+        reject(pending);
+    }
+    
+    private void reject(Call<?> pending) {
+        rejected.increment();
+        System.err.println("⚠️ Gemini call rejected: concurrency limit reached");
+        pending.sink.error(new LimitExceededException());
+    }
+    
+    private void cancel(Call<?> pending) {
+        Disposable subscription;
+        boolean holdsSlot;
+        synchronized (this) {
+            if (pending.state == State.QUEUED) {
+                waiting.remove(pending);
+            }
+            holdsSlot = pending.state == State.RUNNING;
+            pending.state = State.DONE;
+            subscription = pending.subscription;
+        }
+        if (subscription != null) {
+            subscription.dispose();
+        }
+        if (holdsSlot) {
+            // A call cancelled before its first response says nothing about upstream latency
+            release(pending, Outcome.IGNORED, 0);
+        }
+    }
+    
+    private enum State { QUEUED, RUNNING, DONE }
+    
+    private enum Outcome { SUCCESS, DROPPED, IGNORED }
+    
+    private static final class Call<T> {
+        private final FluxSink<T> sink;
+        private final Supplier<? extends Flux<T>> call;
+        private final Predicate<Throwable> overload;
+        private State state = State.QUEUED;
+        private Disposable subscription;
+        private boolean released;
+        
+        private Call(FluxSink<T> sink, Supplier<? extends Flux<T>> call, Predicate<Throwable> overload) {
+            this.sink = sink;
+            this.call = call;
+            this.overload = overload;
+        }
+    }
+    
+    public static final class LimitExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        public LimitExceededException() {
+            super("Too many concurrent AI requests");
+        }
+    }
+}
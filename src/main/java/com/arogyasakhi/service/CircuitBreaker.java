@@ -0,0 +1,117 @@
+package com.arogyasakhi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker for the Gemini API.
+ *
+ * Opens after {@code gemini.circuit-breaker.failure-threshold} consecutive upstream failures
+ * and rejects calls for {@code gemini.circuit-breaker.open-duration-seconds}. After that a
+ * limited number of probe calls are let through (half-open); the first success closes the
+ * circuit again and a failure re-opens it.
+ */
+@Service
+public class CircuitBreaker {
+    
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+    
+    @Value("${gemini.circuit-breaker.failure-threshold:5}")
+    private int failureThreshold;
+    
+    @Value("${gemini.circuit-breaker.open-duration-seconds:30}")
+    private long openDurationSeconds;
+    
+    @Value("${gemini.circuit-breaker.half-open-probes:1}")
+    private int halfOpenProbes;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int probesInFlight;
+    private long openedAtNanos;
+    private Counter rejected;
+    
+    @PostConstruct
+    public void init() {
+        rejected = meterRegistry.counter("gemini.circuit.rejected");
+        Gauge.builder("gemini.circuit.open", this, breaker -> breaker.getState() == State.CLOSED ? 0 : 1)
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Returns true if a call may proceed. Every permitted call must be followed by exactly one
+     * of {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAtNanos < TimeUnit.SECONDS.toNanos(openDurationSeconds)) {
+                rejected.increment();
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            System.out.println("🟡 Gemini circuit half-open, probing upstream");
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= halfOpenProbes) {
+                rejected.increment();
+                return false;
+            }
+            probesInFlight++;
+        }
+        return true;
+    }
+    
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            System.out.println("🟢 Gemini circuit closed");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probesInFlight = 0;
+    }
+    
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                System.err.println("🔴 Gemini circuit opened after " + consecutiveFailures + " consecutive failures");
+            }
+            state = State.OPEN;
+            openedAtNanos = System.nanoTime();
+            probesInFlight = 0;
+        }
+    }
+    
+    /**
+     * The permitted call ended without telling us anything about upstream health
+     * (cancelled, or rejected locally).
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && probesInFlight > 0) {
+            probesInFlight--;
+        }
+    }
+    
+    public synchronized State getState() {
+        return state;
+    }
+    
+    public static final class OpenException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        public OpenException() {
+            super("AI service temporarily unavailable");
+        }
+    }
+}
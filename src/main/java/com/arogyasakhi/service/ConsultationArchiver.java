@@ -0,0 +1,247 @@
+package com.arogyasakhi.service;
+
+import com.arogyasakhi.model.ConsultationBucket;
+import com.arogyasakhi.model.HealthConsultation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves consultations older than {@code after-days} out of {@code health_consultations} into
+ * per-user monthly {@link ConsultationBucket}s, so the hot collection and its indexes only hold
+ * recent history and stay in the server's memory. {@link HealthHistoryService} reads the
+ * buckets only once a user pages back past the hot collection.
+ *
+ * Every {@code interval-minutes} the oldest consultations are read in batches of
+ * {@code batch-size} in {@code _id} order. Ids are ObjectIds created when the consultation is
+ * recorded, so the cut-off is a range scan of the primary index and needs no index of its own.
+ * A batch is added to its buckets with one unordered bulk of upserts and only then deleted
+ * from the hot collection. Each upsert is an update pipeline that only appends the entries whose
+ * consultation id ({@code i}) the bucket does not hold yet, so a consultation archived again
+ * after a failure between the two steps is not duplicated, whichever batch it comes back in.
+ * Comparing ids rather than whole entries matters because the compressed detail of the same
+ * consultation need not come out byte-identical twice.
+ */
+@Service
+public class ConsultationArchiver {
+    
+    // Kept uncompressed in the bucket entry; everything else goes into the compressed detail
+    private static final Set<String> SUMMARY_FIELDS = Set.of(
+            "_id", "_class", "chat_id", "consultation_time", "symptoms", "severity", "doctor_recommended");
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private RecommendationCompressor recommendationCompressor;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${consultation.archive.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${consultation.archive.after-days:90}")
+    private int afterDays;
+    
+    @Value("${consultation.archive.interval-minutes:60}")
+    private long intervalMinutes;
+    
+    @Value("${consultation.archive.batch-size:500}")
+    private int batchSize;
+    
+    private ScheduledExecutorService archiver;
+    private Counter archived;
+    
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        archived = meterRegistry.counter("consultation.archive.archived");
+        archiver = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "consultation-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // First run a minute after startup, off the startup path
+        archiver.scheduleWithFixedDelay(this::archive, 1, intervalMinutes, TimeUnit.MINUTES);
+    }
+    
+    /**
+     * Consultations recorded before this time may already be archived.
+     */
+    public LocalDateTime horizon() {
+        return LocalDateTime.now().minusDays(afterDays);
+    }
+    
+    private void archive() {
+        try {
+            int count = archiveOlderThan(horizon());
+            if (count > 0) {
+                System.out.println("🗄️ Archived " + count + " consultations older than " + afterDays + " days");
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Consultation archiving failed: " + e.getMessage());
+        }
+    }
+    
+    int archiveOlderThan(LocalDateTime cutoff) {
+        String collection = mongoTemplate.getCollectionName(HealthConsultation.class);
+        ObjectId cutoffId = ObjectId.getSmallestWithDate(Date.from(cutoff.atZone(ZoneId.systemDefault()).toInstant()));
+        Query query = new Query(Criteria.where("_id").lt(cutoffId))
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(batchSize);
+        
+        int total = 0;
+        while (true) {
+            List<Document> batch = mongoTemplate.find(query, Document.class, collection);
+            if (batch.isEmpty()) {
+                return total;
+            }
+            archiveBatch(batch, collection);
+            total += batch.size();
+            archived.increment(batch.size());
+            if (batch.size() < batchSize) {
+                return total;
+            }
+        }
+    }
+    
+    private void archiveBatch(List<Document> batch, String collection) {
+        Map<String, PendingBucket> buckets = new LinkedHashMap<>();
+        List<Object> ids = new ArrayList<>(batch.size());
+        for (Document consultation : batch) {
+            Object id = consultation.get("_id");
+            Date time = consultation.getDate("consultation_time");
+            if (time == null) {
+                time = ((ObjectId) id).getDate();
+            }
+            Long chatId = consultation.getLong("chat_id");
+            int month = month(time);
+            
+            PendingBucket bucket = buckets.computeIfAbsent(ConsultationBucket.bucketId(chatId, month),
+                    key -> new PendingBucket(chatId, month));
+            bucket.add(entry(consultation, time), time);
+            ids.add(id);
+        }
+        
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                mongoTemplate.getCollectionName(ConsultationBucket.class));
+        for (Map.Entry<String, PendingBucket> bucket : buckets.entrySet()) {
+            bulk.upsert(new Query(Criteria.where("_id").is(bucket.getKey())), bucketUpdate(bucket.getValue()));
+        }
+        bulk.execute();
+        
+        // Only once every bucket has its entries
+        mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), collection);
+    }
+    
+    /**
+     * Adds the pending entries to the bucket, creating it if needed, skipping entries whose
+     * consultation id it already holds. The new entries are passed as a {@code $literal} so that
+     * symptoms starting with {@code $} are not read as field paths.
+     */
+    private static AggregationUpdate bucketUpdate(PendingBucket pending) {
+        Document existingIds = new Document("$ifNull", List.of("$entries.i", List.of()));
+        Document missing = new Document("$filter", new Document("input", new Document("$literal", pending.entries))
+                .append("cond", new Document("$not", List.of(new Document("$in", List.of("$$this.i", existingIds))))));
+        Document set = new Document("chat_id", new Document("$ifNull", List.of("$chat_id", pending.chatId)))
+                .append("month", new Document("$ifNull", List.of("$month", pending.month)))
+                .append("first_time", new Document("$min", List.of("$first_time", pending.first)))
+                .append("last_time", new Document("$max", List.of("$last_time", pending.last)))
+                .append("entries", new Document("$concatArrays",
+                        List.of(new Document("$ifNull", List.of("$entries", List.of())), missing)));
+        AggregationOperation stage = context -> new Document("$set", set);
+        return AggregationUpdate.from(List.of(stage));
+    }
+    
+    private Document entry(Document consultation, Date time) {
+        Document entry = new Document("i", consultation.get("_id")).append("t", time);
+        if (consultation.get("symptoms") != null) {
+            entry.append("s", consultation.get("symptoms"));
+        }
+        if (consultation.get("severity") != null) {
+            entry.append("v", consultation.get("severity"));
+        }
+        entry.append("d", consultation.getBoolean("doctor_recommended", false));
+        
+        Document detail = new Document();
+        for (Map.Entry<String, Object> field : consultation.entrySet()) {
+            if (!SUMMARY_FIELDS.contains(field.getKey())) {
+                detail.append(field.getKey(), field.getValue());
+            }
+        }
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        DOCUMENT_CODEC.encode(new BsonBinaryWriter(buffer), detail, EncoderContext.builder().build());
+        return entry.append("z", new Binary(recommendationCompressor.compress(buffer.toByteArray())));
+    }
+    
+    static int month(Date time) {
+        ZonedDateTime utc = time.toInstant().atZone(ZoneOffset.UTC);
+        return utc.getYear() * 100 + utc.getMonthValue();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (archiver != null) {
+            archiver.shutdownNow();
+        }
+    }
+    
+    private static final class PendingBucket {
+        private final Long chatId;
+        private final int month;
+        private final List<Document> entries = new ArrayList<>();
+        private Date first;
+        private Date last;
+        
+        private PendingBucket(Long chatId, int month) {
+            this.chatId = chatId;
+            this.month = month;
+        }
+        
+        private void add(Document entry, Date time) {
+            entries.add(entry);
+            if (first == null || time.before(first)) {
+                first = time;
+            }
+            if (last == null || time.after(last)) {
+                last = time;
+            }
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.arogyasakhi.service;
+
+import com.arogyasakhi.model.HealthConsultation;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes consultations to MongoDB off the reply path.
+ *
+ * Submitted consultations are queued and a single writer thread inserts them in batches of
+ * up to {@code batch-size}, waiting at most {@code max-delay-ms} for a batch to fill; each
+ * batch is one unordered multi-document insert. If MongoDB cannot be reached the batch is
+ * appended to a local write-ahead log (one extended JSON document per line, fsynced), and
+ * later batches go straight to the log until a replay succeeds. The log is replayed every
+ * {@code replay-interval-ms} and on startup.
+ *
+ * Consultations get their id before they are queued, so a batch that is replayed after it
+ * was in fact inserted only causes duplicate key errors, which are ignored.
+ */
+@Service
+public class ConsultationWriter {
+    
+    private static final int DUPLICATE_KEY = 11000;
+    private static final long POLL_INTERVAL_MS = 500;
+    private static final JsonWriterSettings WAL_JSON = JsonWriterSettings.builder().outputMode(JsonMode.EXTENDED).build();
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${consultation.writer.batch-size:100}")
+    private int batchSize;
+    
+    @Value("${consultation.writer.max-delay-ms:200}")
+    private long maxDelayMs;
+    
+    @Value("${consultation.writer.queue-capacity:10000}")
+    private int queueCapacity;
+    
+    @Value("${consultation.writer.wal-path:data/consultations.wal}")
+    private String walFile;
+    
+    @Value("${consultation.writer.replay-interval-ms:10000}")
+    private long replayIntervalMs;
+    
+    private BlockingQueue<HealthConsultation> queue;
+    private Path walPath;
+    
+    // Guards the log file and walRecords; the writer thread and a full queue both append, and
+    // only the writer thread removes replayed lines from the front
+    private final Object walLock = new Object();
+    private volatile long walRecords;
+    private long lastReplayNanos;
+    
+    private volatile boolean running = true;
+    private Thread writer;
+    
+    private Counter inserted;
+    private Counter logged;
+    private Counter rejected;
+    private Timer lag;
+    
+    @PostConstruct
+    public void init() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        walPath = Paths.get(walFile);
+        walRecords = countWalRecords();
+        if (walRecords > 0) {
+            System.out.println("📼 Found " + walRecords + " consultations in " + walPath + ", replaying");
+        }
+        // Replay a log left over from the previous run right away
+        lastReplayNanos = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(replayIntervalMs);
+        
+        inserted = meterRegistry.counter("consultation.writer.inserted");
+        logged = meterRegistry.counter("consultation.writer.logged");
+        rejected = meterRegistry.counter("consultation.writer.rejected");
+        lag = Timer.builder("consultation.writer.lag")
+                .description("Time from a consultation being recorded to it being stored in MongoDB")
+                .register(meterRegistry);
+        Gauge.builder("consultation.writer.queued", this, w -> w.queue.size())
+                .description("Consultations waiting for the next batch")
+                .register(meterRegistry);
+        Gauge.builder("consultation.writer.wal.records", this, w -> w.walRecords)
+                .description("Consultations in the local log waiting to be replayed")
+                .register(meterRegistry);
+        
+        writer = new Thread(this::run, "consultation-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    /**
+     * Queues the consultation for insertion and returns immediately.
+     */
+    public void submit(HealthConsultation consultation) {
+        if (consultation.getId() == null) {
+            consultation.setId(new ObjectId().toHexString());
+        }
+        if (!queue.offer(consultation)) {
+            // The writer is far behind (e.g. a slow replay); keep the consultation durable anyway
+            System.err.println("⚠️ Consultation queue full, logging consultation for user " + consultation.getChatId());
+            appendToWal(List.of(consultation));
+        }
+    }
+    
+    private void run() {
+        List<HealthConsultation> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                HealthConsultation first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    fillBatch(batch);
+                    write(batch);
+                    batch.clear();
+                }
+                replayIfDue();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("❌ Consultation writer error: " + e.getMessage());
+                batch.clear();
+            }
+        }
+    }
+    
+    private void fillBatch(List<HealthConsultation> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                return;
+            }
+            HealthConsultation next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+    
+    private void write(List<HealthConsultation> batch) {
+        if (walRecords > 0) {
+            // MongoDB was unreachable at the last attempt; don't wait for another timeout per batch
+            appendToWal(batch);
+            return;
+        }
+        try {
+            insert(batch);
+        } catch (Exception e) {
+            System.err.println("⚠️ Could not store " + batch.size() + " consultations, logging them locally: " + e.getMessage());
+            appendToWal(batch);
+            lastReplayNanos = System.nanoTime();
+        }
+    }
+    
+    /**
+     * Inserts the batch in one unordered bulk insert. Throws if MongoDB could not be reached;
+     * documents MongoDB itself rejects are counted and dropped, duplicates are ignored.
+     */
+    private void insert(List<HealthConsultation> batch) {
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, HealthConsultation.class);
+        operations.insert(batch);
+        int failed = 0;
+        try {
+            operations.execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    failed++;
+                    System.err.println("❌ MongoDB rejected a consultation: " + error.getMessage());
+                }
+            }
+            rejected.increment(failed);
+        }
+        
+        inserted.increment(batch.size() - failed);
+        LocalDateTime now = LocalDateTime.now();
+        for (HealthConsultation consultation : batch) {
+            if (consultation.getConsultationTime() != null) {
+                lag.record(Duration.between(consultation.getConsultationTime(), now));
+            }
+        }
+        System.out.println("✅ Stored " + (batch.size() - failed) + " consultations");
+    }
+    
+    private void appendToWal(List<HealthConsultation> batch) {
+        StringBuilder lines = new StringBuilder(batch.size() * 1024);
+        for (HealthConsultation consultation : batch) {
+            Document document = new Document();
+            mongoTemplate.getConverter().write(consultation, document);
+            lines.append(document.toJson(WAL_JSON)).append('\n');
+        }
+        byte[] bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+        
+        synchronized (walLock) {
+            try {
+                if (walPath.getParent() != null) {
+                    Files.createDirectories(walPath.getParent());
+                }
+                try (FileOutputStream out = new FileOutputStream(walPath.toFile(), true)) {
+                    out.write(bytes);
+                    out.getFD().sync();
+                }
+                walRecords += batch.size();
+                logged.increment(batch.size());
+            } catch (IOException e) {
+                System.err.println("❌ Failed to log " + batch.size() + " consultations to " + walPath + ", they are lost: " + e.getMessage());
+                rejected.increment(batch.size());
+            }
+        }
+    }
+    
+    /**
+     * Replays the log in batches. The log is only locked to read it and to drop the replayed
+     * lines, not during the inserts, so a submit that finds the queue full can still append to it
+     * meanwhile. Appends only ever go to the end and only this thread removes lines, so the
+     * replayed lines are still the first ones of the log when they are dropped. If the replay is
+     * interrupted, the lines stored so far are dropped and the next replay resumes after them.
+     */
+    private void replayIfDue() {
+        long now = System.nanoTime();
+        if (walRecords == 0 || now - lastReplayNanos < TimeUnit.MILLISECONDS.toNanos(replayIntervalMs)) {
+            return;
+        }
+        lastReplayNanos = now;
+        
+        List<String> lines;
+        synchronized (walLock) {
+            try {
+                lines = Files.readAllLines(walPath, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                System.err.println("❌ Failed to read " + walPath + ": " + e.getMessage());
+                return;
+            }
+        }
+        
+        int replayed = 0;
+        try {
+            while (replayed < lines.size()) {
+                List<String> chunk = lines.subList(replayed, Math.min(replayed + batchSize, lines.size()));
+                List<HealthConsultation> consultations = parse(chunk);
+                // A chunk of only unreadable lines (e.g. a torn last line) has nothing to insert
+                if (!consultations.isEmpty()) {
+                    insert(consultations);
+                }
+                replayed += chunk.size();
+            }
+        } catch (Exception e) {
+            System.err.println("⚠️ MongoDB still unavailable, " + (lines.size() - replayed) + " consultations remain logged: " + e.getMessage());
+        }
+        if (replayed > 0) {
+            truncateWal(replayed);
+            System.out.println("📼 Replayed " + replayed + " logged consultations");
+        }
+    }
+    
+    private List<HealthConsultation> parse(List<String> lines) {
+        List<HealthConsultation> consultations = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                consultations.add(mongoTemplate.getConverter().read(HealthConsultation.class, Document.parse(line)));
+            } catch (Exception e) {
+                // e.g. the last line of a log cut short by a crash
+                System.err.println("⚠️ Skipping unreadable logged consultation: " + e.getMessage());
+                rejected.increment();
+            }
+        }
+        return consultations;
+    }
+    
+    /**
+     * Drops the first {@code replayed} lines of the log, keeping whatever was appended since it
+     * was read.
+     */
+    private void truncateWal(int replayed) {
+        synchronized (walLock) {
+            try {
+                List<String> lines = Files.readAllLines(walPath, StandardCharsets.UTF_8);
+                List<String> remaining = lines.subList(Math.min(replayed, lines.size()), lines.size());
+                if (remaining.isEmpty()) {
+                    Files.deleteIfExists(walPath);
+                } else {
+                    Path temp = walPath.resolveSibling(walPath.getFileName() + ".tmp");
+                    Files.write(temp, remaining, StandardCharsets.UTF_8);
+                    Files.move(temp, walPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+                walRecords = remaining.size();
+            } catch (IOException e) {
+                // Keeping the full log only means the replayed part is replayed again (as duplicates)
+                System.err.println("❌ Failed to truncate " + walPath + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    private long countWalRecords() {
+        if (!Files.exists(walPath)) {
+            return 0;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(walPath, StandardCharsets.UTF_8)) {
+            return reader.lines().filter(line -> !line.isBlank()).count();
+        } catch (IOException e) {
+            System.err.println("❌ Failed to read " + walPath + ": " + e.getMessage());
+            return 0;
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(15));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        List<HealthConsultation> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            System.out.println("💾 Storing " + remaining.size() + " queued consultations before shutdown");
+            write(remaining);
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package com.arogyasakhi.service;
+
+import com.arogyasakhi.model.Recommendation;
+import com.arogyasakhi.model.UserProfile;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserter;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds Gemini prompts and request bodies.
+ *
+ * Prompts come from per-language templates compiled once at startup into literal and slot
+ * segments; a line whose slot has no value is left out. The JSON envelope around the prompt,
+ * including {@code generationConfig}, is serialized once, so a request body is just
+ * prefix + escaped prompt + suffix written into a single buffer.
+ *
+ * In structured mode the prompt asks for the fields of {@link com.arogyasakhi.model.Recommendation}
+ * and the suffix adds {@code responseMimeType: application/json} with a matching
+ * {@code responseSchema}, so Gemini answers with a JSON object instead of formatted text.
+ */
+@Service
+public class GeminiPromptBuilder {
+    
+    public static final int MAX_OUTPUT_TOKENS = 500;
+    
+    private static final String HEX_DIGITS = "0123456789ABCDEF";
+    
+    private enum Slot { PATIENT, AGE, GENDER, BMI, ALLERGIES, MEDICATIONS, SYMPTOMS }
+    
+    private static final String ENGLISH_PATIENT = """
+            Patient Information:
+            - Age: {AGE} years
+            - Gender: {GENDER}
+            - BMI: {BMI}
+            - Allergies: {ALLERGIES}
+            - Current Medications: {MEDICATIONS}
+            
+            """;
+    
+    private static final String ENGLISH_PROMPT = """
+            You are an experienced doctor. Provide detailed medical advice for the patient's symptoms.
+            
+            {PATIENT}Symptoms: {SYMPTOMS}
+            
+            Please provide detailed advice in the following format:
+            
+            🔍 SEVERITY LEVEL: (Low/Moderate/High/Emergency)
+            
+            🏠 HOME REMEDIES:
+            - Immediate relief measures
+            - Natural treatments
+            - Dietary recommendations
+            - Lifestyle modifications
+            
+            💊 MEDICATION SUGGESTIONS (Over-the-counter):
+            - Pain relievers/fever reducers
+            - Dosage and timing
+            - Precautions and contraindications
+            
+            ⚠️ WARNING SIGNS:
+            - When to seek immediate medical attention
+            - Emergency symptoms to watch for
+            
+            📞 WHEN TO CONSULT A DOCTOR:
+            - If symptoms worsen
+            - Timeline for medical consultation
+            
+            IMPORTANT: This is general medical advice only. Seek immediate professional medical care for serious conditions.""";
+    
+    private static final String HINDI_PATIENT = """
+            मरीज की जानकारी:
+            - उम्र: {AGE} साल
+            - लिंग: {GENDER}
+            - BMI: {BMI}
+            - एलर्जी: {ALLERGIES}
+            - वर्तमान दवाएं: {MEDICATIONS}
+            
+            """;
+    
+    private static final String HINDI_PROMPT = """
+            आप एक अनुभवी डॉक्टर हैं। मरीज के लक्षणों के लिए विस्तृत सलाह दें।
+            
+            {PATIENT}लक्षण: {SYMPTOMS}
+            
+            कृपया निम्नलिखित प्रारूप में विस्तृत सलाह दें:
+            
+            🔍 गंभीरता का स्तर: (कम/मध्यम/उच्च/आपातकाल)
+            
+            🏠 घरेलू उपचार:
+            - तुरंत राहत के लिए क्या करें
+            - प्राकृतिक उपचार
+            - आहार संबंधी सुझाव
+            - जीवनशैली में बदलाव
+            
+            💊 दवा सुझाव (बिना पर्चे वाली):
+            - दर्द निवारक दवाएं
+            - खुराक और समय
+            - सावधानियां
+            
+            ⚠️ चेतावनी संकेत:
+            - तुरंत डॉक्टर से मिलें यदि
+            - आपातकालीन स्थितियां
+            
+            📞 कब डॉक्टर से संपर्क करें:
+            - लक्षण बिगड़ने पर
+            - कितने दिन बाद
+            
+            महत्वपूर्ण: यह केवल सामान्य सलाह है। गंभीर स्थिति में तुरंत चिकित्सक से संपर्क करें।""";
+    
+    private static final String ENGLISH_STRUCTURED_PROMPT = """
+            You are an experienced doctor. Provide medical advice for the patient's symptoms.
+            
+            {PATIENT}Symptoms: {SYMPTOMS}
+            
+            Answer in English with a JSON object:
+            - severity: low, moderate, high or emergency
+            - homeRemedies: immediate relief measures, natural treatments, dietary and lifestyle advice
+            - otcMedications: over-the-counter options with dosage, timing and precautions
+            - warningSigns: symptoms that need immediate medical attention
+            - whenToConsultDoctor: when and how soon to see a doctor
+            - doctorRecommended: true if the patient should see a doctor
+            Keep every list item to one short sentence. This is general medical advice only.""";
+    
+    private static final String HINDI_STRUCTURED_PROMPT = """
+            आप एक अनुभवी डॉक्टर हैं। मरीज के लक्षणों के लिए सलाह दें।
+            
+            {PATIENT}लक्षण: {SYMPTOMS}
+            
+            JSON ऑब्जेक्ट में उत्तर दें (सभी सूची आइटम हिंदी में लिखें):
+            - severity: low, moderate, high या emergency
+            - homeRemedies: तुरंत राहत, प्राकृतिक उपचार, आहार और जीवनशैली संबंधी सुझाव
+            - otcMedications: बिना पर्चे वाली दवाएं, खुराक, समय और सावधानियां
+            - warningSigns: वे लक्षण जिनमें तुरंत डॉक्टर से मिलना चाहिए
+            - whenToConsultDoctor: कब और कितने दिन में डॉक्टर से संपर्क करें
+            - doctorRecommended: true यदि मरीज को डॉक्टर से मिलना चाहिए
+            हर आइटम एक छोटे वाक्य में लिखें। यह केवल सामान्य सलाह है।""";
+    
+    private final Template englishPrompt = Template.compile(ENGLISH_PROMPT);
+    private final Template englishPatient = Template.compile(ENGLISH_PATIENT);
+    private final Template hindiPrompt = Template.compile(HINDI_PROMPT);
+    private final Template hindiPatient = Template.compile(HINDI_PATIENT);
+    private final Template englishStructuredPrompt = Template.compile(ENGLISH_STRUCTURED_PROMPT);
+    private final Template hindiStructuredPrompt = Template.compile(HINDI_STRUCTURED_PROMPT);
+    
+    private final byte[] bodyPrefix;
+    private final byte[] bodySuffix;
+    private final byte[] structuredBodySuffix;
+    
+    public GeminiPromptBuilder() {
+        Map<String, Object> generationConfig = new LinkedHashMap<>();
+        generationConfig.put("temperature", 0.3); // Lower temperature for more consistent medical advice
+        generationConfig.put("topK", 40);
+        generationConfig.put("topP", 0.95);
+        generationConfig.put("maxOutputTokens", MAX_OUTPUT_TOKENS);
+        
+        Map<String, Object> structuredConfig = new LinkedHashMap<>(generationConfig);
+        structuredConfig.put("responseMimeType", "application/json");
+        structuredConfig.put("responseSchema", recommendationSchema());
+        
+        try {
+            ObjectMapper objectMapper = new ObjectMapper();
+            String config = objectMapper.writeValueAsString(generationConfig);
+            String structured = objectMapper.writeValueAsString(structuredConfig);
+            this.bodyPrefix = "{\"contents\":[{\"parts\":[{\"text\":\"".getBytes(StandardCharsets.UTF_8);
+            this.bodySuffix = ("\"}]}],\"generationConfig\":" + config + "}").getBytes(StandardCharsets.UTF_8);
+            this.structuredBodySuffix = ("\"}]}],\"generationConfig\":" + structured + "}").getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize Gemini generation config", e);
+        }
+    }
+    
+    /**
+     * Schema for the structured mode, in the OpenAPI subset Gemini accepts. Every field is
+     * required so the parser never has to guess.
+     */
+    private static Map<String, Object> recommendationSchema() {
+        Map<String, Object> stringList = Map.of("type", "ARRAY", "items", Map.of("type", "STRING"));
+        
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("severity", Map.of("type", "STRING", "enum", List.of(
+                Recommendation.SEVERITY_LOW, Recommendation.SEVERITY_MODERATE,
+                Recommendation.SEVERITY_HIGH, Recommendation.SEVERITY_EMERGENCY)));
+        properties.put("homeRemedies", stringList);
+        properties.put("otcMedications", stringList);
+        properties.put("warningSigns", stringList);
+        properties.put("whenToConsultDoctor", stringList);
+        properties.put("doctorRecommended", Map.of("type", "BOOLEAN"));
+        
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "OBJECT");
+        schema.put("properties", properties);
+        schema.put("required", List.copyOf(properties.keySet()));
+        schema.put("propertyOrdering", List.copyOf(properties.keySet()));
+        return schema;
+    }
+    
+    public String buildPrompt(String symptoms, UserProfile userProfile, String language) {
+        return buildPrompt(symptoms, userProfile, language, false);
+    }
+    
+    public String buildPrompt(String symptoms, UserProfile userProfile, String language, boolean structured) {
+        return buildPromptWithPatientInfo(symptoms, patientInfo(userProfile, language), language, structured);
+    }
+    
+    /**
+     * The patient information block of the prompt, or an empty string if the profile has no age.
+     * It only depends on the profile and the language, so {@link UserProfileService} keeps it
+     * rendered alongside each cached profile.
+     */
+    public String patientInfo(UserProfile userProfile, String language) {
+        if (userProfile == null || userProfile.getAge() == null) {
+            return "";
+        }
+        Object[] values = new Object[Slot.values().length];
+        values[Slot.AGE.ordinal()] = userProfile.getAge();
+        values[Slot.GENDER.ordinal()] = userProfile.getGender();
+        if (userProfile.getWeight() != null && userProfile.getHeight() != null) {
+            values[Slot.BMI.ordinal()] = userProfile.getBMI();
+        }
+        values[Slot.ALLERGIES.ordinal()] = userProfile.getAllergies();
+        values[Slot.MEDICATIONS.ordinal()] = userProfile.getCurrentMedications();
+        
+        Template patientTemplate = "hi".equals(language) ? hindiPatient : englishPatient;
+        StringBuilder patient = new StringBuilder(patientTemplate.literalLength + 128);
+        patientTemplate.render(patient, values);
+        return patient.toString();
+    }
+    
+    /**
+     * As {@link #buildPrompt(String, UserProfile, String, boolean)}, with the patient block
+     * already rendered by {@link #patientInfo(UserProfile, String)}.
+     */
+    public String buildPromptWithPatientInfo(String symptoms, String patientInfo, String language, boolean structured) {
+        boolean hindi = "hi".equals(language);
+        Object[] values = new Object[Slot.values().length];
+        values[Slot.SYMPTOMS.ordinal()] = symptoms;
+        values[Slot.PATIENT.ordinal()] = patientInfo;
+        
+        Template promptTemplate = structured
+                ? (hindi ? hindiStructuredPrompt : englishStructuredPrompt)
+                : (hindi ? hindiPrompt : englishPrompt);
+        StringBuilder prompt = new StringBuilder(promptTemplate.literalLength + symptoms.length() + patientInfo.length());
+        promptTemplate.render(prompt, values);
+        return prompt.toString();
+    }
+    
+    /**
+     * Request body for {@code prompt}: the prompt is JSON-escaped straight to UTF-8 between the
+     * pre-serialized envelope halves in one exactly sized array, with no intermediate object tree
+     * or escape buffer.
+     */
+    public BodyInserter<Object, ReactiveHttpOutputMessage> requestBody(String prompt) {
+        return requestBody(prompt, false);
+    }
+    
+    /**
+     * As {@link #requestBody(String)}; a {@code structured} body requests a JSON answer that
+     * follows the recommendation schema.
+     */
+    public BodyInserter<Object, ReactiveHttpOutputMessage> requestBody(String prompt, boolean structured) {
+        byte[] bodySuffix = structured ? structuredBodySuffix : this.bodySuffix;
+        return (message, context) -> {
+            byte[] body = new byte[bodyPrefix.length + escapedLength(prompt) + bodySuffix.length];
+            System.arraycopy(bodyPrefix, 0, body, 0, bodyPrefix.length);
+            int end = writeEscaped(prompt, body, bodyPrefix.length);
+            System.arraycopy(bodySuffix, 0, body, end, bodySuffix.length);
+            message.getHeaders().setContentLength(body.length);
+            return message.writeWith(Mono.just(message.bufferFactory().wrap(body)));
+        };
+    }
+    
+    /**
+     * UTF-8 length of {@code text} as a JSON string body, escaped the way Jackson escapes it.
+     * Lone surrogates count as the single {@code ?} they are written as.
+     */
+    static int escapedLength(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += c == '"' || c == '\\' ? 2 : c >= 0x20 ? 1 : shortEscape(c) != 0 ? 2 : 6;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+    
+    /**
+     * Writes {@code text} escaped and UTF-8 encoded at {@code offset}; {@code target} must have
+     * {@link #escapedLength} bytes free there. Returns the offset after the last byte written.
+     */
+    static int writeEscaped(String text, byte[] target, int offset) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    target[offset++] = (byte) c;
+                    continue;
+                }
+                target[offset++] = '\\';
+                char escape = c == '"' || c == '\\' ? c : shortEscape(c);
+                if (escape != 0) {
+                    target[offset++] = (byte) escape;
+                } else {
+                    target[offset++] = 'u';
+                    target[offset++] = '0';
+                    target[offset++] = '0';
+                    target[offset++] = (byte) HEX_DIGITS.charAt(c >> 4);
+                    target[offset++] = (byte) HEX_DIGITS.charAt(c & 0xF);
+                }
+            } else if (c < 0x800) {
+                target[offset++] = (byte) (0xC0 | (c >> 6));
+                target[offset++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                target[offset++] = (byte) (0xF0 | (codePoint >> 18));
+                target[offset++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                target[offset++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                target[offset++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                target[offset++] = '?';
+            } else {
+                target[offset++] = (byte) (0xE0 | (c >> 12));
+                target[offset++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                target[offset++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return offset;
+    }
+    
+    // The two-character escape for a control character, or 0 if it needs the six-character form
+    private static char shortEscape(char c) {
+        switch (c) {
+            case '\b': return 'b';
+            case '\t': return 't';
+            case '\n': return 'n';
+            case '\f': return 'f';
+            case '\r': return 'r';
+            default: return 0;
+        }
+    }
+    
+    /**
+     * Appends {@code value} rounded to one decimal without going through {@code String.format}
+     * (which is slow and would use the JVM locale's decimal separator).
+     */
+    private static void appendOneDecimal(StringBuilder target, double value) {
+        long tenths = Math.round(value * 10);
+        if (tenths < 0) {
+            target.append('-');
+            tenths = -tenths;
+        }
+        target.append(tenths / 10).append('.').append(tenths % 10);
+    }
+    
+    /**
+     * A template split into lines of literal text and {@code {SLOT}} placeholders. Lines whose
+     * slot value is missing (null or an empty list) are skipped when rendering.
+     */
+    private static final class Template {
+        private final List<Object[]> lines;
+        private final int literalLength;
+        
+        private Template(List<Object[]> lines, int literalLength) {
+            this.lines = lines;
+            this.literalLength = literalLength;
+        }
+        
+        static Template compile(String source) {
+            List<Object[]> lines = new ArrayList<>();
+            int literalLength = 0;
+            int lineStart = 0;
+            while (lineStart < source.length()) {
+                int lineEnd = source.indexOf('\n', lineStart);
+                lineEnd = lineEnd < 0 ? source.length() : lineEnd + 1;
+                
+                List<Object> segments = new ArrayList<>();
+                int position = lineStart;
+                while (position < lineEnd) {
+                    int open = source.indexOf('{', position);
+                    int close = open < 0 ? -1 : source.indexOf('}', open);
+                    if (open < 0 || open >= lineEnd || close < 0 || close >= lineEnd) {
+                        segments.add(source.substring(position, lineEnd));
+                        break;
+                    }
+                    if (open > position) {
+                        segments.add(source.substring(position, open));
+                    }
+                    segments.add(Slot.valueOf(source.substring(open + 1, close)));
+                    position = close + 1;
+                }
+                
+                for (Object segment : segments) {
+                    if (segment instanceof String literal) {
+                        literalLength += literal.length();
+                    }
+                }
+                lines.add(segments.toArray());
+                lineStart = lineEnd;
+            }
+            return new Template(lines, literalLength);
+        }
+        
+        void render(StringBuilder target, Object[] values) {
+            for (Object[] line : lines) {
+                if (!hasAllValues(line, values)) {
+                    continue;
+                }
+                for (Object segment : line) {
+                    if (segment instanceof Slot slot) {
+                        appendValue(target, values[slot.ordinal()]);
+                    } else {
+                        target.append((String) segment);
+                    }
+                }
+            }
+        }
+        
+        private static boolean hasAllValues(Object[] line, Object[] values) {
+            for (Object segment : line) {
+                if (segment instanceof Slot slot) {
+                    Object value = values[slot.ordinal()];
+                    if (value == null || (value instanceof List<?> list && list.isEmpty())) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        
+        private static void appendValue(StringBuilder target, Object value) {
+            if (value instanceof Double number) {
+                appendOneDecimal(target, number);
+            } else if (value instanceof List<?> items) {
+                for (int i = 0; i < items.size(); i++) {
+                    if (i > 0) {
+                        target.append(", ");
+                    }
+                    target.append(items.get(i));
+                }
+            } else if (value instanceof CharSequence text) {
+                target.append(text);
+            } else {
+                target.append(value);
+            }
+        }
+    }
+}
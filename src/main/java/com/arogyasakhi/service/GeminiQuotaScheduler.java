@@ -0,0 +1,249 @@
+package com.arogyasakhi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps Gemini usage inside the API key's requests-per-minute and tokens-per-minute quota.
+ *
+ * Each call asks for one request plus an estimated token cost. While both budgets have room
+ * the call proceeds at once; otherwise it waits in a per-chat queue and chats are served
+ * round-robin, so one user sending many consultations cannot starve everyone else.
+ * Queued callers are told their approximate position and wait.
+ */
+@Service
+public class GeminiQuotaScheduler {
+    
+    /**
+     * Notified once when a call has to wait for quota.
+     */
+    public interface QueueListener {
+        QueueListener NONE = (position, estimatedWait) -> {};
+        
+        void onQueued(int position, Duration estimatedWait);
+    }
+    
+    @Value("${gemini.quota.requests-per-minute:15}")
+    private double requestsPerMinute;
+    
+    @Value("${gemini.quota.tokens-per-minute:250000}")
+    private double tokensPerMinute;
+    
+    @Value("${gemini.quota.max-wait-seconds:120}")
+    private long maxWaitSeconds;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final Map<Long, ArrayDeque<Ticket>> queues = new HashMap<>();
+    private final ArrayDeque<Long> rotation = new ArrayDeque<>();
+    
+    private TokenBucket requestBucket;
+    private TokenBucket tokenBucket;
+    private ScheduledExecutorService timer;
+    private ScheduledFuture<?> nextDrain;
+    private int queued;
+    private Counter queuedCounter;
+    private Counter expiredCounter;
+    
+    @PostConstruct
+    public void init() {
+        requestBucket = new TokenBucket(requestsPerMinute, requestsPerMinute / 60d);
+        tokenBucket = new TokenBucket(tokensPerMinute, tokensPerMinute / 60d);
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "gemini-quota");
+            thread.setDaemon(true);
+            return thread;
+        });
+        queuedCounter = meterRegistry.counter("gemini.quota.queued");
+        expiredCounter = meterRegistry.counter("gemini.quota.expired");
+        Gauge.builder("gemini.quota.waiting", this, GeminiQuotaScheduler::getQueued).register(meterRegistry);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+    
+    /**
+     * Rough token cost of a call: ~4 characters per prompt token plus the output budget.
+     */
+    public static int estimateTokens(String prompt, int maxOutputTokens) {
+        return prompt.length() / 4 + maxOutputTokens;
+    }
+    
+    /**
+     * Completes when {@code chatId} may issue a call costing {@code estimatedTokens}. Fails with
+     * {@link QuotaExceededException} if no capacity frees up within the configured maximum wait.
+     */
+    public Mono<Void> acquire(long chatId, int estimatedTokens, QueueListener listener) {
+        return Mono.create(sink -> {
+            // A single call larger than the whole TPM budget would otherwise wait forever
+            Ticket ticket = new Ticket(chatId, Math.min(estimatedTokens, tokensPerMinute), sink);
+            int position;
+            Duration estimatedWait;
+            synchronized (this) {
+                if (queued == 0 && requestBucket.hasTokens(1) && tokenBucket.hasTokens(ticket.tokens)) {
+                    requestBucket.tryAcquire(1);
+                    tokenBucket.tryAcquire(ticket.tokens);
+                    ticket.done = true;
+                    position = 0;
+                    estimatedWait = Duration.ZERO;
+                } else {
+                    ArrayDeque<Ticket> queue = queues.computeIfAbsent(chatId, id -> new ArrayDeque<>());
+                    if (queue.isEmpty()) {
+                        rotation.addLast(chatId);
+                    }
+                    queue.addLast(ticket);
+                    queued++;
+                    position = positionOf(chatId, queue.size() - 1);
+                    estimatedWait = estimateWait(position, ticket.tokens);
+                    scheduleDrain(0);
+                }
+            }
+            
+            if (ticket.done) {
+                sink.success();
+                return;
+            }
+            
+            queuedCounter.increment();
+            System.out.println("⏳ Gemini quota exhausted, chat " + chatId + " queued at position " + position);
+            sink.onCancel(() -> remove(ticket));
+            timer.schedule(() -> expire(ticket), maxWaitSeconds, TimeUnit.SECONDS);
+            try {
+                listener.onQueued(position, estimatedWait);
+            } catch (Exception e) {
+                System.err.println("❌ Error notifying queued user " + chatId + ": " + e.getMessage());
+            }
+        });
+    }
+    
+    public synchronized int getQueued() {
+        return queued;
+    }
+    
+    /**
+     * Round-robin position of the {@code index}-th waiting call of {@code chatId}: every other
+     * chat gets at most {@code index + 1} turns before it.
+     */
+    private int positionOf(long chatId, int index) {
+        int position = index + 1;
+        for (Map.Entry<Long, ArrayDeque<Ticket>> entry : queues.entrySet()) {
+            if (entry.getKey() != chatId) {
+                position += Math.min(entry.getValue().size(), index + 1);
+            }
+        }
+        return position;
+    }
+    
+    private Duration estimateWait(int position, double tokens) {
+        double perRequestSeconds = 60d / requestsPerMinute;
+        double perTokenSeconds = 60d / tokensPerMinute;
+        double seconds = position * Math.max(perRequestSeconds, tokens * perTokenSeconds);
+        return Duration.ofSeconds((long) Math.ceil(seconds));
+    }
+    
+    private void drain() {
+        List<Ticket> granted = new ArrayList<>();
+        synchronized (this) {
+            nextDrain = null;
+            while (!rotation.isEmpty()) {
+                Long chatId = rotation.peekFirst();
+                ArrayDeque<Ticket> queue = queues.get(chatId);
+                Ticket ticket = queue.peekFirst();
+                if (!requestBucket.hasTokens(1) || !tokenBucket.hasTokens(ticket.tokens)) {
+                    long waitNanos = Math.max(requestBucket.nanosUntil(1), tokenBucket.nanosUntil(ticket.tokens));
+                    scheduleDrain(waitNanos);
+                    break;
+                }
+                
+                requestBucket.tryAcquire(1);
+                tokenBucket.tryAcquire(ticket.tokens);
+                queue.pollFirst();
+                queued--;
+                ticket.done = true;
+                granted.add(ticket);
+                
+                rotation.pollFirst();
+                if (queue.isEmpty()) {
+                    queues.remove(chatId);
+                } else {
+                    rotation.addLast(chatId);
+                }
+            }
+        }
+        granted.forEach(ticket -> ticket.sink.success());
+    }
+    
+    private void scheduleDrain(long delayNanos) {
+        if (nextDrain != null && !nextDrain.isDone()) {
+            return;
+        }
+        nextDrain = timer.schedule(this::drain, delayNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    private void expire(Ticket ticket) {
+        if (remove(ticket)) {
+            expiredCounter.increment();
+            System.err.println("❌ Gemini quota wait timed out for chat " + ticket.chatId);
+            ticket.sink.error(new QuotaExceededException());
+        }
+    }
+    
+    private synchronized boolean remove(Ticket ticket) {
+        if (ticket.done) {
+            return false;
+        }
+        ticket.done = true;
+        ArrayDeque<Ticket> queue = queues.get(ticket.chatId);
+        if (queue != null && queue.remove(ticket)) {
+            queued--;
+            if (queue.isEmpty()) {
+                queues.remove(ticket.chatId);
+                rotation.remove(ticket.chatId);
+            }
+        }
+        return true;
+    }
+    
+    private static final class Ticket {
+        private final long chatId;
+        private final double tokens;
+        private final MonoSink<Void> sink;
+        private boolean done;
+        
+        private Ticket(long chatId, double tokens, MonoSink<Void> sink) {
+            this.chatId = chatId;
+            this.tokens = tokens;
+            this.sink = sink;
+        }
+    }
+    
+    public static final class QuotaExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        public QuotaExceededException() {
+            super("AI service is busy, please try again in a few minutes");
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.arogyasakhi.service;
+
+import com.arogyasakhi.model.Recommendation;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streaming extractor for {@code generateContent} responses and SSE chunks.
+ *
+ * Walks the JSON once with a {@link JsonParser} and keeps only the first candidate's text
+ * (all parts concatenated) and finish reason, the error message and the usage token counts.
+ * Everything else, such as safety ratings and citation metadata, is skipped without being
+ * materialized. The same single-pass approach reads the structured-mode JSON answer into a
+ * {@link Recommendation}.
+ */
+@Service
+public class GeminiResponseParser {
+    
+    private final JsonFactory jsonFactory = new JsonFactory();
+    
+    public Result parse(byte[] json) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            return parse(parser);
+        }
+    }
+    
+    public Result parse(String json) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            return parse(parser);
+        }
+    }
+    
+    private Result parse(JsonParser parser) throws IOException {
+        Result result = new Result();
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON object");
+        }
+        
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "candidates":
+                    readCandidates(parser, value, result);
+                    break;
+                case "error":
+                    readError(parser, value, result);
+                    break;
+                case "usageMetadata":
+                    readUsage(parser, value, result);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the JSON object Gemini produced in structured mode. Unknown fields are skipped and
+     * an unrecognized severity is left null; anything that is not a JSON object is an error.
+     */
+    public Recommendation parseRecommendation(String json) throws IOException {
+        Recommendation recommendation = new Recommendation();
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object");
+            }
+            
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "severity":
+                        recommendation.setSeverity(readSeverity(parser, value));
+                        break;
+                    case "homeRemedies":
+                        readStrings(parser, value, recommendation.getHomeRemedies());
+                        break;
+                    case "otcMedications":
+                        readStrings(parser, value, recommendation.getOtcMedications());
+                        break;
+                    case "warningSigns":
+                        readStrings(parser, value, recommendation.getWarningSigns());
+                        break;
+                    case "whenToConsultDoctor":
+                        readStrings(parser, value, recommendation.getWhenToConsultDoctor());
+                        break;
+                    case "doctorRecommended":
+                        recommendation.setDoctorRecommended(value == JsonToken.VALUE_TRUE);
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+        return recommendation;
+    }
+    
+    private static String readSeverity(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.VALUE_STRING) {
+            parser.skipChildren();
+            return null;
+        }
+        String severity = parser.getText().trim().toLowerCase(Locale.ROOT);
+        switch (severity) {
+            case Recommendation.SEVERITY_LOW:
+            case Recommendation.SEVERITY_MODERATE:
+            case Recommendation.SEVERITY_HIGH:
+            case Recommendation.SEVERITY_EMERGENCY:
+                return severity;
+            default:
+                return null;
+        }
+    }
+    
+    private static void readStrings(JsonParser parser, JsonToken value, List<String> target) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                String item = parser.getText().trim();
+                if (!item.isEmpty()) {
+                    target.add(item);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+    
+    private void readCandidates(JsonParser parser, JsonToken value, Result result) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        
+        boolean first = true;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            result.candidateCount++;
+            if (first && parser.currentToken() == JsonToken.START_OBJECT) {
+                readCandidate(parser, result);
+            } else {
+                parser.skipChildren();
+            }
+            first = false;
+        }
+    }
+    
+    private void readCandidate(JsonParser parser, Result result) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("finishReason".equals(field) && value == JsonToken.VALUE_STRING) {
+                result.finishReason = parser.getText();
+            } else if ("content".equals(field) && value == JsonToken.START_OBJECT) {
+                readContent(parser, result);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+    
+    private void readContent(JsonParser parser, Result result) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (!"parts".equals(field) || value != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String partField = parser.currentName();
+                    JsonToken partValue = parser.nextToken();
+                    if ("text".equals(partField) && partValue == JsonToken.VALUE_STRING) {
+                        // Copy straight from the parser's buffer instead of materializing a String per part
+                        int length = parser.getTextLength();
+                        if (result.text == null) {
+                            result.text = new StringBuilder(length + 16);
+                        }
+                        result.text.append(parser.getTextCharacters(), parser.getTextOffset(), length);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+    }
+    
+    private void readError(JsonParser parser, JsonToken value, Result result) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            result.errorMessage = value == JsonToken.VALUE_STRING ? parser.getText() : "Unknown API error";
+            parser.skipChildren();
+            return;
+        }
+        
+        result.errorMessage = "Unknown API error";
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken fieldValue = parser.nextToken();
+            if ("message".equals(field) && fieldValue == JsonToken.VALUE_STRING) {
+                result.errorMessage = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+    
+    private void readUsage(JsonParser parser, JsonToken value, Result result) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken fieldValue = parser.nextToken();
+            if (fieldValue != JsonToken.VALUE_NUMBER_INT) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "promptTokenCount":
+                    result.promptTokens = parser.getIntValue();
+                    break;
+                case "candidatesTokenCount":
+                    result.outputTokens = parser.getIntValue();
+                    break;
+                case "totalTokenCount":
+                    result.totalTokens = parser.getIntValue();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+    
+    /**
+     * The fields of a Gemini response the bot uses. Token counts are -1 when the response did
+     * not include {@code usageMetadata} (streamed chunks only carry it on some events).
+     */
+    public static final class Result {
+        private StringBuilder text;
+        private String finishReason;
+        private String errorMessage;
+        private int candidateCount;
+        private int promptTokens = -1;
+        private int outputTokens = -1;
+        private int totalTokens = -1;
+        
+        public String getText() {
+            return text != null ? text.toString() : "";
+        }
+        
+        public String getFinishReason() {
+            return finishReason;
+        }
+        
+        public boolean isBlocked() {
+            return "SAFETY".equals(finishReason);
+        }
+        
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+        
+        public int getCandidateCount() {
+            return candidateCount;
+        }
+        
+        public int getPromptTokens() {
+            return promptTokens;
+        }
+        
+        public int getOutputTokens() {
+            return outputTokens;
+        }
+        
+        public int getTotalTokens() {
+            return totalTokens;
+        }
+        
+        public boolean hasUsage() {
+            return totalTokens >= 0;
+        }
+    }
+}
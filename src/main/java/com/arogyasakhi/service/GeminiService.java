@@ -1,281 +1,454 @@
 package com.arogyasakhi.service;
 
+import com.arogyasakhi.model.Recommendation;
 import com.arogyasakhi.model.UserProfile;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 @Service
 public class GeminiService {
     
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE =
+            new ParameterizedTypeReference<>() {};
+    
     @Value("${gemini.api.key}")
     private String apiKey;
     
     @Value("${gemini.api.url}")
     private String apiUrl;
     
+    @Value("${gemini.api.stream-url:}")
+    private String streamUrl;
+    
+    @Value("${gemini.structured-output.enabled:false}")
+    private boolean structuredOutput;
+    
+    @Autowired
+    private RecommendationCache recommendationCache;
+    
+    @Autowired
+    private GeminiPromptBuilder promptBuilder;
+    
+    @Autowired
+    private UserProfileService userProfileService;
+    
+    @Autowired
+    private GeminiResponseParser responseParser;
+    
+    @Autowired
+    private RecommendationRenderer recommendationRenderer;
+    
+    @Autowired
+    private InFlightRequestRegistry inFlightRequests;
+    
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    
+    @Autowired
+    private CircuitBreaker circuitBreaker;
+    
+    @Autowired
+    private GeminiQuotaScheduler quotaScheduler;
+    
     private final WebClient webClient;
-    private final ObjectMapper objectMapper;
     
     public GeminiService() {
         this.webClient = WebClient.builder()
                 .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(2 * 1024 * 1024))
                 .build();
-        this.objectMapper = new ObjectMapper();
     }
     
+    /**
+     * Blocking adapter over {@link #recommendAsync}, kept for callers that are not reactive.
+     */
     public String getHealthRecommendation(String symptoms, UserProfile userProfile, String language) {
-        try {
-            System.out.println("🔍 Starting health recommendation...");
-            System.out.println("🔑 API Key present: " + (apiKey != null && !apiKey.isEmpty()));
-            System.out.println("🌐 API URL: " + apiUrl);
-            System.out.println("📝 Symptoms: " + symptoms);
-            System.out.println("🗣️ Language: " + language);
-            
-            // Validate inputs
-            if (apiKey == null || apiKey.trim().isEmpty()) {
-                System.err.println("❌ Gemini API key is missing!");
-                return getErrorMessage(language, "API key not configured");
-            }
-            
-            if (symptoms == null || symptoms.trim().isEmpty()) {
-                return getErrorMessage(language, "No symptoms provided");
-            }
-            
-            String prompt = buildDetailedHealthPrompt(symptoms, userProfile, language);
-            System.out.println("📝 Prompt length: " + prompt.length());
-            
-            Map<String, Object> requestBody = buildRequestBody(prompt);
-            
-            // Log the request body for debugging
-            String requestJson = objectMapper.writeValueAsString(requestBody);
-            System.out.println("📤 Request JSON length: " + requestJson.length());
-            
-            String fullUrl = apiUrl + "?key=" + apiKey;
+        return recommendAsync(symptoms, userProfile, language).block();
+    }
+    
+    /**
+     * Requests a recommendation without blocking: request building and response parsing
+     * happen on the reactive chain. The result is Gemini's raw text; rendering it for Telegram
+     * is up to the caller. The returned Mono never errors; failures are turned into the
+     * localized error message.
+     */
+    public Mono<String> recommendAsync(String symptoms, UserProfile userProfile, String language) {
+        return recommendAsync(symptoms, userProfile, language, GeminiQuotaScheduler.QueueListener.NONE);
+    }
+    
+    /**
+     * As {@link #recommendAsync(String, UserProfile, String)}; {@code queueListener} is told the
+     * queue position if the call has to wait for API quota.
+     */
+    public Mono<String> recommendAsync(String symptoms, UserProfile userProfile, String language,
+                                       GeminiQuotaScheduler.QueueListener queueListener) {
+        System.out.println("🔍 Starting health recommendation...");
+        System.out.println("📝 Symptoms: " + symptoms);
+        System.out.println("🗣️ Language: " + language);
+        
+        // Validate inputs
+        if (apiKey == null || apiKey.trim().isEmpty()) {
+            System.err.println("❌ Gemini API key is missing!");
+            return Mono.just(getErrorMessage(language, "API key not configured"));
+        }
+        
+        if (symptoms == null || symptoms.trim().isEmpty()) {
+            return Mono.just(getErrorMessage(language, "No symptoms provided"));
+        }
+        
+        String cacheKey = recommendationCache.keyFor(symptoms, userProfile, language);
+        Optional<String> cached = recommendationCache.get(cacheKey);
+        if (cached.isPresent()) {
+            System.out.println("⚡ Recommendation served from cache");
+            return Mono.just(cached.get());
+        }
+        
+        String prompt = promptBuilder.buildPromptWithPatientInfo(symptoms,
+                userProfileService.patientInfo(userProfile, language), language, false);
+        System.out.println("📝 Prompt length: " + prompt.length());
+        
+        // Identical prompts already on the wire share that call instead of issuing another
+        return inFlightRequests.join(inFlightRequests.keyFor("generate", prompt),
+                        () -> generate(prompt, cacheKey, false, chatIdOf(userProfile), queueListener))
+                .defaultIfEmpty("No response received from AI service.")
+                .doOnNext(recommendation -> System.out.println("✅ Health recommendation generated successfully"))
+                .onErrorResume(e -> Mono.just(describeError(e, language)));
+    }
+    
+    /**
+     * Whether recommendations should be requested in structured (JSON) mode. Structured answers
+     * cannot be shown while they stream, so callers use {@link #recommendStructuredAsync} instead
+     * of {@link #streamHealthRecommendation} in this mode.
+     */
+    public boolean isStructuredOutputEnabled() {
+        return structuredOutput;
+    }
+    
+    /**
+     * Requests a recommendation in structured mode: Gemini answers with JSON following the
+     * recommendation schema, which is parsed into a {@link Recommendation} and rendered into
+     * its text. Like {@link #recommendAsync}, the returned Mono never errors; failures become
+     * an unstructured recommendation holding the localized error message.
+     */
+    public Mono<Recommendation> recommendStructuredAsync(String symptoms, UserProfile userProfile, String language,
+                                                         GeminiQuotaScheduler.QueueListener queueListener) {
+        System.out.println("🔍 Starting structured health recommendation...");
+        
+        if (apiKey == null || apiKey.trim().isEmpty()) {
+            System.err.println("❌ Gemini API key is missing!");
+            return Mono.just(Recommendation.unstructured(getErrorMessage(language, "API key not configured")));
+        }
+        
+        if (symptoms == null || symptoms.trim().isEmpty()) {
+            return Mono.just(Recommendation.unstructured(getErrorMessage(language, "No symptoms provided")));
+        }
+        
+        String cacheKey = recommendationCache.keyFor(symptoms, userProfile, language, true);
+        Optional<String> cached = recommendationCache.get(cacheKey);
+        if (cached.isPresent()) {
+            System.out.println("⚡ Recommendation served from cache");
+            return Mono.fromCallable(() -> toRecommendation(cached.get(), language))
+                    .onErrorResume(e -> Mono.just(Recommendation.unstructured(describeError(e, language))));
+        }
+        
+        String prompt = promptBuilder.buildPromptWithPatientInfo(symptoms,
+                userProfileService.patientInfo(userProfile, language), language, true);
+        return inFlightRequests.join(inFlightRequests.keyFor("generate-json", prompt),
+                        () -> generate(prompt, cacheKey, true, chatIdOf(userProfile), queueListener))
+                .map(json -> toRecommendation(json, language))
+                .defaultIfEmpty(Recommendation.unstructured("No response received from AI service."))
+                .doOnNext(recommendation -> System.out.println("✅ Structured recommendation generated, severity: "
+                        + recommendation.getSeverity()))
+                .onErrorResume(e -> Mono.just(Recommendation.unstructured(describeError(e, language))));
+    }
+    
+    private Mono<String> generate(String prompt, String cacheKey, boolean structured, long chatId,
+                                  GeminiQuotaScheduler.QueueListener queueListener) {
+        String fullUrl = apiUrl + "?key=" + apiKey;
+        
+        return guarded(chatId, prompt, queueListener, () -> webClient.post()
+                .uri(fullUrl)
+                .header("Content-Type", "application/json")
+                .header("User-Agent", "Arogya-Sakhi-Bot/1.0")
+                .body(promptBuilder.requestBody(prompt, structured))
+                .retrieve()
+                .bodyToMono(byte[].class)
+                .timeout(Duration.ofSeconds(30))
+                .map(responseBody -> {
+                    System.out.println("📥 Response received, length: " + responseBody.length);
+                    String text = extractResponseText(responseBody);
+                    if (structured) {
+                        // Only a well-formed answer is cached, and the severity field decides the emergency bypass
+                        Recommendation recommendation = parseRecommendation(text);
+                        recommendationCache.put(cacheKey, text,
+                                Recommendation.SEVERITY_EMERGENCY.equals(recommendation.getSeverity()));
+                    } else {
+                        recommendationCache.put(cacheKey, text);
+                    }
+                    return text;
+                })
+                .flux())
+                .singleOrEmpty();
+    }
+    
+    /**
+     * Streams the recommendation via {@code streamGenerateContent} (SSE). Each element is the
+     * raw text generated so far, so the last element is the complete recommendation.
+     * Failures end the stream with a localized error message instead of an error signal.
+     */
+    public Flux<String> streamHealthRecommendation(String symptoms, UserProfile userProfile, String language) {
+        return streamHealthRecommendation(symptoms, userProfile, language, GeminiQuotaScheduler.QueueListener.NONE);
+    }
+    
+    public Flux<String> streamHealthRecommendation(String symptoms, UserProfile userProfile, String language,
+                                                   GeminiQuotaScheduler.QueueListener queueListener) {
+        if (apiKey == null || apiKey.trim().isEmpty()) {
+            System.err.println("❌ Gemini API key is missing!");
+            return Flux.just(getErrorMessage(language, "API key not configured"));
+        }
+        
+        if (symptoms == null || symptoms.trim().isEmpty()) {
+            return Flux.just(getErrorMessage(language, "No symptoms provided"));
+        }
+        
+        String cacheKey = recommendationCache.keyFor(symptoms, userProfile, language);
+        Optional<String> cached = recommendationCache.get(cacheKey);
+        if (cached.isPresent()) {
+            System.out.println("⚡ Recommendation served from cache");
+            return Flux.just(cached.get());
+        }
+        
+        String prompt = promptBuilder.buildPromptWithPatientInfo(symptoms,
+                userProfileService.patientInfo(userProfile, language), language, false);
+        return inFlightRequests.joinStream(inFlightRequests.keyFor("stream", prompt),
+                        () -> generateStream(prompt, cacheKey, chatIdOf(userProfile), queueListener))
+                .onErrorResume(e -> Flux.just(describeError(e, language)));
+    }
+    
+    private Flux<String> generateStream(String prompt, String cacheKey, long chatId, GeminiQuotaScheduler.QueueListener queueListener) {
+        return Flux.defer(() -> {
+            System.out.println("🔍 Starting streamed health recommendation...");
+            String fullUrl = getStreamUrl() + "?alt=sse&key=" + apiKey;
+            StringBuilder generated = new StringBuilder();
+            boolean[] blocked = {false};
             
-            Mono<String> responseMono = webClient.post()
+            return guarded(chatId, prompt, queueListener, () -> webClient.post()
                     .uri(fullUrl)
                     .header("Content-Type", "application/json")
                     .header("User-Agent", "Arogya-Sakhi-Bot/1.0")
-                    .bodyValue(requestBody)
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .body(promptBuilder.requestBody(prompt))
                     .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofSeconds(30));
-            
-            String responseBody = responseMono.block();
-            System.out.println("📥 Response received, length: " + (responseBody != null ? responseBody.length() : 0));
-            
-            String recommendation = parseGeminiResponse(responseBody);
-            System.out.println("✅ Health recommendation generated successfully");
-            
-            return recommendation;
-            
-        } catch (WebClientResponseException e) {
-            System.err.println("❌ Gemini API Error:");
-            System.err.println("   Status: " + e.getStatusCode());
-            System.err.println("   Response: " + e.getResponseBodyAsString());
+                    .bodyToFlux(SSE_TYPE)
+                    .timeout(Duration.ofSeconds(30)))
+                    .<String>handle((event, sink) -> {
+                        GeminiResponseParser.Result chunk = parseStreamChunk(event.data());
+                        if (chunk == null) {
+                            return;
+                        }
+                        if (chunk.isBlocked()) {
+                            blocked[0] = true;
+                            sink.next("Response was blocked due to safety filters. Please rephrase your symptoms or consult a healthcare professional directly.");
+                            sink.complete();
+                            return;
+                        }
+                        String text = chunk.getText();
+                        if (!text.isEmpty()) {
+                            generated.append(text);
+                            sink.next(generated.toString().trim());
+                        }
+                    })
+                    .switchIfEmpty(Flux.just("Unable to process the AI response. Please try again."))
+                    .doOnComplete(() -> {
+                        System.out.println("✅ Streamed health recommendation completed, length: " + generated.length());
+                        if (!blocked[0]) {
+                            recommendationCache.put(cacheKey, generated.toString().trim());
+                        }
+                    });
+        });
+    }
+    
+    /**
+     * Runs an upstream call behind the circuit breaker, the API quota and the adaptive
+     * concurrency limit. While the circuit is open the call fails immediately with
+     * {@link CircuitBreaker.OpenException}, before it can take a place in the quota queue.
+     */
+    private <T> Flux<T> guarded(long chatId, String prompt, GeminiQuotaScheduler.QueueListener queueListener,
+                                Supplier<Flux<T>> call) {
+        return Flux.defer(() -> {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                return Flux.error(new CircuitBreaker.OpenException());
+            }
             
-            // Try to parse error response
+            int estimatedTokens = GeminiQuotaScheduler.estimateTokens(prompt, GeminiPromptBuilder.MAX_OUTPUT_TOKENS);
+            return quotaScheduler.acquire(chatId, estimatedTokens, queueListener)
+                    .thenMany(concurrencyLimiter.execute(call, GeminiService::isUpstreamFailure))
+                    .doOnComplete(circuitBreaker::onSuccess)
+                    .doOnError(e -> {
+                        if (isUpstreamFailure(e)) {
+                            circuitBreaker.onFailure();
+                        } else if (e instanceof AdaptiveConcurrencyLimiter.LimitExceededException
+                                || e instanceof GeminiQuotaScheduler.QuotaExceededException) {
+                            circuitBreaker.onIgnored();
+                        } else {
+                            // The API answered, even if the answer was unusable
+                            circuitBreaker.onSuccess();
+                        }
+                    })
+                    .doOnCancel(circuitBreaker::onIgnored);
+        });
+    }
+    
+    private static long chatIdOf(UserProfile userProfile) {
+        return userProfile != null && userProfile.getChatId() != null ? userProfile.getChatId() : 0L;
+    }
+    
+    private static boolean isUpstreamFailure(Throwable e) {
+        if (e instanceof WebClientResponseException responseException) {
+            int status = responseException.getStatusCode().value();
+            return status == 429 || status >= 500;
+        }
+        return e instanceof TimeoutException || e instanceof WebClientRequestException;
+    }
+    
+    private String getStreamUrl() {
+        if (streamUrl != null && !streamUrl.isEmpty()) {
+            return streamUrl;
+        }
+        return apiUrl.replace(":generateContent", ":streamGenerateContent");
+    }
+    
+    private GeminiResponseParser.Result parseStreamChunk(String data) {
+        if (data == null || data.isEmpty()) {
+            return null;
+        }
+        
+        try {
+            GeminiResponseParser.Result chunk = responseParser.parse(data);
+            if (chunk.getFinishReason() != null) {
+                // Usage is repeated on every chunk; the one carrying the finish reason has the totals
+                logUsage(chunk);
+            }
+            return chunk;
+        } catch (Exception e) {
+            System.err.println("❌ Error parsing Gemini stream chunk: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private String describeError(Throwable e, String language) {
+        if (e instanceof UnusableResponseException) {
+            return e.getMessage();
+        }
+        
+        if (e instanceof CircuitBreaker.OpenException
+                || e instanceof AdaptiveConcurrencyLimiter.LimitExceededException
+                || e instanceof GeminiQuotaScheduler.QuotaExceededException) {
+            return getErrorMessage(language, e.getMessage());
+        }
+        
+        if (e instanceof WebClientResponseException responseException) {
+            System.err.println("❌ Gemini API Error: " + responseException.getStatusCode());
             try {
-                JsonNode errorResponse = objectMapper.readTree(e.getResponseBodyAsString());
-                if (errorResponse.has("error")) {
-                    JsonNode error = errorResponse.get("error");
-                    String errorMessage = error.has("message") ? error.get("message").asText() : "Unknown error";
-                    System.err.println("   Error message: " + errorMessage);
-                    return getErrorMessage(language, "API Error: " + errorMessage);
+                String message = responseParser.parse(responseException.getResponseBodyAsByteArray()).getErrorMessage();
+                if (message != null) {
+                    return getErrorMessage(language, "API Error: " + message);
                 }
             } catch (Exception parseError) {
                 System.err.println("   Could not parse error response: " + parseError.getMessage());
             }
-            
-            return getErrorMessage(language, "API Error: " + e.getStatusCode());
-            
-        } catch (Exception e) {
-            System.err.println("❌ Unexpected error in health recommendation: " + e.getMessage());
-            e.printStackTrace();
-            return getErrorMessage(language, "Unexpected error: " + e.getMessage());
+            return getErrorMessage(language, "API Error: " + responseException.getStatusCode());
         }
+        
+        System.err.println("❌ Unexpected error in health recommendation: " + e.getMessage());
+        return getErrorMessage(language, "Unexpected error: " + e.getMessage());
     }
     
-    private Map<String, Object> buildRequestBody(String prompt) {
-        Map<String, Object> requestBody = new HashMap<>();
+    /**
+     * Returns the generated text, or throws {@link UnusableResponseException} carrying the
+     * message to show the user when the response holds no usable answer.
+     */
+    private String extractResponseText(byte[] responseBody) {
+        if (responseBody == null || responseBody.length == 0) {
+            System.err.println("❌ Empty response from Gemini API");
+            throw new UnusableResponseException("No response received from AI service.");
+        }
         
-        // Contents array
-        Map<String, Object> content = new HashMap<>();
-        Map<String, Object> part = new HashMap<>();
-        part.put("text", prompt);
-        content.put("parts", List.of(part));
-        requestBody.put("contents", List.of(content));
+        GeminiResponseParser.Result response;
+        try {
+            response = responseParser.parse(responseBody);
+        } catch (Exception e) {
+            System.err.println("❌ Error parsing Gemini response: " + e.getMessage());
+            throw new UnusableResponseException("Error processing AI response: " + e.getMessage());
+        }
         
-        // Generation config for better medical responses
-        Map<String, Object> generationConfig = new HashMap<>();
-        generationConfig.put("temperature", 0.3); // Lower temperature for more consistent medical advice
-        generationConfig.put("topK", 40);
-        generationConfig.put("topP", 0.95);
-        generationConfig.put("maxOutputTokens", 500);
-        requestBody.put("generationConfig", generationConfig);
+        // Check for error in response
+        if (response.getErrorMessage() != null) {
+            System.err.println("❌ Gemini API returned error: " + response.getErrorMessage());
+            throw new UnusableResponseException("AI service error: " + response.getErrorMessage());
+        }
         
-        return requestBody;
-    }
-    
-    private String buildDetailedHealthPrompt(String symptoms, UserProfile userProfile, String language) {
-        StringBuilder prompt = new StringBuilder();
+        logUsage(response);
+        if (response.getFinishReason() != null) {
+            System.out.println("📋 Finish reason: " + response.getFinishReason());
+        }
+        if (response.isBlocked()) {
+            throw new UnusableResponseException("Response was blocked due to safety filters. Please rephrase your symptoms or consult a healthcare professional directly.");
+        }
         
-        if ("hi".equals(language)) {
-            prompt.append("आप एक अनुभवी डॉक्टर हैं। मरीज के लक्षणों के लिए विस्तृत सलाह दें।\n\n");
-            
-            // Add patient information
-            if (userProfile != null && userProfile.getAge() != null) {
-                prompt.append("मरीज की जानकारी:\n");
-                prompt.append("- उम्र: ").append(userProfile.getAge()).append(" साल\n");
-                if (userProfile.getGender() != null) {
-                    prompt.append("- लिंग: ").append(userProfile.getGender()).append("\n");
-                }
-                if (userProfile.getWeight() != null && userProfile.getHeight() != null) {
-                    prompt.append("- BMI: ").append(String.format("%.1f", userProfile.getBMI())).append("\n");
-                }
-                if (userProfile.getAllergies() != null && !userProfile.getAllergies().isEmpty()) {
-                    prompt.append("- एलर्जी: ").append(String.join(", ", userProfile.getAllergies())).append("\n");
-                }
-                if (userProfile.getCurrentMedications() != null && !userProfile.getCurrentMedications().isEmpty()) {
-                    prompt.append("- वर्तमान दवाएं: ").append(String.join(", ", userProfile.getCurrentMedications())).append("\n");
-                }
-                prompt.append("\n");
-            }
-            
-            prompt.append("लक्षण: ").append(symptoms).append("\n\n");
-            prompt.append("कृपया निम्नलिखित प्रारूप में विस्तृत सलाह दें:\n\n");
-            prompt.append("🔍 गंभीरता का स्तर: (कम/मध्यम/उच्च/आपातकाल)\n\n");
-            prompt.append("🏠 घरेलू उपचार:\n");
-            prompt.append("- तुरंत राहत के लिए क्या करें\n");
-            prompt.append("- प्राकृतिक उपचार\n");
-            prompt.append("- आहार संबंधी सुझाव\n");
-            prompt.append("- जीवनशैली में बदलाव\n\n");
-            prompt.append("💊 दवा सुझाव (बिना पर्चे वाली):\n");
-            prompt.append("- दर्द निवारक दवाएं\n");
-            prompt.append("- खुराक और समय\n");
-            prompt.append("- सावधानियां\n\n");
-            prompt.append("⚠️ चेतावनी संकेत:\n");
-            prompt.append("- तुरंत डॉक्टर से मिलें यदि\n");
-            prompt.append("- आपातकालीन स्थितियां\n\n");
-            prompt.append("📞 कब डॉक्टर से संपर्क करें:\n");
-            prompt.append("- लक्षण बिगड़ने पर\n");
-            prompt.append("- कितने दिन बाद\n\n");
-            prompt.append("महत्वपूर्ण: यह केवल सामान्य सलाह है। गंभीर स्थिति में तुरंत चिकित्सक से संपर्क करें।");
-            
-        } else {
-            prompt.append("You are an experienced doctor. Provide detailed medical advice for the patient's symptoms.\n\n");
-            
-            // Add patient information
-            if (userProfile != null && userProfile.getAge() != null) {
-                prompt.append("Patient Information:\n");
-                prompt.append("- Age: ").append(userProfile.getAge()).append(" years\n");
-                if (userProfile.getGender() != null) {
-                    prompt.append("- Gender: ").append(userProfile.getGender()).append("\n");
-                }
-                if (userProfile.getWeight() != null && userProfile.getHeight() != null) {
-                    prompt.append("- BMI: ").append(String.format("%.1f", userProfile.getBMI())).append("\n");
-                }
-                if (userProfile.getAllergies() != null && !userProfile.getAllergies().isEmpty()) {
-                    prompt.append("- Allergies: ").append(String.join(", ", userProfile.getAllergies())).append("\n");
-                }
-                if (userProfile.getCurrentMedications() != null && !userProfile.getCurrentMedications().isEmpty()) {
-                    prompt.append("- Current Medications: ").append(String.join(", ", userProfile.getCurrentMedications())).append("\n");
-                }
-                prompt.append("\n");
-            }
-            
-            prompt.append("Symptoms: ").append(symptoms).append("\n\n");
-            prompt.append("Please provide detailed advice in the following format:\n\n");
-            prompt.append("🔍 SEVERITY LEVEL: (Low/Moderate/High/Emergency)\n\n");
-            prompt.append("🏠 HOME REMEDIES:\n");
-            prompt.append("- Immediate relief measures\n");
-            prompt.append("- Natural treatments\n");
-            prompt.append("- Dietary recommendations\n");
-            prompt.append("- Lifestyle modifications\n\n");
-            prompt.append("💊 MEDICATION SUGGESTIONS (Over-the-counter):\n");
-            prompt.append("- Pain relievers/fever reducers\n");
-            prompt.append("- Dosage and timing\n");
-            prompt.append("- Precautions and contraindications\n\n");
-            prompt.append("⚠️ WARNING SIGNS:\n");
-            prompt.append("- When to seek immediate medical attention\n");
-            prompt.append("- Emergency symptoms to watch for\n\n");
-            prompt.append("📞 WHEN TO CONSULT A DOCTOR:\n");
-            prompt.append("- If symptoms worsen\n");
-            prompt.append("- Timeline for medical consultation\n\n");
-            prompt.append("IMPORTANT: This is general medical advice only. Seek immediate professional medical care for serious conditions.");
+        String text = response.getText().trim();
+        if (!text.isEmpty()) {
+            System.out.println("✅ Successfully parsed response");
+            return text;
         }
         
-        return prompt.toString();
+        // Summarize instead of dumping the body, which can be large and may echo the patient's data
+        System.err.println("❌ Could not find valid content in response (candidates: " + response.getCandidateCount()
+                + ", finish reason: " + response.getFinishReason() + ", " + responseBody.length + " bytes)");
+        throw new UnusableResponseException("Unable to process the AI response. Please try again.");
+    }
+    
+    private Recommendation toRecommendation(String json, String language) {
+        Recommendation recommendation = parseRecommendation(json);
+        recommendation.setText(recommendationRenderer.render(recommendation, language));
+        return recommendation;
     }
     
-    private String parseGeminiResponse(String responseBody) {
+    private Recommendation parseRecommendation(String json) {
+        Recommendation recommendation;
         try {
-            if (responseBody == null || responseBody.trim().isEmpty()) {
-                System.err.println("❌ Empty response from Gemini API");
-                return "No response received from AI service.";
-            }
-            
-            JsonNode root = objectMapper.readTree(responseBody);
-            
-            // Check for error in response
-            if (root.has("error")) {
-                JsonNode error = root.get("error");
-                String errorMessage = error.has("message") ? error.get("message").asText() : "Unknown API error";
-                System.err.println("❌ Gemini API returned error: " + errorMessage);
-                return "AI service error: " + errorMessage;
-            }
-            
-            // Parse successful response
-            JsonNode candidates = root.get("candidates");
-            if (candidates != null && candidates.isArray() && candidates.size() > 0) {
-                JsonNode firstCandidate = candidates.get(0);
-                
-                // Check finish reason
-                if (firstCandidate.has("finishReason")) {
-                    String finishReason = firstCandidate.get("finishReason").asText();
-                    System.out.println("📋 Finish reason: " + finishReason);
-                    
-                    if ("SAFETY".equals(finishReason)) {
-                        return "Response was blocked due to safety filters. Please rephrase your symptoms or consult a healthcare professional directly.";
-                    }
-                }
-                
-                JsonNode content = firstCandidate.get("content");
-                if (content != null && content.has("parts")) {
-                    JsonNode parts = content.get("parts");
-                    if (parts.isArray() && parts.size() > 0) {
-                        JsonNode firstPart = parts.get(0);
-                        if (firstPart.has("text")) {
-                            String text = firstPart.get("text").asText();
-                            if (text != null && !text.trim().isEmpty()) {
-                                System.out.println("✅ Successfully parsed response");
-                                // Format the response for better readability
-                                String formattedText = formatResponseText(text.trim());
-                                return formattedText;
-                            }
-                        }
-                    }
-                }
-            }
-            
-            System.err.println("❌ Could not find valid content in response");
-            System.err.println("Response structure: " + root.toString());
-            return "Unable to process the AI response. Please try again.";
-            
+            recommendation = responseParser.parseRecommendation(json);
         } catch (Exception e) {
-            System.err.println("❌ Error parsing Gemini response: " + e.getMessage());
-            e.printStackTrace();
-            return "Error processing AI response: " + e.getMessage();
+            // Typically an answer cut off by maxOutputTokens
+            System.err.println("❌ Error parsing structured recommendation: " + e.getMessage());
+            throw new UnusableResponseException("Unable to process the AI response. Please try again.");
+        }
+        
+        if (recommendation.getSeverity() == null && recommendation.getHomeRemedies().isEmpty()
+                && recommendation.getOtcMedications().isEmpty() && recommendation.getWarningSigns().isEmpty()) {
+            System.err.println("❌ Structured recommendation has no usable fields");
+            throw new UnusableResponseException("Unable to process the AI response. Please try again.");
+        }
+        return recommendation;
+    }
+    
+    private void logUsage(GeminiResponseParser.Result response) {
+        if (response.hasUsage()) {
+            System.out.println("📊 Gemini tokens - prompt: " + response.getPromptTokens()
+                    + ", output: " + response.getOutputTokens() + ", total: " + response.getTotalTokens());
         }
     }
     
@@ -290,35 +463,15 @@ public class GeminiService {
                    "Error: " + error;
         }
     }
-
-    private String formatResponseText(String text) {
-        // Remove excessive asterisks and format properly
-        String formatted = text
-                // Replace **text** with bold formatting for Telegram
-                .replaceAll("\\*\\*([^*]+)\\*\\*", "*$1*")
-                // Replace single asterisks with bullet points
-                .replaceAll("(?m)^\\s*\\*\\s*", "• ")
-                // Clean up multiple asterisks
-                .replaceAll("\\*{3,}", "")
-                // Format section headers
-                .replaceAll("(?i)🔍\\s*SEVERITY LEVEL:", "\n🔍 *SEVERITY LEVEL:*")
-                .replaceAll("(?i)🏠\\s*HOME REMEDIES:", "\n🏠 *HOME REMEDIES:*")
-                .replaceAll("(?i)💊\\s*MEDICATION SUGGESTIONS:", "\n💊 *MEDICATION SUGGESTIONS:*")
-                .replaceAll("(?i)⚠️\\s*WARNING SIGNS:", "\n⚠️ *WARNING SIGNS:*")
-                .replaceAll("(?i)📞\\s*WHEN TO CONSULT:", "\n📞 *WHEN TO CONSULT A DOCTOR:*")
-                .replaceAll("(?i)IMPORTANT:", "\n⚠️ *IMPORTANT:*")
-                // Format Hindi headers
-                .replaceAll("(?i)🔍\\s*गंभीरता का स्तर:", "\n🔍 *गंभीरता का स्तर:*")
-                .replaceAll("(?i)🏠\\s*घरेलू उपचार:", "\n🏠 *घरेलू उपचार:*")
-                .replaceAll("(?i)💊\\s*दवा सुझाव:", "\n💊 *दवा सुझाव:*")
-                .replaceAll("(?i)⚠️\\s*चेतावनी संकेत:", "\n⚠️ *चेतावनी संकेत:*")
-                .replaceAll("(?i)📞\\s*कब डॉक्टर से संपर्क करें:", "\n📞 *कब डॉक्टर से संपर्क करें:*")
-                .replaceAll("(?i)महत्वपूर्ण:", "\n⚠️ *महत्वपूर्ण:*")
-                // Clean up extra newlines
-                .replaceAll("\n{3,}", "\n\n")
-                // Ensure proper spacing after emojis
-                .replaceAll("([🔍🏠💊⚠️📞])([^\\s])", "$1 $2");
+    
+    /**
+     * A response that arrived but cannot be used; the message is shown to the user as is.
+     */
+    private static final class UnusableResponseException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
         
-        return formatted.trim();
+        private UnusableResponseException(String message) {
+            super(message);
+        }
     }
 }
@@ -0,0 +1,280 @@
+package com.arogyasakhi.service;
+
+import com.arogyasakhi.model.ConsultationBucket;
+import com.arogyasakhi.model.HealthConsultation;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Pages through a user's consultation history, newest first.
+ *
+ * Pages are keyset-paginated on {@code (consultation_time, _id)}: a page is addressed by the
+ * key of the consultation next to it rather than by an offset, so each page is one indexed
+ * range scan of {@code page-size + 1} documents on {@code (chat_id, consultation_time, _id)},
+ * however long the history is. The id breaks ties between consultations saved within the same
+ * millisecond, which a cursor on the time alone would skip. Only the fields the history view
+ * shows are fetched; the recommendation text, by far the largest field, never leaves the server.
+ *
+ * Consultations older than the archive horizon may have been moved to monthly buckets by
+ * {@link ConsultationArchiver}. Buckets are read only when the hot collection cannot fill a
+ * page, newest bucket first and one at a time, with the compressed details left out.
+ */
+@Service
+public class HealthHistoryService {
+    
+    private static final String[] SUMMARY_FIELDS = {"consultation_time", "symptoms", "severity", "doctor_recommended"};
+    private static final String[] BUCKET_SUMMARY_FIELDS = {"first_time", "last_time", "entries.i", "entries.t", "entries.s", "entries.v", "entries.d"};
+    
+    // History order: consultation time, then id for consultations saved in the same millisecond
+    private static final Comparator<HealthConsultation> KEY_ORDER = Comparator
+            .comparing(HealthConsultation::getConsultationTime)
+            .thenComparing(HealthConsultation::getId);
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private ConsultationArchiver consultationArchiver;
+    
+    @Value("${history.page-size:5}")
+    private int pageSize;
+    
+    /**
+     * The most recent consultations.
+     */
+    public HistoryPage latest(Long chatId) {
+        return older(chatId, null);
+    }
+    
+    /**
+     * The consultations just before {@code cursor} (exclusive), or the latest ones if it is null.
+     */
+    public HistoryPage older(Long chatId, Cursor cursor) {
+        Criteria criteria = Criteria.where("chat_id").is(chatId);
+        if (cursor != null) {
+            // (time, id) < cursor, written so the time bound stays a single index range
+            criteria = criteria.and("consultation_time").lte(cursor.time)
+                    .orOperator(Criteria.where("consultation_time").lt(cursor.time), Criteria.where("_id").lt(cursor.id));
+        }
+        List<HealthConsultation> consultations = find(criteria, Sort.Direction.DESC);
+        if (consultations.size() <= pageSize) {
+            // The hot collection ran out: continue with archived consultations older than the last one shown
+            Cursor before = consultations.isEmpty()
+                    ? cursor
+                    : Cursor.of(consultations.get(consultations.size() - 1));
+            consultations = new ArrayList<>(consultations);
+            consultations.addAll(archivedBefore(chatId, before, pageSize + 1 - consultations.size()));
+        }
+        if (consultations.isEmpty() && cursor != null) {
+            // Nothing older any more (e.g. deleted meanwhile): fall back to the latest page
+            return latest(chatId);
+        }
+        boolean hasOlder = consultations.size() > pageSize;
+        if (hasOlder) {
+            consultations = consultations.subList(0, pageSize);
+        }
+        return new HistoryPage(consultations, hasOlder, cursor != null);
+    }
+    
+    /**
+     * The consultations just after {@code cursor} (exclusive).
+     */
+    public HistoryPage newer(Long chatId, Cursor cursor) {
+        Criteria criteria = Criteria.where("chat_id").is(chatId)
+                .and("consultation_time").gte(cursor.time)
+                .orOperator(Criteria.where("consultation_time").gt(cursor.time), Criteria.where("_id").gt(cursor.id));
+        List<HealthConsultation> consultations = find(criteria, Sort.Direction.ASC);
+        if (cursor.time.isBefore(consultationArchiver.horizon())) {
+            // Paging forward through archived months: the next consultations may be in buckets
+            // A consultation archived but not yet deleted from the hot collection comes back from both
+            TreeSet<HealthConsultation> merged = new TreeSet<>(KEY_ORDER);
+            merged.addAll(archivedAfter(chatId, cursor, pageSize + 1));
+            merged.addAll(consultations);
+            consultations = merged.stream().limit(pageSize + 1).collect(Collectors.toList());
+        }
+        boolean hasNewer = consultations.size() > pageSize;
+        if (hasNewer) {
+            consultations = consultations.subList(0, pageSize);
+        }
+        // Fetched oldest first to stay next to the cursor; shown newest first
+        Collections.reverse(consultations);
+        if (consultations.isEmpty()) {
+            // Nothing newer any more (e.g. deleted meanwhile): fall back to the latest page
+            return latest(chatId);
+        }
+        return new HistoryPage(consultations, true, hasNewer);
+    }
+    
+    private List<HealthConsultation> find(Criteria criteria, Sort.Direction direction) {
+        Query query = new Query(criteria)
+                .with(Sort.by(direction, "consultation_time", "_id"))
+                .limit(pageSize + 1);
+        query.fields().include(SUMMARY_FIELDS);
+        return mongoTemplate.find(query, HealthConsultation.class);
+    }
+    
+    /**
+     * Up to {@code limit} archived consultations before {@code before} (all if null), newest first.
+     */
+    private List<HealthConsultation> archivedBefore(Long chatId, Cursor before, int limit) {
+        List<HealthConsultation> found = new ArrayList<>();
+        Criteria criteria = Criteria.where("chat_id").is(chatId);
+        if (before != null) {
+            // Inclusive: the cursor's own month may still hold consultations from the same millisecond
+            criteria = criteria.and("first_time").lte(before.time);
+        }
+        while (found.size() < limit) {
+            ConsultationBucket bucket = findBucket(criteria, Sort.Direction.DESC);
+            if (bucket == null) {
+                break;
+            }
+            List<HealthConsultation> entries = summaries(chatId, bucket);
+            entries.sort(KEY_ORDER.reversed());
+            for (HealthConsultation entry : entries) {
+                if (found.size() < limit && (before == null || before.isAfter(entry))) {
+                    found.add(entry);
+                }
+            }
+            // Months do not overlap, so every earlier bucket lies entirely before this one
+            criteria = Criteria.where("chat_id").is(chatId).and("first_time").lt(bucket.getFirstTime());
+        }
+        return found;
+    }
+    
+    /**
+     * Up to {@code limit} archived consultations after {@code after}, oldest first.
+     */
+    private List<HealthConsultation> archivedAfter(Long chatId, Cursor after, int limit) {
+        List<HealthConsultation> found = new ArrayList<>();
+        Criteria criteria = Criteria.where("chat_id").is(chatId).and("last_time").gte(after.time);
+        while (found.size() < limit) {
+            ConsultationBucket bucket = findBucket(criteria, Sort.Direction.ASC);
+            if (bucket == null) {
+                break;
+            }
+            List<HealthConsultation> entries = summaries(chatId, bucket);
+            entries.sort(KEY_ORDER);
+            for (HealthConsultation entry : entries) {
+                if (found.size() < limit && after.isBefore(entry)) {
+                    found.add(entry);
+                }
+            }
+            criteria = Criteria.where("chat_id").is(chatId).and("last_time").gt(bucket.getLastTime());
+        }
+        return found;
+    }
+    
+    private ConsultationBucket findBucket(Criteria criteria, Sort.Direction direction) {
+        Query query = new Query(criteria).with(Sort.by(direction, "month"));
+        query.fields().include(BUCKET_SUMMARY_FIELDS);
+        return mongoTemplate.findOne(query, ConsultationBucket.class);
+    }
+    
+    private static List<HealthConsultation> summaries(Long chatId, ConsultationBucket bucket) {
+        List<HealthConsultation> summaries = new ArrayList<>(bucket.getEntries().size());
+        for (ConsultationBucket.Entry entry : bucket.getEntries()) {
+            summaries.add(summary(chatId, entry));
+        }
+        return summaries;
+    }
+    
+    private static HealthConsultation summary(Long chatId, ConsultationBucket.Entry entry) {
+        HealthConsultation consultation = new HealthConsultation(chatId, entry.getSymptoms());
+        consultation.setId(entry.getConsultationId().toHexString());
+        consultation.setConsultationTime(entry.getConsultationTime());
+        consultation.setSeverity(entry.getSeverity());
+        consultation.setDoctorRecommended(entry.isDoctorRecommended());
+        return consultation;
+    }
+    
+    /**
+     * Position of a consultation in the history: its time and id. Encoded for callback data as
+     * {@code <epoch millis>.<hex id>}, at most 38 bytes, which leaves room for the callback prefix
+     * within Telegram's 64-byte limit.
+     */
+    public static final class Cursor {
+        private final LocalDateTime time;
+        private final ObjectId id;
+        
+        private Cursor(LocalDateTime time, ObjectId id) {
+            this.time = time;
+            this.id = id;
+        }
+        
+        static Cursor of(HealthConsultation consultation) {
+            return new Cursor(consultation.getConsultationTime(), new ObjectId(consultation.getId()));
+        }
+        
+        /**
+         * Parses a cursor written by {@link #toString()}.
+         *
+         * @throws IllegalArgumentException if {@code value} is not a cursor
+         */
+        public static Cursor parse(String value) {
+            int dot = value.indexOf('.');
+            if (dot < 0) {
+                throw new IllegalArgumentException("Not a history cursor: " + value);
+            }
+            long millis = Long.parseLong(value.substring(0, dot));
+            return new Cursor(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC),
+                    new ObjectId(value.substring(dot + 1)));
+        }
+        
+        boolean isBefore(HealthConsultation consultation) {
+            int byTime = time.compareTo(consultation.getConsultationTime());
+            return byTime < 0 || (byTime == 0 && id.toHexString().compareTo(consultation.getId()) < 0);
+        }
+        
+        boolean isAfter(HealthConsultation consultation) {
+            int byTime = time.compareTo(consultation.getConsultationTime());
+            return byTime > 0 || (byTime == 0 && id.toHexString().compareTo(consultation.getId()) > 0);
+        }
+        
+        @Override
+        public String toString() {
+            return time.toInstant(ZoneOffset.UTC).toEpochMilli() + "." + id.toHexString();
+        }
+    }
+    
+    public static final class HistoryPage {
+        private final List<HealthConsultation> consultations;
+        private final boolean hasOlder;
+        private final boolean hasNewer;
+        
+        private HistoryPage(List<HealthConsultation> consultations, boolean hasOlder, boolean hasNewer) {
+            this.consultations = consultations;
+            this.hasOlder = hasOlder;
+            this.hasNewer = hasNewer;
+        }
+        
+        public List<HealthConsultation> getConsultations() { return consultations; }
+        public boolean hasOlder() { return hasOlder; }
+        public boolean hasNewer() { return hasNewer; }
+        
+        /** Cursor for the page before this one; only meaningful if {@link #hasOlder()}. */
+        public Cursor olderCursor() {
+            return Cursor.of(consultations.get(consultations.size() - 1));
+        }
+        
+        /** Cursor for the page after this one; only meaningful if {@link #hasNewer()}. */
+        public Cursor newerCursor() {
+            return Cursor.of(consultations.get(0));
+        }
+    }
+}
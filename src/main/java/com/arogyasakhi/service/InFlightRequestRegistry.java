@@ -0,0 +1,93 @@
+package com.arogyasakhi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight registry for Gemini calls.
+ *
+ * Concurrent requests with the same key (a hash of the final prompt) attach to the call that
+ * is already pending instead of issuing their own. Results and errors reach every waiter.
+ * The entry is removed as soon as the call completes, fails or is cancelled because every
+ * waiter went away, so later requests always start a fresh call. Removal happens before the
+ * result or error is passed on, and the latest element is replayed to anyone who joined before
+ * that, so a joiner never sees a completed call without its result.
+ */
+@Service
+public class InFlightRequestRegistry {
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final Map<String, Flux<String>> inFlight = new ConcurrentHashMap<>();
+    private Counter joined;
+    
+    @PostConstruct
+    public void init() {
+        joined = meterRegistry.counter("gemini.singleflight.joined");
+        Gauge.builder("gemini.singleflight.in_flight", inFlight, Map::size).register(meterRegistry);
+    }
+    
+    public String keyFor(String kind, String prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(kind.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return HexFormat.of().formatHex(digest.digest(prompt.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /**
+     * Runs {@code call} unless an identical call is already pending, in which case its
+     * result is shared.
+     */
+    public Mono<String> join(String key, Supplier<Mono<String>> call) {
+        return Mono.defer(() -> share(key, () -> call.get().flux()).singleOrEmpty());
+    }
+    
+    /**
+     * Streaming variant. Every element is a complete snapshot, so a late joiner only needs
+     * the latest one to catch up.
+     */
+    public Flux<String> joinStream(String key, Supplier<Flux<String>> call) {
+        return Flux.defer(() -> share(key, call));
+    }
+    
+    private Flux<String> share(String key, Supplier<Flux<String>> call) {
+        boolean[] created = new boolean[1];
+        Flux<String> shared = inFlight.computeIfAbsent(key, k -> {
+            created[0] = true;
+            AtomicReference<Flux<String>> self = new AtomicReference<>();
+            // Upstream of replay, so the entry is gone before any waiter sees the terminal signal
+            Flux<String> source = call.get()
+                    .doOnTerminate(() -> inFlight.remove(k, self.get()))
+                    .doOnCancel(() -> inFlight.remove(k, self.get()));
+            // refCount cancels the upstream call once the last waiter cancels
+            Flux<String> sharedSource = source.replay(1).refCount();
+            self.set(sharedSource);
+            return sharedSource;
+        });
+        if (!created[0]) {
+            joined.increment();
+            System.out.println("🔗 Joined identical in-flight Gemini request");
+        }
+        return shared;
+    }
+}
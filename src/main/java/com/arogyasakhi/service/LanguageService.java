@@ -22,6 +22,8 @@ public class LanguageService {
         englishMessages.put("consultation_start", "🩺 Health Consultation Started\n\nPlease describe your current symptoms in detail. Include:\n• What symptoms are you experiencing?\n• When did they start?\n• How severe are they (1-10)?\n• Any triggers you noticed?\n\nType your symptoms below:");
         englishMessages.put("profile_setup", "📝 Profile Setup\n\nLet's set up your health profile for personalized recommendations.\n\nFirst, please enter your full name:");
         englishMessages.put("analyzing_symptoms", "🔄 Analyzing your symptoms... Please wait.");
+        englishMessages.put("queued_position", "⏳ Many people are asking for advice right now. You are number %d in line, expected wait is about %d seconds. Your answer will arrive here automatically.");
+        englishMessages.put("profile_draft_expired", "⌛ Your profile update timed out before it was finished. Please choose '📝 Update Profile' to start again.");
         englishMessages.put("doctor_recommendation", "🚨 DOCTOR RECOMMENDATION\n\nBased on your symptoms, I recommend consulting a healthcare professional.\n\n📞 Emergency Numbers:\n• Emergency: 108\n• Ambulance: 102\n• Medical Helpline: 104\n\n🏥 Find nearby doctors and hospitals using Google Maps or Practo app.");
         englishMessages.put("anything_else", "Is there anything else I can help you with?");
         englishMessages.put("enter_age", "Great! Now please enter your age:");
@@ -42,6 +44,8 @@ public class LanguageService {
         hindiMessages.put("consultation_start", "🩺 स्वास्थ्य परामर्श शुरू\n\nकृपया अपने वर्तमान लक्षणों का विस्तार से वर्णन करें। शामिल करें:\n• आप कौन से लक्षण महसूस कर रहे हैं?\n• ये कब शुरू हुए?\n• ये कितने गंभीर हैं (1-10)?\n• कोई ट्रिगर जो आपने देखे?\n\nनीचे अपने लक्षण लिखें:");
         hindiMessages.put("profile_setup", "📝 प्रोफाइल सेटअप\n\nव्यक्तिगत सिफारिशों के लिए आइए आपकी स्वास्थ्य प्रोफाइल सेट करते हैं।\n\nपहले, कृपया अपना पूरा नाम दर्ज करें:");
         hindiMessages.put("analyzing_symptoms", "🔄 आपके लक्षणों का विश्लेषण कर रहे हैं... कृपया प्रतीक्षा करें।");
+        hindiMessages.put("queued_position", "⏳ अभी बहुत से लोग सलाह मांग रहे हैं। कतार में आपका स्थान %d है, लगभग %d सेकंड प्रतीक्षा करें। आपका उत्तर यहीं अपने आप आ जाएगा।");
+        hindiMessages.put("profile_draft_expired", "⌛ आपका प्रोफाइल अपडेट पूरा होने से पहले समय समाप्त हो गया। कृपया फिर से शुरू करने के लिए '📝 प्रोफाइल अपडेट करें' चुनें।");
         hindiMessages.put("doctor_recommendation", "🚨 डॉक्टर की सिफारिश\n\nआपके लक्षणों के आधार पर, मैं किसी स्वास्थ्य पेशेवर से सलाह लेने की सिफारिश करता हूं।\n\n📞 आपातकालीन नंबर:\n• आपातकाल: 108\n• एम्बुलेंस: 102\n• चिकित्सा हेल्पलाइन: 104\n\n🏥 Google Maps या Practo ऐप का उपयोग करके नजदीकी डॉक्टर और अस्पताल खोजें।");
         hindiMessages.put("anything_else", "क्या कोई और चीज़ है जिसमें मैं आपकी मदद कर सकूं?");
         hindiMessages.put("enter_age", "बहुत बढ़िया! अब कृपया अपनी उम्र दर्ज करें:");
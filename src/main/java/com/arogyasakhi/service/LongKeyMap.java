@@ -0,0 +1,158 @@
+package com.arogyasakhi.service;
+
+/**
+ * Open-addressing hash map from primitive {@code long} keys (chat ids) to values, so lookups
+ * neither box the key nor allocate a node per entry. Linear probing with backward-shift
+ * deletion keeps probe sequences short without tombstones.
+ *
+ * Not thread-safe: callers guard each instance with their own lock.
+ */
+public final class LongKeyMap<V> {
+    
+    private static final float MAX_LOAD = 0.6f;
+    
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+    
+    public interface EntryPredicate<V> {
+        boolean test(long key, V value);
+    }
+    
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int resizeAt;
+    
+    public LongKeyMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        allocate(capacity);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Stores {@code value} under {@code key} and returns the previous value, if any.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null values are not supported");
+        }
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                deleteSlot(slot);
+                return previous;
+            }
+        }
+        return null;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> action) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (values[slot] != null) {
+                action.accept(keys[slot], (V) values[slot]);
+            }
+        }
+    }
+    
+    /**
+     * Removes every entry for which {@code filter} returns true and returns how many were removed.
+     */
+    @SuppressWarnings("unchecked")
+    public int removeIf(EntryPredicate<? super V> filter) {
+        int removed = 0;
+        int slot = 0;
+        while (slot < keys.length) {
+            // A backward shift may move an unvisited entry into this slot, so test it again
+            if (values[slot] != null && filter.test(keys[slot], (V) values[slot])) {
+                deleteSlot(slot);
+                removed++;
+            } else {
+                slot++;
+            }
+        }
+        return removed;
+    }
+    
+    private void deleteSlot(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (values[next] != null) {
+            int home = slot(keys[next], mask);
+            // Move the entry back if the hole lies on its probe path (cyclically between home and next)
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[hole] = null;
+        size--;
+    }
+    
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slot(oldKeys[i], mask);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+    
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        resizeAt = (int) (capacity * MAX_LOAD);
+    }
+    
+    static int slot(long key, int mask) {
+        // Fibonacci hashing spreads sequential chat ids across the table
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
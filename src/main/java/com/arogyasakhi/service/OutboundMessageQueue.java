@@ -0,0 +1,368 @@
+package com.arogyasakhi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends bot API calls off the handler thread while staying inside Telegram's limits.
+ *
+ * A global token bucket caps the overall send rate and a per-chat bucket caps each chat.
+ * Chats take turns in round-robin order, at most one call per chat is on the wire at a time
+ * (so per-chat order is kept), and consecutive plain texts still waiting for the same chat
+ * are merged into a single message. 429 responses park the chat for {@code retry_after}
+ * seconds; network errors and 5xx responses are retried with exponential backoff.
+ */
+@Service
+public class OutboundMessageQueue {
+    
+    private static final int MAX_MESSAGE_LENGTH = 4096;
+    private static final String COALESCE_SEPARATOR = "\n\n";
+    
+    @Value("${telegram.outbound.global-rate:30}")
+    private double globalRate;
+    
+    @Value("${telegram.outbound.chat-rate:1}")
+    private double chatRate;
+    
+    @Value("${telegram.outbound.chat-burst:1}")
+    private int chatBurst;
+    
+    @Value("${telegram.outbound.max-attempts:5}")
+    private int maxAttempts;
+    
+    @Value("${telegram.outbound.sender-threads:4}")
+    private int senderThreads;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final Map<Long, ChatOutbox> outboxes = new HashMap<>();
+    private final ArrayDeque<Long> rotation = new ArrayDeque<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    
+    private TokenBucket globalBucket;
+    private ScheduledExecutorService pump;
+    private ExecutorService senders;
+    private volatile AbsSender sender;
+    
+    private Counter sentCounter;
+    private Counter coalescedCounter;
+    private Counter retriedCounter;
+    private Counter failedCounter;
+    
+    @PostConstruct
+    public void init() {
+        this.globalBucket = new TokenBucket(globalRate, globalRate);
+        this.pump = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "outbound-pump"));
+        AtomicInteger counter = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, r -> daemon(r, "outbound-sender-" + counter.incrementAndGet()));
+        
+        Gauge.builder("bot.outbound.pending", pendingCount, AtomicInteger::get)
+                .description("Bot API calls waiting to be sent")
+                .register(meterRegistry);
+        sentCounter = meterRegistry.counter("bot.outbound.sent");
+        coalescedCounter = meterRegistry.counter("bot.outbound.coalesced");
+        retriedCounter = meterRegistry.counter("bot.outbound.retried");
+        failedCounter = meterRegistry.counter("bot.outbound.failed");
+        
+        pump.scheduleWithFixedDelay(this::drain, 50, 50, TimeUnit.MILLISECONDS);
+        pump.scheduleWithFixedDelay(this::evictIdleOutboxes, 1, 1, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Sets the client used to execute queued calls. Must be called before anything is sent.
+     */
+    public void bind(AbsSender sender) {
+        this.sender = sender;
+    }
+    
+    /**
+     * Queues a message. It may be merged with neighbouring plain texts for the same chat.
+     */
+    public CompletableFuture<Message> send(SendMessage message) {
+        return enqueue(Long.parseLong(message.getChatId()), message, true).thenApply(Message.class::cast);
+    }
+    
+    /**
+     * Queues a message that must go out on its own, e.g. because it will be edited later.
+     */
+    public CompletableFuture<Message> sendStandalone(SendMessage message) {
+        return enqueue(Long.parseLong(message.getChatId()), message, false).thenApply(Message.class::cast);
+    }
+    
+    /**
+     * Queues an edit. An edit of the same message that has not gone out yet is replaced,
+     * so a burst of progressive edits collapses into the latest text.
+     */
+    public CompletableFuture<Serializable> edit(EditMessageText edit) {
+        long chatId = Long.parseLong(edit.getChatId());
+        synchronized (this) {
+            ChatOutbox outbox = outboxes.get(chatId);
+            if (outbox != null) {
+                for (Outgoing queued : outbox.pending) {
+                    if (queued.method instanceof EditMessageText pendingEdit
+                            && Objects.equals(pendingEdit.getMessageId(), edit.getMessageId())) {
+                        queued.method = edit;
+                        coalescedCounter.increment();
+                        return queued.result;
+                    }
+                }
+            }
+        }
+        return enqueue(chatId, edit, false);
+    }
+    
+    /**
+     * Queues the answer to an inline button press, which stops the button's loading indicator.
+     */
+    public CompletableFuture<Serializable> answerCallback(long chatId, AnswerCallbackQuery answer) {
+        return enqueue(chatId, answer, false);
+    }
+    
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+    
+    private CompletableFuture<Serializable> enqueue(long chatId, BotApiMethod<? extends Serializable> method, boolean coalescable) {
+        Outgoing outgoing = new Outgoing(method, coalescable);
+        synchronized (this) {
+            ChatOutbox outbox = outboxes.computeIfAbsent(chatId, ChatOutbox::new);
+            if (outbox.pending.isEmpty()) {
+                rotation.add(chatId);
+            }
+            outbox.pending.add(outgoing);
+        }
+        pendingCount.incrementAndGet();
+        pump.execute(this::drain);
+        return outgoing.result;
+    }
+    
+    private void drain() {
+        if (sender == null) {
+            return;
+        }
+        
+        List<Runnable> batches = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            int turns = rotation.size();
+            for (int i = 0; i < turns; i++) {
+                Long chatId = rotation.poll();
+                ChatOutbox outbox = outboxes.get(chatId);
+                if (outbox == null || outbox.pending.isEmpty()) {
+                    continue;
+                }
+                if (outbox.sending || now < outbox.notBeforeNanos || !outbox.bucket.hasTokens(1)) {
+                    rotation.add(chatId);
+                    continue;
+                }
+                if (!globalBucket.tryAcquire()) {
+                    // Keep this chat's turn for the next round
+                    rotation.addFirst(chatId);
+                    break;
+                }
+                
+                outbox.bucket.tryAcquire();
+                outbox.sending = true;
+                Outgoing next = takeCoalesced(outbox);
+                if (!outbox.pending.isEmpty()) {
+                    rotation.add(chatId);
+                }
+                batches.add(() -> execute(outbox, next));
+            }
+        }
+        batches.forEach(senders::execute);
+    }
+    
+    /**
+     * Removes the head of the chat's queue, folding following plain texts into it while
+     * they fit in a single message. A reply keyboard can only ride on the last message.
+     */
+    private Outgoing takeCoalesced(ChatOutbox outbox) {
+        Outgoing head = outbox.pending.poll();
+        if (!head.coalescable || !(head.method instanceof SendMessage first) || first.getReplyMarkup() != null) {
+            return head;
+        }
+        
+        StringBuilder text = new StringBuilder(first.getText());
+        SendMessage merged = first;
+        List<CompletableFuture<Serializable>> waiters = new ArrayList<>(List.of(head.result));
+        while (!outbox.pending.isEmpty()) {
+            Outgoing candidate = outbox.pending.peek();
+            if (!candidate.coalescable || !(candidate.method instanceof SendMessage next)
+                    || !Objects.equals(next.getParseMode(), first.getParseMode())
+                    || text.length() + COALESCE_SEPARATOR.length() + next.getText().length() > MAX_MESSAGE_LENGTH) {
+                break;
+            }
+            outbox.pending.poll();
+            text.append(COALESCE_SEPARATOR).append(next.getText());
+            waiters.add(candidate.result);
+            merged = next;
+            coalescedCounter.increment();
+            pendingCount.decrementAndGet();
+            if (next.getReplyMarkup() != null) {
+                break;
+            }
+        }
+        
+        if (waiters.size() == 1) {
+            return head;
+        }
+        SendMessage combined = new SendMessage(first.getChatId(), text.toString());
+        combined.setParseMode(first.getParseMode());
+        combined.setReplyMarkup(merged.getReplyMarkup());
+        return new Outgoing(combined, waiters);
+    }
+    
+    private void execute(ChatOutbox outbox, Outgoing outgoing) {
+        long retryInNanos = 0;
+        try {
+            Serializable response = sender.execute(outgoing.method);
+            sentCounter.increment();
+            outgoing.waiters.forEach(waiter -> waiter.complete(response));
+        } catch (TelegramApiException e) {
+            outgoing.attempts++;
+            Integer retryAfter = retryAfterSeconds(e);
+            if (retryAfter != null) {
+                System.err.println("⚠️ Rate limited by Telegram for chatId " + outbox.chatId + ", retrying in " + retryAfter + "s");
+                retryInNanos = TimeUnit.SECONDS.toNanos(retryAfter);
+            } else if (isTransient(e) && outgoing.attempts < maxAttempts) {
+                retryInNanos = TimeUnit.MILLISECONDS.toNanos(500L << Math.min(outgoing.attempts - 1, 6));
+                System.err.println("⚠️ Send to chatId " + outbox.chatId + " failed (attempt " + outgoing.attempts + "), retrying: " + e.getMessage());
+            } else {
+                System.err.println("❌ Failed to send to user " + outbox.chatId + ": " + e.getMessage());
+                failedCounter.increment();
+                outgoing.waiters.forEach(waiter -> waiter.completeExceptionally(e));
+            }
+        } catch (RuntimeException e) {
+            System.err.println("❌ Failed to send to user " + outbox.chatId + ": " + e.getMessage());
+            failedCounter.increment();
+            outgoing.waiters.forEach(waiter -> waiter.completeExceptionally(e));
+        }
+        
+        synchronized (this) {
+            outbox.sending = false;
+            if (retryInNanos > 0) {
+                retriedCounter.increment();
+                outbox.notBeforeNanos = System.nanoTime() + retryInNanos;
+                if (outbox.pending.isEmpty()) {
+                    rotation.add(outbox.chatId);
+                }
+                outbox.pending.addFirst(outgoing);
+            } else {
+                pendingCount.decrementAndGet();
+            }
+        }
+    }
+    
+    private synchronized void evictIdleOutboxes() {
+        long now = System.nanoTime();
+        // Forgetting a chat is only safe once its bucket has refilled, otherwise it could burst
+        outboxes.values().removeIf(outbox -> outbox.pending.isEmpty() && !outbox.sending
+                && now >= outbox.notBeforeNanos && outbox.bucket.isFull());
+    }
+    
+    private Integer retryAfterSeconds(TelegramApiException e) {
+        if (e instanceof TelegramApiRequestException requestException
+                && Integer.valueOf(429).equals(requestException.getErrorCode())
+                && requestException.getParameters() != null) {
+            return requestException.getParameters().getRetryAfter();
+        }
+        return null;
+    }
+    
+    private boolean isTransient(TelegramApiException e) {
+        if (e instanceof TelegramApiRequestException requestException) {
+            Integer errorCode = requestException.getErrorCode();
+            return errorCode == null || errorCode >= 500 || errorCode == 429;
+        }
+        // Plain TelegramApiException wraps I/O failures
+        return true;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pendingCount.get() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (pendingCount.get() > 0) {
+            System.err.println("⚠️ Shutting down with " + pendingCount.get() + " unsent messages");
+        }
+        pump.shutdownNow();
+        senders.shutdownNow();
+    }
+    
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+    
+    private final class ChatOutbox {
+        private final long chatId;
+        private final ArrayDeque<Outgoing> pending = new ArrayDeque<>();
+        private final TokenBucket bucket = new TokenBucket(chatBurst, chatRate);
+        private boolean sending;
+        private long notBeforeNanos;
+        
+        private ChatOutbox(long chatId) {
+            this.chatId = chatId;
+        }
+    }
+    
+    private static final class Outgoing {
+        private BotApiMethod<? extends Serializable> method;
+        private final boolean coalescable;
+        private final CompletableFuture<Serializable> result;
+        private final List<CompletableFuture<Serializable>> waiters;
+        private int attempts;
+        
+        private Outgoing(BotApiMethod<? extends Serializable> method, boolean coalescable) {
+            this.method = method;
+            this.coalescable = coalescable;
+            this.result = new CompletableFuture<>();
+            this.waiters = List.of(result);
+        }
+        
+        private Outgoing(BotApiMethod<? extends Serializable> method, List<CompletableFuture<Serializable>> waiters) {
+            this.method = method;
+            this.coalescable = false;
+            this.result = waiters.get(0);
+            this.waiters = waiters;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.arogyasakhi.service;
+
+import com.arogyasakhi.model.ProfileDraft;
+import com.arogyasakhi.model.UserProfile;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-progress profile wizard drafts, bounded in memory and persisted across restarts.
+ *
+ * Every step writes the draft through to the {@code profile_drafts} collection, so a wizard
+ * survives a restart, and MongoDB's TTL monitor removes drafts that were abandoned for longer
+ * than {@code profile.drafts.ttl-minutes} (see the TTL index on {@link ProfileDraft}). The most
+ * recently used drafts are also kept in a bounded LRU map so the next step usually does not read
+ * them back. Drafts are stored in a compact binary encoding (a presence bitmask followed by the
+ * set fields) rather than as a full profile document.
+ */
+@Service
+public class ProfileDraftStore {
+    
+    private static final byte FORMAT_VERSION = 1;
+    
+    // Presence bits of the encoded draft
+    private static final int ID = 1;
+    private static final int FIRST_NAME = 1 << 1;
+    private static final int LAST_NAME = 1 << 2;
+    private static final int AGE = 1 << 3;
+    private static final int GENDER = 1 << 4;
+    private static final int WEIGHT = 1 << 5;
+    private static final int HEIGHT = 1 << 6;
+    private static final int BLOOD_GROUP = 1 << 7;
+    private static final int ALLERGIES = 1 << 8;
+    private static final int PREVIOUS_DISEASES = 1 << 9;
+    private static final int CURRENT_MEDICATIONS = 1 << 10;
+    private static final int EMERGENCY_CONTACT = 1 << 11;
+    private static final int CREATED_AT = 1 << 12;
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${profile.drafts.ttl-minutes:60}")
+    private long ttlMinutes;
+    
+    @Value("${profile.drafts.max-in-memory:5000}")
+    private int maxInMemory;
+    
+    private Map<Long, CachedDraft> drafts;
+    
+    @PostConstruct
+    public void init() {
+        drafts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedDraft> eldest) {
+                return size() > maxInMemory;
+            }
+        };
+        Gauge.builder("profile.drafts.cached", this, store -> store.cachedCount())
+                .description("Profile drafts held in memory")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Returns the draft for the chat, or null if there is none or it has expired.
+     */
+    public UserProfile get(Long chatId) {
+        long now = System.nanoTime();
+        CachedDraft cached;
+        synchronized (drafts) {
+            cached = drafts.get(chatId);
+            if (cached != null && now - cached.expiresAtNanos > 0) {
+                drafts.remove(chatId);
+                cached = null;
+            }
+        }
+        if (cached != null) {
+            return decode(chatId, cached.data);
+        }
+        
+        try {
+            // The TTL monitor only runs about once a minute, so filter out expired drafts as well
+            Query query = byChatId(chatId).addCriteria(Criteria.where("expires_at").gt(LocalDateTime.now()));
+            ProfileDraft draft = mongoTemplate.findOne(query, ProfileDraft.class);
+            if (draft == null || draft.getData() == null) {
+                return null;
+            }
+            long remainingNanos = Duration.between(LocalDateTime.now(), draft.getExpiresAt()).toNanos();
+            synchronized (drafts) {
+                drafts.put(chatId, new CachedDraft(draft.getData(), now + remainingNanos));
+            }
+            return decode(chatId, draft.getData());
+        } catch (Exception e) {
+            System.err.println("❌ Failed to load profile draft for user " + chatId + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Stores the draft and restarts its time to live.
+     */
+    public void put(Long chatId, UserProfile profile) {
+        byte[] data = encode(profile);
+        synchronized (drafts) {
+            drafts.put(chatId, new CachedDraft(data, System.nanoTime() + TimeUnit.MINUTES.toNanos(ttlMinutes)));
+        }
+        
+        try {
+            Update update = new Update()
+                    .set("data", data)
+                    .set("expires_at", LocalDateTime.now().plusMinutes(ttlMinutes));
+            mongoTemplate.upsert(byChatId(chatId), update, ProfileDraft.class);
+        } catch (Exception e) {
+            // The in-memory copy still lets the wizard continue; only a restart would lose it
+            System.err.println("❌ Failed to persist profile draft for user " + chatId + ": " + e.getMessage());
+        }
+    }
+    
+    public void remove(Long chatId) {
+        synchronized (drafts) {
+            drafts.remove(chatId);
+        }
+        
+        try {
+            mongoTemplate.remove(byChatId(chatId), ProfileDraft.class);
+        } catch (Exception e) {
+            System.err.println("❌ Failed to delete profile draft for user " + chatId + ": " + e.getMessage());
+        }
+    }
+    
+    private int cachedCount() {
+        synchronized (drafts) {
+            return drafts.size();
+        }
+    }
+    
+    private static Query byChatId(Long chatId) {
+        return new Query(Criteria.where("chat_id").is(chatId));
+    }
+    
+    static byte[] encode(UserProfile profile) {
+        int present = 0;
+        present |= profile.getId() != null ? ID : 0;
+        present |= profile.getFirstName() != null ? FIRST_NAME : 0;
+        present |= profile.getLastName() != null ? LAST_NAME : 0;
+        present |= profile.getAge() != null ? AGE : 0;
+        present |= profile.getGender() != null ? GENDER : 0;
+        present |= profile.getWeight() != null ? WEIGHT : 0;
+        present |= profile.getHeight() != null ? HEIGHT : 0;
+        present |= profile.getBloodGroup() != null ? BLOOD_GROUP : 0;
+        present |= profile.getAllergies() != null ? ALLERGIES : 0;
+        present |= profile.getPreviousDiseases() != null ? PREVIOUS_DISEASES : 0;
+        present |= profile.getCurrentMedications() != null ? CURRENT_MEDICATIONS : 0;
+        present |= profile.getEmergencyContact() != null ? EMERGENCY_CONTACT : 0;
+        present |= profile.getCreatedAt() != null ? CREATED_AT : 0;
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeShort(present);
+            if ((present & ID) != 0) out.writeUTF(profile.getId());
+            if ((present & FIRST_NAME) != 0) out.writeUTF(profile.getFirstName());
+            if ((present & LAST_NAME) != 0) out.writeUTF(profile.getLastName());
+            if ((present & AGE) != 0) out.writeByte(profile.getAge());
+            if ((present & GENDER) != 0) out.writeUTF(profile.getGender());
+            if ((present & WEIGHT) != 0) out.writeDouble(profile.getWeight());
+            if ((present & HEIGHT) != 0) out.writeDouble(profile.getHeight());
+            if ((present & BLOOD_GROUP) != 0) out.writeUTF(profile.getBloodGroup());
+            if ((present & ALLERGIES) != 0) writeList(out, profile.getAllergies());
+            if ((present & PREVIOUS_DISEASES) != 0) writeList(out, profile.getPreviousDiseases());
+            if ((present & CURRENT_MEDICATIONS) != 0) writeList(out, profile.getCurrentMedications());
+            if ((present & EMERGENCY_CONTACT) != 0) out.writeUTF(profile.getEmergencyContact());
+            if ((present & CREATED_AT) != 0) out.writeLong(profile.getCreatedAt().toEpochSecond(ZoneOffset.UTC));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode profile draft", e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    static UserProfile decode(Long chatId, byte[] data) {
+        UserProfile profile = new UserProfile(chatId);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                System.err.println("⚠️ Ignoring profile draft with unknown format " + version + " for user " + chatId);
+                return null;
+            }
+            int present = in.readUnsignedShort();
+            if ((present & ID) != 0) profile.setId(in.readUTF());
+            if ((present & FIRST_NAME) != 0) profile.setFirstName(in.readUTF());
+            if ((present & LAST_NAME) != 0) profile.setLastName(in.readUTF());
+            if ((present & AGE) != 0) profile.setAge(in.readUnsignedByte());
+            if ((present & GENDER) != 0) profile.setGender(in.readUTF());
+            if ((present & WEIGHT) != 0) profile.setWeight(in.readDouble());
+            if ((present & HEIGHT) != 0) profile.setHeight(in.readDouble());
+            if ((present & BLOOD_GROUP) != 0) profile.setBloodGroup(in.readUTF());
+            if ((present & ALLERGIES) != 0) profile.setAllergies(readList(in));
+            if ((present & PREVIOUS_DISEASES) != 0) profile.setPreviousDiseases(readList(in));
+            if ((present & CURRENT_MEDICATIONS) != 0) profile.setCurrentMedications(readList(in));
+            if ((present & EMERGENCY_CONTACT) != 0) profile.setEmergencyContact(in.readUTF());
+            if ((present & CREATED_AT) != 0) {
+                profile.setCreatedAt(LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC));
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Ignoring corrupt profile draft for user " + chatId + ": " + e.getMessage());
+            return null;
+        }
+        return profile;
+    }
+    
+    private static void writeList(DataOutputStream out, List<String> items) throws IOException {
+        out.writeShort(items.size());
+        for (String item : items) {
+            out.writeUTF(item);
+        }
+    }
+    
+    private static List<String> readList(DataInputStream in) throws IOException {
+        int size = in.readUnsignedShort();
+        List<String> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(in.readUTF());
+        }
+        return items;
+    }
+    
+    private static final class CachedDraft {
+        private final byte[] data;
+        private final long expiresAtNanos;
+        
+        private CachedDraft(byte[] data, long expiresAtNanos) {
+            this.data = data;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
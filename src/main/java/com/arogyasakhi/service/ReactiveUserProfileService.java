@@ -0,0 +1,76 @@
+package com.arogyasakhi.service;
+
+import com.arogyasakhi.model.UserProfile;
+import com.arogyasakhi.repository.ReactiveUserProfileRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * Non-blocking counterpart of {@link UserProfileService} on the Reactive Streams driver, with
+ * the same fallbacks: a missing or unreadable profile is an empty one. It shares the blocking
+ * service's profile cache, reading through it and invalidating it on writes.
+ */
+@Service
+public class ReactiveUserProfileService {
+    
+    @Autowired
+    private ReactiveUserProfileRepository userProfileRepository;
+    
+    @Autowired
+    private UserProfileService userProfileService;
+    
+    public Mono<UserProfile> getUserProfile(Long chatId) {
+        return Mono.defer(() -> {
+            UserProfile cached = userProfileService.cached(chatId);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            long readGeneration = userProfileService.generation();
+            return userProfileRepository.findByChatId(chatId)
+                    .defaultIfEmpty(new UserProfile(chatId))
+                    .map(profile -> userProfileService.cache(profile, readGeneration))
+                    .onErrorResume(e -> {
+                        System.err.println("❌ Error getting user profile for chatId " + chatId + ": " + e.getMessage());
+                        return Mono.just(new UserProfile(chatId));
+                    });
+        });
+    }
+    
+    public Mono<UserProfile> saveUserProfile(UserProfile userProfile) {
+        userProfile.setUpdatedAt(LocalDateTime.now());
+        return userProfileRepository.save(userProfile)
+                .doOnTerminate(() -> userProfileService.invalidate(userProfile.getChatId()))
+                .doOnNext(saved -> System.out.println("✅ User profile saved successfully for chatId: " + saved.getChatId()))
+                .doOnError(e -> System.err.println("❌ Error saving user profile: " + e.getMessage()));
+    }
+    
+    public Mono<Void> deleteUserProfile(Long chatId) {
+        return userProfileRepository.deleteByChatId(chatId)
+                .doOnTerminate(() -> userProfileService.invalidate(chatId))
+                .doOnSuccess(done -> System.out.println("✅ User profile deleted for chatId: " + chatId))
+                .onErrorResume(e -> {
+                    System.err.println("❌ Error deleting user profile: " + e.getMessage());
+                    return Mono.empty();
+                });
+    }
+    
+    public Mono<Long> getTotalUsers() {
+        return userProfileRepository.count()
+                .onErrorResume(e -> {
+                    System.err.println("❌ Error getting total users count: " + e.getMessage());
+                    return Mono.just(0L);
+                });
+    }
+    
+    public Flux<UserProfile> getCompleteProfiles() {
+        return userProfileRepository.findByStatus(UserProfile.ProfileStatus.COMPLETE)
+                .onErrorResume(e -> {
+                    System.err.println("❌ Error getting complete profiles: " + e.getMessage());
+                    return Flux.empty();
+                });
+    }
+}
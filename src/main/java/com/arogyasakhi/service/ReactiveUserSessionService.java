@@ -0,0 +1,65 @@
+package com.arogyasakhi.service;
+
+import com.arogyasakhi.model.UserSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking front of {@link UserSessionService}'s session cache.
+ *
+ * A cached session is returned as is. On a miss the session is fetched (or created) with the
+ * same {@code findAndModify} upsert on the Reactive Streams driver and then cached, so the
+ * calling thread never waits for MongoDB. Changes are made in the cache and written back by
+ * its background flush, so updating a session never blocks either.
+ */
+@Service
+public class ReactiveUserSessionService {
+    
+    @Autowired
+    private UserSessionService userSessionService;
+    
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    
+    public Mono<UserSession> getUserSession(Long chatId) {
+        UserSession cached = userSessionService.peek(chatId);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return findOrCreate(chatId)
+                .map(userSessionService::prime)
+                .onErrorResume(e -> {
+                    System.err.println("❌ Error getting user session for chatId " + chatId + ": " + e.getMessage());
+                    // Not cached, so it can never overwrite the stored session
+                    return Mono.just(new UserSession(chatId));
+                });
+    }
+    
+    public Mono<String> getUserLanguage(Long chatId) {
+        return getUserSession(chatId).map(UserSession::getLanguage);
+    }
+    
+    public Mono<Void> updateUserLanguage(Long chatId, String language) {
+        return getUserSession(chatId)
+                .doOnNext(session -> userSessionService.updateUserLanguage(chatId, language))
+                .then();
+    }
+    
+    public Mono<Void> updateUserState(Long chatId, String state) {
+        return getUserSession(chatId)
+                .doOnNext(session -> userSessionService.updateUserState(chatId, state))
+                .then();
+    }
+    
+    private Mono<UserSession> findOrCreate(long chatId) {
+        return Mono.defer(() -> reactiveMongoTemplate.findAndModify(UserSessionService.byChatId(chatId),
+                        UserSessionService.findOrCreateUpdate(), UserSessionService.FIND_OR_CREATE, UserSession.class))
+                // Another writer inserted the same chat between our match and insert; now it matches
+                .onErrorResume(DuplicateKeyException.class, e -> reactiveMongoTemplate.findAndModify(
+                        UserSessionService.byChatId(chatId), UserSessionService.findOrCreateUpdate(),
+                        UserSessionService.FIND_OR_CREATE, UserSession.class));
+    }
+}
@@ -0,0 +1,218 @@
+package com.arogyasakhi.service;
+
+import com.arogyasakhi.model.UserProfile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded LRU cache of raw Gemini recommendations.
+ *
+ * Entries are keyed on the normalized symptom text, a coarse profile bucket (age band, gender,
+ * BMI category, allergy and medication fingerprints) and the language, so near-identical
+ * complaints from similar patients share one Gemini round-trip. Entries expire after a TTL,
+ * and emergency-severity answers are never cached.
+ */
+@Service
+public class RecommendationCache {
+    
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{M}\\p{N}]+");
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "the", "i", "im", "have", "has", "having", "am", "is", "are", "my", "me",
+            "with", "of", "since", "from", "also", "some", "feel", "feeling",
+            "और", "है", "हैं", "मुझे", "मेरा", "मेरी", "मेरे", "से", "का", "की", "के", "में", "भी", "हो", "रहा", "रही");
+    
+    @Value("${gemini.cache.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${gemini.cache.max-size:1000}")
+    private int maxSize;
+    
+    @Value("${gemini.cache.ttl-minutes:360}")
+    private long ttlMinutes;
+    
+    @Value("${gemini.cache.bypass-emergency:true}")
+    private boolean bypassEmergency;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private SeverityDetector severityDetector;
+    
+    private Map<String, Entry> entries;
+    private Counter hits;
+    private Counter misses;
+    private Counter evictions;
+    
+    @PostConstruct
+    public void init() {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        hits = meterRegistry.counter("gemini.cache.hits");
+        misses = meterRegistry.counter("gemini.cache.misses");
+        evictions = meterRegistry.counter("gemini.cache.evictions");
+        Gauge.builder("gemini.cache.size", this, RecommendationCache::size).register(meterRegistry);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public String keyFor(String symptoms, UserProfile profile, String language) {
+        return keyFor(symptoms, profile, language, false);
+    }
+    
+    /**
+     * Structured (JSON) answers are cached apart from free text ones: the cached value is the
+     * raw answer, so the two modes cannot share entries.
+     */
+    public String keyFor(String symptoms, UserProfile profile, String language, boolean structured) {
+        return normalizeSymptoms(symptoms) + '|' + profileBucket(profile) + '|' + language + (structured ? "|json" : "|text");
+    }
+    
+    public synchronized Optional<String> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAtNanos - System.nanoTime() > 0) {
+            hits.increment();
+            return Optional.of(entry.recommendation);
+        }
+        if (entry != null) {
+            entries.remove(key);
+            evictions.increment();
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+    
+    public void put(String key, String recommendation) {
+        if (enabled && recommendation != null && !recommendation.isEmpty()) {
+            put(key, recommendation, bypassEmergency && isEmergency(recommendation));
+        }
+    }
+    
+    /**
+     * Stores a recommendation whose severity the caller already knows, such as a structured
+     * answer that carries it as a field.
+     */
+    public synchronized void put(String key, String recommendation, boolean emergency) {
+        if (!enabled || recommendation == null || recommendation.isEmpty()) {
+            return;
+        }
+        if (bypassEmergency && emergency) {
+            // Emergency advice must always come from a fresh generation
+            return;
+        }
+        long expiresAt = System.nanoTime() + TimeUnit.MINUTES.toNanos(ttlMinutes);
+        entries.put(key, new Entry(recommendation, expiresAt));
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    private boolean isEmergency(String recommendation) {
+        return severityDetector.detect(recommendation).getSeverity() == SeverityDetector.Severity.EMERGENCY;
+    }
+    
+    /**
+     * Lowercases, strips punctuation and filler words and collapses whitespace, so "I have a
+     * fever!" and "fever" map to the same key. Word order and repeated words are kept: they carry
+     * which symptom a duration or a negation belongs to, so "fever 3 days, cough 10 days" and
+     * "fever 10 days, cough 3 days" must not share an answer.
+     */
+    static String normalizeSymptoms(String symptoms) {
+        StringBuilder normalized = new StringBuilder(symptoms.length());
+        for (String word : NON_WORD.split(symptoms.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty() && !STOP_WORDS.contains(word)) {
+                if (normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(word);
+            }
+        }
+        return normalized.toString();
+    }
+    
+    static String profileBucket(UserProfile profile) {
+        if (profile == null || profile.getAge() == null) {
+            return "anonymous";
+        }
+        
+        StringBuilder bucket = new StringBuilder();
+        bucket.append(ageBand(profile.getAge())).append(',');
+        bucket.append(profile.getGender() != null ? profile.getGender().toLowerCase(Locale.ROOT) : "-").append(',');
+        bucket.append(bmiBand(profile)).append(',');
+        bucket.append(fingerprint(profile.getAllergies())).append(',');
+        bucket.append(fingerprint(profile.getCurrentMedications()));
+        return bucket.toString();
+    }
+    
+    private static String ageBand(int age) {
+        if (age < 5) return "0-4";
+        if (age < 12) return "5-11";
+        if (age < 18) return "12-17";
+        int decade = age / 10 * 10;
+        return decade + "s";
+    }
+    
+    private static String bmiBand(UserProfile profile) {
+        if (profile.getWeight() == null || profile.getHeight() == null) {
+            return "-";
+        }
+        double bmi = profile.getBMI();
+        if (bmi < 18.5) return "under";
+        if (bmi < 25) return "normal";
+        if (bmi < 30) return "over";
+        return "obese";
+    }
+    
+    private static String fingerprint(List<String> items) {
+        if (items == null || items.isEmpty()) {
+            return "-";
+        }
+        // Kept verbatim rather than hashed: a collision here would hand out advice for another allergy set
+        return items.stream()
+                .map(item -> item.trim().toLowerCase(Locale.ROOT))
+                .filter(item -> !item.isEmpty())
+                .sorted()
+                .distinct()
+                .collect(Collectors.joining(";"));
+    }
+    
+    private static final class Entry {
+        private final String recommendation;
+        private final long expiresAtNanos;
+        
+        private Entry(String recommendation, long expiresAtNanos) {
+            this.recommendation = recommendation;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
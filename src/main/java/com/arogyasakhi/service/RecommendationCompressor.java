@@ -0,0 +1,150 @@
+package com.arogyasakhi.service;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import jakarta.annotation.PostConstruct;
+import org.bson.types.Binary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.data.mongodb.core.convert.MongoConversionContext;
+import org.springframework.data.mongodb.core.convert.MongoValueConverter;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Property converter that stores {@code HealthConsultation.aiRecommendation} zstd-compressed
+ * against a shared dictionary and decompresses it transparently on read.
+ *
+ * Recommendations are short, so on their own they compress poorly; nearly all their
+ * redundancy is the template text every answer shares (section headers, disclaimer, common
+ * advice), which the dictionary supplies. A compressed value is stored as binary:
+ * a format byte, the dictionary id (CRC32 of the dictionary), the text length and the zstd
+ * frame. Plain string values, written before compression was enabled or below
+ * {@code min-bytes}, are read as they are.
+ *
+ * The last configured dictionary is used for writing; all of them are kept for reading, so
+ * a new dictionary must be appended to the list, never swapped in place of an older one.
+ */
+@Service
+public class RecommendationCompressor implements MongoValueConverter<String, Object> {
+    
+    private static final byte FORMAT_ZSTD = 1;
+    private static final int HEADER_LENGTH = 9;
+    
+    @Value("${consultation.compression.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${consultation.compression.level:6}")
+    private int level;
+    
+    @Value("${consultation.compression.min-bytes:256}")
+    private int minBytes;
+    
+    @Value("${consultation.compression.dictionaries:classpath:zstd/recommendation-v1.dict}")
+    private Resource[] dictionaries;
+    
+    private final Map<Integer, ZstdDictDecompress> decompressDictionaries = new HashMap<>();
+    private ZstdDictCompress compressDictionary;
+    private int compressDictionaryId;
+    
+    @PostConstruct
+    public void init() throws IOException {
+        for (Resource resource : dictionaries) {
+            byte[] dictionary;
+            try (InputStream in = resource.getInputStream()) {
+                dictionary = in.readAllBytes();
+            }
+            int id = dictionaryId(dictionary);
+            decompressDictionaries.put(id, new ZstdDictDecompress(dictionary));
+            compressDictionary = new ZstdDictCompress(dictionary, level);
+            compressDictionaryId = id;
+        }
+        if (enabled) {
+            System.out.println("🗜️ Compressing recommendations with zstd level " + level
+                    + (compressDictionary != null ? " and dictionary " + Integer.toHexString(compressDictionaryId) : ""));
+        }
+    }
+    
+    @Override
+    public Object write(String value, MongoConversionContext context) {
+        byte[] text = value.getBytes(StandardCharsets.UTF_8);
+        if (!enabled || text.length < minBytes) {
+            return value;
+        }
+        return new Binary(compress(text));
+    }
+    
+    @Override
+    public String read(Object value, MongoConversionContext context) {
+        if (value instanceof Binary binary) {
+            return decompress(binary.getData());
+        }
+        if (value instanceof byte[] bytes) {
+            return decompress(bytes);
+        }
+        return value.toString();
+    }
+    
+    /**
+     * Compresses into the framed format. Also used by {@link ConsultationArchiver} for whole
+     * archived documents, which share most of their text with the dictionary.
+     */
+    byte[] compress(byte[] text) {
+        byte[] frame = compressDictionary != null
+                ? Zstd.compress(text, compressDictionary)
+                : Zstd.compress(text, level);
+        return ByteBuffer.allocate(HEADER_LENGTH + frame.length)
+                .put(FORMAT_ZSTD)
+                .putInt(compressDictionary != null ? compressDictionaryId : 0)
+                .putInt(text.length)
+                .put(frame)
+                .array();
+    }
+    
+    String decompress(byte[] data) {
+        return new String(decompressBytes(data), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Reverses {@link #compress(byte[])} for any content, not only UTF-8 text.
+     */
+    byte[] decompressBytes(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        byte format = buffer.get();
+        if (format != FORMAT_ZSTD) {
+            throw new IllegalStateException("Unknown recommendation compression format " + format);
+        }
+        int dictionaryId = buffer.getInt();
+        int length = buffer.getInt();
+        byte[] frame = new byte[buffer.remaining()];
+        buffer.get(frame);
+        
+        byte[] text;
+        if (dictionaryId == 0) {
+            text = Zstd.decompress(frame, length);
+        } else {
+            ZstdDictDecompress dictionary = decompressDictionaries.get(dictionaryId);
+            if (dictionary == null) {
+                throw new IllegalStateException("Recommendation was compressed with unknown dictionary "
+                        + Integer.toHexString(dictionaryId) + "; add it to consultation.compression.dictionaries");
+            }
+            text = Zstd.decompress(frame, dictionary, length);
+        }
+        return text;
+    }
+    
+    private static int dictionaryId(byte[] dictionary) {
+        CRC32 crc = new CRC32();
+        crc.update(dictionary);
+        // 0 marks "no dictionary" in the header
+        return (int) crc.getValue() == 0 ? 1 : (int) crc.getValue();
+    }
+}
@@ -0,0 +1,129 @@
+package com.arogyasakhi.service;
+
+import com.arogyasakhi.model.Recommendation;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Renders a structured {@link Recommendation} into the same sectioned text the free text mode
+ * asks Gemini for, so {@link TelegramFormatter} and the history view treat both alike.
+ *
+ * The localized section headers and severity labels are fixed strings, so rendering is a
+ * single sized {@link StringBuilder} append sequence with no parsing or pattern matching.
+ */
+@Service
+public class RecommendationRenderer {
+    
+    private static final Labels ENGLISH = new Labels(
+            "🔍 SEVERITY LEVEL: ",
+            "🏠 HOME REMEDIES:",
+            "💊 MEDICATION SUGGESTIONS (Over-the-counter):",
+            "⚠️ WARNING SIGNS:",
+            "📞 WHEN TO CONSULT A DOCTOR:",
+            "IMPORTANT: This is general medical advice only. Seek immediate professional medical care for serious conditions.",
+            new String[] {"Low", "Moderate", "High", "Emergency"});
+    
+    private static final Labels HINDI = new Labels(
+            "🔍 गंभीरता का स्तर: ",
+            "🏠 घरेलू उपचार:",
+            "💊 दवा सुझाव (बिना पर्चे वाली):",
+            "⚠️ चेतावनी संकेत:",
+            "📞 कब डॉक्टर से संपर्क करें:",
+            "महत्वपूर्ण: यह केवल सामान्य सलाह है। गंभीर स्थिति में तुरंत चिकित्सक से संपर्क करें।",
+            new String[] {"कम", "मध्यम", "उच्च", "आपातकाल"});
+    
+    public String render(Recommendation recommendation, String language) {
+        Labels labels = "hi".equals(language) ? HINDI : ENGLISH;
+        StringBuilder text = new StringBuilder(labels.length + estimateLength(recommendation));
+        
+        String severity = severityLabel(labels, recommendation.getSeverity());
+        if (severity != null) {
+            text.append(labels.severity).append(severity).append("\n\n");
+        }
+        appendSection(text, labels.homeRemedies, recommendation.getHomeRemedies());
+        appendSection(text, labels.medications, recommendation.getOtcMedications());
+        appendSection(text, labels.warningSigns, recommendation.getWarningSigns());
+        appendSection(text, labels.consultDoctor, recommendation.getWhenToConsultDoctor());
+        text.append(labels.disclaimer);
+        return text.toString();
+    }
+    
+    /**
+     * The localized label of a severity value, or null if it is not one of the known levels.
+     */
+    public String severityLabel(String severity, String language) {
+        return severityLabel("hi".equals(language) ? HINDI : ENGLISH, severity);
+    }
+    
+    private static void appendSection(StringBuilder text, String header, List<String> items) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        text.append(header).append('\n');
+        for (String item : items) {
+            text.append("- ").append(item).append('\n');
+        }
+        text.append('\n');
+    }
+    
+    private static String severityLabel(Labels labels, String severity) {
+        if (severity == null) {
+            return null;
+        }
+        switch (severity) {
+            case Recommendation.SEVERITY_LOW:
+                return labels.severityLevels[0];
+            case Recommendation.SEVERITY_MODERATE:
+                return labels.severityLevels[1];
+            case Recommendation.SEVERITY_HIGH:
+                return labels.severityLevels[2];
+            case Recommendation.SEVERITY_EMERGENCY:
+                return labels.severityLevels[3];
+            default:
+                return null;
+        }
+    }
+    
+    private static int estimateLength(Recommendation recommendation) {
+        return itemsLength(recommendation.getHomeRemedies())
+                + itemsLength(recommendation.getOtcMedications())
+                + itemsLength(recommendation.getWarningSigns())
+                + itemsLength(recommendation.getWhenToConsultDoctor());
+    }
+    
+    private static int itemsLength(List<String> items) {
+        int length = 0;
+        if (items != null) {
+            for (String item : items) {
+                length += item.length() + 3;
+            }
+        }
+        return length;
+    }
+    
+    private static final class Labels {
+        private final String severity;
+        private final String homeRemedies;
+        private final String medications;
+        private final String warningSigns;
+        private final String consultDoctor;
+        private final String disclaimer;
+        private final String[] severityLevels;
+        private final int length;
+        
+        private Labels(String severity, String homeRemedies, String medications, String warningSigns,
+                       String consultDoctor, String disclaimer, String[] severityLevels) {
+            this.severity = severity;
+            this.homeRemedies = homeRemedies;
+            this.medications = medications;
+            this.warningSigns = warningSigns;
+            this.consultDoctor = consultDoctor;
+            this.disclaimer = disclaimer;
+            this.severityLevels = severityLevels;
+            // Headers plus the blank lines between sections and the longest severity label
+            this.length = severity.length() + homeRemedies.length() + medications.length() + warningSigns.length()
+                    + consultDoctor.length() + disclaimer.length() + 32;
+        }
+    }
+}
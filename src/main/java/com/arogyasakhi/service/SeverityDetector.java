@@ -0,0 +1,330 @@
+package com.arogyasakhi.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Finds the severity level and doctor-referral cues in a recommendation in a single pass.
+ *
+ * All English and Hindi keywords (configurable under {@code health.detector.*}) are compiled
+ * into one Aho-Corasick automaton with a dense transition table at startup. Scanning a response
+ * feeds each character through the automaton once and reports every keyword hit as an evidence
+ * span. The severity is the first level word that follows a
+ * "SEVERITY LEVEL" / "गंभीरता का स्तर" header on the same line, and a referral is flagged by any
+ * referral keyword or a high or emergency severity.
+ */
+@Service
+public class SeverityDetector {
+    
+    public enum Severity {
+        LOW, MODERATE, HIGH, EMERGENCY;
+        
+        public String value() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+    
+    public enum Kind { REFERRAL, SEVERITY_HEADER, SEVERITY }
+    
+    @Value("${health.detector.referral-keywords:doctor,emergency,hospital,urgent,डॉक्टर,आपातकाल,अस्पताल}")
+    private List<String> referralKeywords;
+    
+    @Value("${health.detector.severity-headers:severity level,गंभीरता का स्तर}")
+    private List<String> severityHeaders;
+    
+    @Value("${health.detector.severity.low:low,mild,कम,हल्का}")
+    private List<String> lowKeywords;
+    
+    @Value("${health.detector.severity.moderate:moderate,medium,मध्यम}")
+    private List<String> moderateKeywords;
+    
+    @Value("${health.detector.severity.high:high,severe,उच्च,गंभीर}")
+    private List<String> highKeywords;
+    
+    @Value("${health.detector.severity.emergency:emergency,critical,आपातकाल,आपातकालीन}")
+    private List<String> emergencyKeywords;
+    
+    private Automaton automaton;
+    
+    @PostConstruct
+    public void init() {
+        List<Pattern> patterns = new ArrayList<>();
+        referralKeywords.forEach(keyword -> patterns.add(new Pattern(keyword, Kind.REFERRAL, null)));
+        severityHeaders.forEach(keyword -> patterns.add(new Pattern(keyword, Kind.SEVERITY_HEADER, null)));
+        lowKeywords.forEach(keyword -> patterns.add(new Pattern(keyword, Kind.SEVERITY, Severity.LOW)));
+        moderateKeywords.forEach(keyword -> patterns.add(new Pattern(keyword, Kind.SEVERITY, Severity.MODERATE)));
+        highKeywords.forEach(keyword -> patterns.add(new Pattern(keyword, Kind.SEVERITY, Severity.HIGH)));
+        emergencyKeywords.forEach(keyword -> patterns.add(new Pattern(keyword, Kind.SEVERITY, Severity.EMERGENCY)));
+        patterns.removeIf(pattern -> pattern.text.isEmpty());
+        automaton = new Automaton(patterns);
+        System.out.println("🔎 Severity detector compiled " + patterns.size() + " keywords into " + automaton.size() + " states");
+    }
+    
+    public Detection detect(String text) {
+        Detection detection = new Detection();
+        if (text == null || text.isEmpty()) {
+            return detection;
+        }
+        
+        int state = 0;
+        boolean onHeaderLine = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                onHeaderLine = false;
+            }
+            state = automaton.next(state, c);
+            
+            for (int output = automaton.outputOf(state); output >= 0; output = automaton.nextOutput(output)) {
+                Pattern pattern = automaton.pattern(output);
+                int start = i + 1 - pattern.text.length();
+                int end = i + 1;
+                // Level words must be whole words ("low" must not fire inside "follow")
+                if (pattern.kind == Kind.SEVERITY && !isWholeWord(text, start, end)) {
+                    continue;
+                }
+                
+                detection.evidence.add(new Evidence(start, end, pattern.kind, pattern.severity, text.substring(start, end)));
+                switch (pattern.kind) {
+                    case REFERRAL:
+                        detection.doctorRecommended = true;
+                        break;
+                    case SEVERITY_HEADER:
+                        onHeaderLine = true;
+                        break;
+                    case SEVERITY:
+                        if (onHeaderLine && detection.severity == null) {
+                            detection.severity = pattern.severity;
+                            onHeaderLine = false;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        
+        if (detection.severity == Severity.HIGH || detection.severity == Severity.EMERGENCY) {
+            detection.doctorRecommended = true;
+        }
+        return detection;
+    }
+    
+    private static boolean isWholeWord(String text, int start, int end) {
+        return (start == 0 || !isWordPart(text.charAt(start - 1)))
+                && (end == text.length() || !isWordPart(text.charAt(end)));
+    }
+    
+    private static boolean isWordPart(char c) {
+        int type = Character.getType(c);
+        return Character.isLetterOrDigit(c)
+                || type == Character.NON_SPACING_MARK
+                || type == Character.COMBINING_SPACING_MARK;
+    }
+    
+    public static final class Detection {
+        private Severity severity;
+        private boolean doctorRecommended;
+        private final List<Evidence> evidence = new ArrayList<>();
+        
+        /**
+         * The stated severity, or null when the response has no recognizable severity line.
+         */
+        public Severity getSeverity() {
+            return severity;
+        }
+        
+        public boolean isDoctorRecommended() {
+            return doctorRecommended;
+        }
+        
+        public List<Evidence> getEvidence() {
+            return Collections.unmodifiableList(evidence);
+        }
+    }
+    
+    /**
+     * A keyword hit: {@code [start, end)} in the scanned text.
+     */
+    public static final class Evidence {
+        private final int start;
+        private final int end;
+        private final Kind kind;
+        private final Severity severity;
+        private final String text;
+        
+        private Evidence(int start, int end, Kind kind, Severity severity, String text) {
+            this.start = start;
+            this.end = end;
+            this.kind = kind;
+            this.severity = severity;
+            this.text = text;
+        }
+        
+        public int getStart() { return start; }
+        public int getEnd() { return end; }
+        public Kind getKind() { return kind; }
+        public Severity getSeverity() { return severity; }
+        public String getText() { return text; }
+        
+        @Override
+        public String toString() {
+            return kind + "(" + text + ")@" + start;
+        }
+    }
+    
+    private static final class Pattern {
+        private final String text;
+        private final Kind kind;
+        private final Severity severity;
+        
+        private Pattern(String text, Kind kind, Severity severity) {
+            this.text = text.trim().toLowerCase(Locale.ROOT);
+            this.kind = kind;
+            this.severity = severity;
+        }
+    }
+    
+    /**
+     * Aho-Corasick automaton over UTF-16 chars, compiled into a dense transition table.
+     *
+     * The keywords' distinct (lowercased) chars form the alphabet; every UTF-16 char maps to its
+     * lowercase form's alphabet index through a two-level page table, or to 0 if it occurs in no
+     * keyword. Transitions are precomputed for every state and alphabet index with the fail links
+     * already followed, so a step is two array reads with no case folding, search or fail chase.
+     * Outputs per state are a linked list computed once, so matching is allocation-free.
+     */
+    private static final class Automaton {
+        private static final char[] NO_CLASS = new char[256];
+        
+        private final List<Pattern> patterns;
+        private final char[][] classPages = new char[256][];
+        private final int classes;
+        private final int[] transitions;
+        private final int[] firstOutput;
+        private final int[] outputNext;
+        
+        private Automaton(List<Pattern> patterns) {
+            this.patterns = patterns;
+            this.outputNext = new int[patterns.size()];
+            Arrays.fill(outputNext, -1);
+            
+            // Alphabet: 1..n for keyword chars, 0 for everything else
+            Map<Character, Integer> alphabet = new HashMap<>();
+            for (Pattern pattern : patterns) {
+                for (char c : pattern.text.toCharArray()) {
+                    alphabet.putIfAbsent(c, alphabet.size() + 1);
+                }
+            }
+            this.classes = alphabet.size() + 1;
+            Arrays.fill(classPages, NO_CLASS);
+            for (int c = 0; c <= Character.MAX_VALUE; c++) {
+                Integer index = alphabet.get(Character.toLowerCase((char) c));
+                if (index != null) {
+                    if (classPages[c >> 8] == NO_CLASS) {
+                        classPages[c >> 8] = new char[256];
+                    }
+                    classPages[c >> 8][c & 0xFF] = (char) (int) index;
+                }
+            }
+            
+            // Trie, with the goto edges stored directly in the transition table (0 = no edge yet)
+            int maxStates = 1;
+            for (Pattern pattern : patterns) {
+                maxStates += pattern.text.length();
+            }
+            int[] trie = new int[maxStates * classes];
+            int[] outputs = new int[maxStates];
+            Arrays.fill(outputs, -1);
+            int states = 1;
+            for (int p = 0; p < patterns.size(); p++) {
+                int state = 0;
+                for (char c : patterns.get(p).text.toCharArray()) {
+                    int slot = state * classes + classOf(c);
+                    if (trie[slot] == 0) {
+                        trie[slot] = states++;
+                    }
+                    state = trie[slot];
+                }
+                outputNext[p] = outputs[state];
+                outputs[state] = p;
+            }
+            
+            // Breadth first, so a state's fail target is complete before the state itself
+            this.transitions = Arrays.copyOf(trie, states * classes);
+            this.firstOutput = Arrays.copyOf(outputs, states);
+            int[] fail = new int[states];
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (int k = 1; k < classes; k++) {
+                if (transitions[k] != 0) {
+                    queue.add(transitions[k]);
+                }
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                appendOutputs(state, fail[state]);
+                for (int k = 1; k < classes; k++) {
+                    int slot = state * classes + k;
+                    int target = trie[slot];
+                    int fallback = transitions[fail[state] * classes + k];
+                    if (target != 0) {
+                        fail[target] = fallback;
+                        queue.add(target);
+                    } else {
+                        transitions[slot] = fallback;
+                    }
+                }
+            }
+        }
+        
+        int size() {
+            return firstOutput.length;
+        }
+        
+        Pattern pattern(int output) {
+            return patterns.get(output);
+        }
+        
+        int outputOf(int state) {
+            return firstOutput[state];
+        }
+        
+        int nextOutput(int output) {
+            return outputNext[output];
+        }
+        
+        int next(int state, char c) {
+            return transitions[state * classes + classOf(c)];
+        }
+        
+        private int classOf(char c) {
+            return classPages[c >> 8][c & 0xFF];
+        }
+        
+        /** Chains the outputs of {@code from} behind those of {@code state}. */
+        private void appendOutputs(int state, int from) {
+            if (firstOutput[from] < 0) {
+                return;
+            }
+            if (firstOutput[state] < 0) {
+                firstOutput[state] = firstOutput[from];
+                return;
+            }
+            int last = firstOutput[state];
+            while (outputNext[last] >= 0) {
+                last = outputNext[last];
+            }
+            outputNext[last] = firstOutput[from];
+        }
+    }
+}
@@ -0,0 +1,459 @@
+package com.arogyasakhi.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns Gemini's markdown-ish output into Telegram HTML in a single pass.
+ *
+ * Each line is scanned once by code point: known English and Hindi section headers get their
+ * emoji and a bold title, {@code *}, {@code -} and {@code •} bullets become "• ", {@code **bold**}
+ * and {@code *italic*} become tags, stray runs of asterisks are dropped and {@code & < >} are
+ * escaped. Headers start new sections, and long answers are split into messages at section
+ * boundaries (then line boundaries) so no message exceeds Telegram's 4096-character limit
+ * and no tag is left open across messages.
+ */
+@Service
+public class TelegramFormatter {
+    
+    public static final int MAX_MESSAGE_LENGTH = 4096;
+    public static final String PARSE_MODE = "HTML";
+    
+    private static final int VARIATION_SELECTOR = 0xFE0F;
+    private static final int MAX_HEADER_SUFFIX = 40;
+    // An oversized line is only started in the current message if at least this much room is left
+    private static final int MIN_SPLIT_ROOM = 64;
+    
+    private static final Header[] HEADERS = {
+            new Header("🔍", "SEVERITY LEVEL"),
+            new Header("🏠", "HOME REMEDIES"),
+            new Header("💊", "MEDICATION SUGGESTIONS"),
+            new Header("⚠️", "WARNING SIGNS"),
+            new Header("📞", "WHEN TO CONSULT"),
+            new Header("⚠️", "IMPORTANT"),
+            new Header("🔍", "गंभीरता का स्तर"),
+            new Header("🏠", "घरेलू उपचार"),
+            new Header("💊", "दवा सुझाव"),
+            new Header("⚠️", "चेतावनी संकेत"),
+            new Header("📞", "कब डॉक्टर से संपर्क करें"),
+            new Header("⚠️", "महत्वपूर्ण"),
+    };
+    
+    /** Emoji that may precede a header and are replaced by the canonical one. */
+    private static final int[] HEADER_EMOJI = {0x1F50D, 0x1F3E0, 0x1F48A, 0x26A0, 0x1F4DE, 0x2139, 0x1F6A8};
+    
+    public String toHtml(String text) {
+        List<List<Line>> sections = parse(text);
+        StringBuilder html = new StringBuilder(text.length() + 64);
+        for (List<Line> section : sections) {
+            if (html.length() > 0) {
+                html.append("\n\n");
+            }
+            appendSection(html, section);
+        }
+        return html.toString();
+    }
+    
+    /**
+     * Formats {@code text} and splits it into messages of at most {@code limit} characters.
+     * {@code prefixHtml} (already escaped) starts the first message.
+     */
+    public List<String> toHtmlMessages(String prefixHtml, String text, int limit) {
+        List<String> messages = new ArrayList<>();
+        StringBuilder current = new StringBuilder(prefixHtml);
+        boolean hasContent = false;
+        
+        for (List<Line> section : parse(text)) {
+            int sectionLength = sectionLength(section);
+            String separator = hasContent ? "\n\n" : "";
+            if (current.length() + separator.length() + sectionLength <= limit) {
+                current.append(separator);
+                appendSection(current, section);
+                hasContent = true;
+                continue;
+            }
+            
+            if (hasContent) {
+                messages.add(current.toString());
+                current.setLength(0);
+                hasContent = false;
+                if (sectionLength <= limit) {
+                    appendSection(current, section);
+                    hasContent = true;
+                    continue;
+                }
+            }
+            
+            // The section alone is too long: fall back to line boundaries
+            for (Line line : section) {
+                separator = hasContent ? "\n" : "";
+                if (current.length() + separator.length() + line.html.length() <= limit) {
+                    current.append(separator).append(line.html);
+                    hasContent = true;
+                    continue;
+                }
+                if (hasContent && (line.html.length() <= limit || current.length() + separator.length() + MIN_SPLIT_ROOM > limit)) {
+                    messages.add(current.toString());
+                    current.setLength(0);
+                    separator = "";
+                    if (line.html.length() <= limit) {
+                        current.append(line.html);
+                        continue;
+                    }
+                }
+                // A single line longer than a message: cut it at safe points, starting in whatever
+                // room the current message has left. Markup can not be cut, so a line with tags is
+                // sent as escaped plain text.
+                String plain = line.html.indexOf('<') < 0 ? line.html : escape(line.raw);
+                List<String> pieces = hardSplit(plain, limit - current.length() - separator.length(), limit);
+                current.append(separator).append(pieces.get(0));
+                for (int i = 1; i < pieces.size(); i++) {
+                    messages.add(current.toString());
+                    current.setLength(0);
+                    current.append(pieces.get(i));
+                }
+                hasContent = true;
+            }
+        }
+        
+        if (current.length() > 0) {
+            messages.add(current.toString());
+        }
+        return messages;
+    }
+    
+    public static String escape(String text) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String replacement = c == '&' ? "&amp;" : c == '<' ? "&lt;" : c == '>' ? "&gt;" : null;
+            if (replacement != null && escaped == null) {
+                escaped = new StringBuilder(text.length() + 16).append(text, 0, i);
+            }
+            if (escaped != null) {
+                if (replacement != null) {
+                    escaped.append(replacement);
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped != null ? escaped.toString() : text;
+    }
+    
+    private List<List<Line>> parse(String text) {
+        List<List<Line>> sections = new ArrayList<>();
+        List<Line> section = new ArrayList<>();
+        boolean pendingBlank = false;
+        
+        int start = 0;
+        int length = text.length();
+        while (start <= length) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = length;
+            }
+            String raw = text.substring(start, end);
+            start = end + 1;
+            
+            if (raw.isBlank()) {
+                pendingBlank = !section.isEmpty();
+                continue;
+            }
+            
+            StringBuilder html = new StringBuilder(raw.length() + 16);
+            if (formatHeader(raw, html)) {
+                if (!section.isEmpty()) {
+                    sections.add(section);
+                    section = new ArrayList<>();
+                }
+            } else {
+                formatLine(raw, html);
+                if (html.length() == 0) {
+                    // Only decoration such as "***"
+                    pendingBlank = !section.isEmpty();
+                    continue;
+                }
+                if (pendingBlank) {
+                    // Keep paragraph breaks inside a section, collapsed to a single blank line
+                    section.add(new Line("", ""));
+                }
+            }
+            pendingBlank = false;
+            section.add(new Line(html.toString(), raw));
+        }
+        
+        if (!section.isEmpty()) {
+            sections.add(section);
+        }
+        return sections;
+    }
+    
+    private boolean formatHeader(String line, StringBuilder html) {
+        int i = skipHeaderDecoration(line, 0);
+        for (Header header : HEADERS) {
+            if (!line.regionMatches(true, i, header.label, 0, header.label.length())) {
+                continue;
+            }
+            int labelEnd = i + header.label.length();
+            if (labelEnd < line.length() && isWordPart(line.codePointAt(labelEnd))) {
+                continue;
+            }
+            int colon = line.indexOf(':', labelEnd);
+            if (colon < 0 || colon - labelEnd > MAX_HEADER_SUFFIX) {
+                continue;
+            }
+            
+            html.append(header.emoji).append(" <b>");
+            appendWithoutAsterisks(html, line, i, colon);
+            html.append(":</b>");
+            
+            int rest = colon + 1;
+            while (rest < line.length() && (line.charAt(rest) == '*' || Character.isWhitespace(line.charAt(rest)))) {
+                rest++;
+            }
+            if (rest < line.length()) {
+                html.append(' ');
+                formatInline(line, rest, line.length(), html);
+            }
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Skips whitespace, markdown heading/bold markers and a leading section emoji (including
+     * its U+FE0F variation selector, as in ⚠️).
+     */
+    private int skipHeaderDecoration(String line, int from) {
+        int i = from;
+        while (i < line.length()) {
+            int codePoint = line.codePointAt(i);
+            if (codePoint == '#' || codePoint == '*' || codePoint == VARIATION_SELECTOR
+                    || Character.isWhitespace(codePoint) || isHeaderEmoji(codePoint)) {
+                i += Character.charCount(codePoint);
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+    
+    private void formatLine(String line, StringBuilder html) {
+        int i = 0;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        
+        if (i + 1 < line.length() && isBulletMarker(line.charAt(i)) && Character.isWhitespace(line.charAt(i + 1))) {
+            html.append(i >= 2 ? "  ◦ " : "• ");
+            i += 2;
+            while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+        }
+        formatInline(line, i, stripTrailingWhitespace(line), html);
+    }
+    
+    private void formatInline(String line, int from, int to, StringBuilder html) {
+        boolean bold = false;
+        boolean italic = false;
+        int i = from;
+        while (i < to) {
+            int codePoint = line.codePointAt(i);
+            if (codePoint == '*') {
+                int run = 1;
+                while (i + run < to && line.charAt(i + run) == '*') {
+                    run++;
+                }
+                // Bold and italics never nest, so tags can not end up crossed
+                if (run == 2 && !italic) {
+                    if (bold) {
+                        html.append("</b>");
+                        bold = false;
+                    } else if (line.indexOf("**", i + 2) >= 0 && line.indexOf("**", i + 2) < to) {
+                        html.append("<b>");
+                        bold = true;
+                    }
+                } else if (run == 1) {
+                    if (italic) {
+                        html.append("</i>");
+                        italic = false;
+                    } else if (!bold && opensItalic(line, i, to)) {
+                        html.append("<i>");
+                        italic = true;
+                    } else {
+                        html.append('*');
+                    }
+                }
+                // Runs of three or more asterisks are decoration and are dropped
+                i += run;
+                continue;
+            }
+            
+            switch (codePoint) {
+                case '&':
+                    html.append("&amp;");
+                    break;
+                case '<':
+                    html.append("&lt;");
+                    break;
+                case '>':
+                    html.append("&gt;");
+                    break;
+                default:
+                    html.appendCodePoint(codePoint);
+                    break;
+            }
+            i += Character.charCount(codePoint);
+        }
+        
+        if (italic) {
+            html.append("</i>");
+        }
+        if (bold) {
+            html.append("</b>");
+        }
+    }
+    
+    /**
+     * A single asterisk opens italics only when it is followed by text and closed by another
+     * single asterisk later on the line, so "2 * 3" and stray markers stay literal.
+     */
+    private static boolean opensItalic(String line, int at, int to) {
+        if (at + 1 >= to || Character.isWhitespace(line.charAt(at + 1)) || line.charAt(at + 1) == '*') {
+            return false;
+        }
+        for (int i = at + 1; i < to; i++) {
+            if (line.charAt(i) == '*') {
+                boolean single = (i + 1 >= to || line.charAt(i + 1) != '*') && line.charAt(i - 1) != '*';
+                if (single && !Character.isWhitespace(line.charAt(i - 1))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private static void appendWithoutAsterisks(StringBuilder html, String line, int from, int to) {
+        int end = to;
+        while (end > from && (line.charAt(end - 1) == '*' || Character.isWhitespace(line.charAt(end - 1)))) {
+            end--;
+        }
+        for (int i = from; i < end; i++) {
+            char c = line.charAt(i);
+            if (c == '*') {
+                continue;
+            }
+            if (c == '&') {
+                html.append("&amp;");
+            } else if (c == '<') {
+                html.append("&lt;");
+            } else if (c == '>') {
+                html.append("&gt;");
+            } else {
+                html.append(c);
+            }
+        }
+    }
+    
+    /**
+     * Cuts text that has no markup into pieces, never inside an entity or a surrogate pair and
+     * preferably at a space, which is then dropped. The first piece is at most
+     * {@code firstLimit} long.
+     */
+    private static List<String> hardSplit(String text, int firstLimit, int limit) {
+        List<String> pieces = new ArrayList<>();
+        int start = 0;
+        int max = Math.max(firstLimit, 1);
+        while (text.length() - start > max) {
+            int cut = start + max;
+            int space = text.lastIndexOf(' ', cut);
+            if (space > start) {
+                cut = space;
+            }
+            int amp = text.lastIndexOf('&', cut - 1);
+            if (amp >= start && text.indexOf(';', amp) >= cut) {
+                cut = amp;
+            }
+            if (Character.isLowSurrogate(text.charAt(cut))) {
+                cut--;
+            }
+            if (cut <= start) {
+                cut = start + max;
+            }
+            pieces.add(text.substring(start, cut));
+            start = text.charAt(cut) == ' ' ? cut + 1 : cut;
+            max = limit;
+        }
+        pieces.add(text.substring(start));
+        return pieces;
+    }
+    
+    private static void appendSection(StringBuilder html, List<Line> section) {
+        for (int i = 0; i < section.size(); i++) {
+            if (i > 0) {
+                html.append('\n');
+            }
+            html.append(section.get(i).html);
+        }
+    }
+    
+    private static int sectionLength(List<Line> section) {
+        int length = section.size() - 1;
+        for (Line line : section) {
+            length += line.html.length();
+        }
+        return length;
+    }
+    
+    private static int stripTrailingWhitespace(String line) {
+        int end = line.length();
+        while (end > 0 && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+    
+    private static boolean isBulletMarker(char c) {
+        return c == '*' || c == '-' || c == '•';
+    }
+    
+    private static boolean isHeaderEmoji(int codePoint) {
+        for (int emoji : HEADER_EMOJI) {
+            if (emoji == codePoint) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean isWordPart(int codePoint) {
+        int type = Character.getType(codePoint);
+        return Character.isLetterOrDigit(codePoint)
+                || type == Character.NON_SPACING_MARK
+                || type == Character.COMBINING_SPACING_MARK;
+    }
+    
+    private static final class Header {
+        private final String emoji;
+        private final String label;
+        
+        private Header(String emoji, String label) {
+            this.emoji = emoji;
+            this.label = label;
+        }
+    }
+    
+    private static final class Line {
+        private final String html;
+        private final String raw;
+        
+        private Line(String html, String raw) {
+            this.html = html;
+            this.raw = raw;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.arogyasakhi.service;
+
+/**
+ * Classic token bucket: holds up to {@code capacity} tokens and refills continuously
+ * at {@code ratePerSecond}. Not thread-safe on its own; callers guard it with their own lock.
+ */
+public class TokenBucket {
+    
+    private final double capacity;
+    private final double ratePerNano;
+    private double tokens;
+    private long lastRefillNanos;
+    
+    public TokenBucket(double capacity, double ratePerSecond) {
+        this.capacity = capacity;
+        this.ratePerNano = ratePerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+    
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+    
+    public boolean tryAcquire(double permits) {
+        refill();
+        if (tokens >= permits) {
+            tokens -= permits;
+            return true;
+        }
+        return false;
+    }
+    
+    public boolean hasTokens(double permits) {
+        refill();
+        return tokens >= permits;
+    }
+    
+    public boolean isFull() {
+        refill();
+        return tokens >= capacity;
+    }
+    
+    /**
+     * Nanoseconds until {@code permits} tokens will be available, 0 if they already are.
+     */
+    public long nanosUntil(double permits) {
+        refill();
+        if (tokens >= permits) {
+            return 0;
+        }
+        return (long) Math.ceil((permits - tokens) / ratePerNano);
+    }
+    
+    private void refill() {
+        long now = System.nanoTime();
+        long elapsed = now - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * ratePerNano);
+            lastRefillNanos = now;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.arogyasakhi.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs update handlers off the Telegram receiving thread.
+ *
+ * Updates are sharded by chat id onto per-chat lanes: work for one chat runs strictly
+ * in arrival order, while different chats are processed in parallel on a shared pool.
+ * A lane hands its thread back after every task so a chatty user cannot starve others.
+ * Handlers may finish asynchronously: the lane only moves on once the returned stage
+ * completes, but no thread is held while it is pending.
+ * The total number of accepted-but-unfinished updates is capped; once the cap is hit
+ * {@link #dispatch} blocks the caller, which pushes back on the poller, while
+ * {@link #tryDispatchAsync} refuses the update so a webhook call can be answered at once.
+ */
+@Service
+public class UpdateDispatcher {
+    
+    @Value("${bot.dispatcher.threads:16}")
+    private int threads;
+    
+    @Value("${bot.dispatcher.max-in-flight:256}")
+    private int maxInFlight;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final Map<Long, ChatLane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    
+    private ExecutorService executor;
+    private Semaphore inFlight;
+    
+    @PostConstruct
+    public void init() {
+        this.executor = Executors.newFixedThreadPool(threads, namedThreadFactory());
+        this.inFlight = new Semaphore(maxInFlight);
+        
+        Gauge.builder("bot.dispatcher.queued", queued, AtomicInteger::get)
+                .description("Updates waiting for their chat lane")
+                .register(meterRegistry);
+        Gauge.builder("bot.dispatcher.in_flight", this, d -> d.maxInFlight - d.inFlight.availablePermits())
+                .description("Updates accepted and not yet finished")
+                .register(meterRegistry);
+        Gauge.builder("bot.dispatcher.active_chats", lanes, Map::size)
+                .description("Chats with queued or running updates")
+                .register(meterRegistry);
+        
+        System.out.println("✅ Update dispatcher started with " + threads + " threads, max in-flight " + maxInFlight);
+    }
+    
+    /**
+     * Queues a handler for the given chat. Blocks while the in-flight limit is reached.
+     */
+    public void dispatch(long chatId, Runnable task) {
+        dispatchAsync(chatId, () -> {
+            task.run();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+    
+    /**
+     * Queues an asynchronous handler. The next update of the same chat starts only after the
+     * returned stage completes. Blocks while the in-flight limit is reached.
+     */
+    public void dispatchAsync(long chatId, Supplier<? extends CompletionStage<?>> task) {
+        inFlight.acquireUninterruptibly();
+        enqueue(chatId, task);
+    }
+    
+    /**
+     * As {@link #dispatchAsync}, but never blocks: returns false, without queueing the handler,
+     * if the in-flight limit is reached.
+     */
+    public boolean tryDispatchAsync(long chatId, Supplier<? extends CompletionStage<?>> task) {
+        if (!inFlight.tryAcquire()) {
+            return false;
+        }
+        enqueue(chatId, task);
+        return true;
+    }
+    
+    private void enqueue(long chatId, Supplier<? extends CompletionStage<?>> task) {
+        queued.incrementAndGet();
+        
+        boolean[] created = new boolean[1];
+        ChatLane lane = lanes.compute(chatId, (id, existing) -> {
+            ChatLane target = existing != null ? existing : new ChatLane(id);
+            target.pending.add(task);
+            created[0] = existing == null;
+            return target;
+        });
+        
+        if (created[0]) {
+            schedule(lane);
+        }
+    }
+    
+    public int getQueuedCount() {
+        return queued.get();
+    }
+    
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+    
+    private void schedule(ChatLane lane) {
+        try {
+            executor.execute(lane);
+        } catch (RejectedExecutionException e) {
+            // While shutting down the pool rejects new work, so drain in place instead
+            lane.run();
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.err.println("⚠️ Dispatcher did not drain in time, " + queued.get() + " updates still queued");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private ThreadFactory namedThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "update-dispatcher-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    /**
+     * Pending work of a single chat. A lane is present in {@link #lanes} exactly while it is
+     * scheduled or running, and its queue is only touched inside {@code lanes.compute*}.
+     */
+    private final class ChatLane implements Runnable {
+        private final long chatId;
+        private final ArrayDeque<Supplier<? extends CompletionStage<?>>> pending = new ArrayDeque<>();
+        
+        private ChatLane(long chatId) {
+            this.chatId = chatId;
+        }
+        
+        @Override
+        public void run() {
+            List<Supplier<? extends CompletionStage<?>>> task = new ArrayList<>(1);
+            lanes.computeIfPresent(chatId, (id, lane) -> {
+                task.add(lane.pending.poll());
+                return lane;
+            });
+            
+            queued.decrementAndGet();
+            // The permit and the lane must be handed on exactly once, whatever the handler does
+            boolean attached = false;
+            try {
+                CompletionStage<?> completion;
+                try {
+                    completion = task.get(0).get();
+                } catch (Throwable e) {
+                    completion = CompletableFuture.failedFuture(e);
+                }
+                if (completion == null) {
+                    completion = CompletableFuture.completedFuture(null);
+                }
+                completion.whenComplete((result, error) -> finish(error));
+                attached = true;
+            } finally {
+                if (!attached) {
+                    finish(null);
+                }
+            }
+        }
+        
+        private void finish(Throwable error) {
+            try {
+                if (error != null) {
+                    System.err.println("❌ Error handling update for chatId " + chatId + ": " + error.getMessage());
+                    error.printStackTrace();
+                }
+            } finally {
+                inFlight.release();
+                advance();
+            }
+        }
+        
+        private void advance() {
+            ChatLane next = lanes.computeIfPresent(chatId, (id, lane) -> lane.pending.isEmpty() ? null : lane);
+            if (next != null) {
+                schedule(next);
+            }
+        }
+    }
+}
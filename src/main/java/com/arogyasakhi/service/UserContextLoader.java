@@ -0,0 +1,113 @@
+package com.arogyasakhi.service;
+
+import com.arogyasakhi.model.UserContext;
+import com.arogyasakhi.model.UserProfile;
+import com.arogyasakhi.model.UserSession;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Loads a chat's session and profile in a single round-trip: an aggregation over
+ * {@code user_sessions} that joins the profile with {@code $lookup} on {@code chat_id}.
+ *
+ * The loaded session seeds the session cache; when the chat is already cached the cached
+ * session wins, since it may hold changes that have not been flushed yet. A chat without a
+ * session (its first message) falls back to creating the session and reading the profile.
+ *
+ * A chat whose profile is in {@link UserProfileService}'s cache skips the join: only the
+ * session is loaded, which itself is usually cached, so a repeat user costs no round-trip at
+ * all. A joined profile is added to that cache.
+ *
+ * {@link #loadAsync(Long)} does the same on the Reactive Streams driver without blocking.
+ */
+@Service
+public class UserContextLoader {
+    
+    private static final String PROFILES = "profiles";
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private UserSessionService userSessionService;
+    
+    @Autowired
+    private UserProfileService userProfileService;
+    
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    
+    @Autowired
+    private ReactiveUserSessionService reactiveUserSessionService;
+    
+    @Autowired
+    private ReactiveUserProfileService reactiveUserProfileService;
+    
+    public UserContext load(Long chatId) {
+        UserProfile cachedProfile = userProfileService.cached(chatId);
+        if (cachedProfile != null) {
+            return new UserContext(userSessionService.getUserSession(chatId), cachedProfile);
+        }
+        
+        long profileGeneration = userProfileService.generation();
+        try {
+            Document result = mongoTemplate.aggregate(contextAggregation(chatId), "user_sessions", Document.class)
+                    .getUniqueMappedResult();
+            if (result != null) {
+                return toContext(chatId, result, profileGeneration);
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error loading user context for chatId " + chatId + ": " + e.getMessage());
+        }
+        
+        return new UserContext(userSessionService.getUserSession(chatId), userProfileService.getUserProfile(chatId));
+    }
+    
+    public Mono<UserContext> loadAsync(Long chatId) {
+        return Mono.defer(() -> {
+            UserProfile cachedProfile = userProfileService.cached(chatId);
+            if (cachedProfile != null) {
+                return reactiveUserSessionService.getUserSession(chatId)
+                        .map(session -> new UserContext(session, cachedProfile));
+            }
+            
+            long profileGeneration = userProfileService.generation();
+            return reactiveMongoTemplate.aggregate(contextAggregation(chatId), "user_sessions", Document.class)
+                    .next()
+                    .map(result -> toContext(chatId, result, profileGeneration))
+                    .onErrorResume(e -> {
+                        System.err.println("❌ Error loading user context for chatId " + chatId + ": " + e.getMessage());
+                        return Mono.empty();
+                    })
+                    .switchIfEmpty(Mono.defer(() -> Mono.zip(
+                            reactiveUserSessionService.getUserSession(chatId),
+                            reactiveUserProfileService.getUserProfile(chatId),
+                            UserContext::new)));
+        });
+    }
+    
+    private static Aggregation contextAggregation(Long chatId) {
+        return Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("chat_id").is(chatId)),
+                Aggregation.limit(1),
+                Aggregation.lookup("user_profiles", "chat_id", "chat_id", PROFILES));
+    }
+    
+    private UserContext toContext(Long chatId, Document result, long profileGeneration) {
+        List<Document> profiles = result.getList(PROFILES, Document.class);
+        result.remove(PROFILES);
+        UserSession session = mongoTemplate.getConverter().read(UserSession.class, result);
+        UserProfile profile = profiles == null || profiles.isEmpty()
+                ? new UserProfile(chatId)
+                : mongoTemplate.getConverter().read(UserProfile.class, profiles.get(0));
+        return new UserContext(userSessionService.prime(session), userProfileService.cache(profile, profileGeneration));
+    }
+}
@@ -2,35 +2,161 @@ package com.arogyasakhi.service;
 
 import com.arogyasakhi.model.UserProfile;
 import com.arogyasakhi.repository.UserProfileRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
+/**
+ * User profiles with a bounded read-through cache.
+ *
+ * The most recently used profiles are kept in an LRU map of up to {@code profile.cache.max-size}
+ * entries, each with the English and Hindi patient information blocks of the Gemini prompt
+ * already rendered, so a repeat consultation neither reads the profile nor rebuilds that text.
+ * A chat without a profile is cached as an empty one. Saving or deleting a profile through this
+ * service or {@link ReactiveUserProfileService} removes the entry.
+ *
+ * Cached profiles are shared and must be treated as read-only; the profile wizard edits a
+ * {@link ProfileDraftStore} copy and saves that.
+ */
 @Service
 public class UserProfileService {
     
     @Autowired
     private UserProfileRepository userProfileRepository;
     
+    @Autowired
+    private GeminiPromptBuilder promptBuilder;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${profile.cache.max-size:10000}")
+    private int maxSize;
+    
+    private Map<Long, CachedProfile> profiles;
+    
+    // Bumped by every invalidation, so a profile read before it is not cached after it
+    private long generation;
+    
+    private Counter hits;
+    private Counter misses;
+    
+    @PostConstruct
+    public void init() {
+        profiles = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedProfile> eldest) {
+                return size() > maxSize;
+            }
+        };
+        hits = meterRegistry.counter("profile.cache.hits");
+        misses = meterRegistry.counter("profile.cache.misses");
+        Gauge.builder("profile.cache.size", this, service -> service.cachedCount())
+                .description("Profiles held in memory")
+                .register(meterRegistry);
+    }
+    
     public UserProfile getUserProfile(Long chatId) {
+        UserProfile cached = cached(chatId);
+        if (cached != null) {
+            return cached;
+        }
+        long readGeneration = generation();
         try {
             Optional<UserProfile> profile = userProfileRepository.findByChatId(chatId);
-            return profile.orElse(new UserProfile(chatId));
+            return cache(profile.orElse(new UserProfile(chatId)), readGeneration);
         } catch (Exception e) {
             System.err.println("❌ Error getting user profile for chatId " + chatId + ": " + e.getMessage());
             return new UserProfile(chatId);
         }
     }
     
+    /**
+     * Returns the cached profile of the chat without loading it on a miss, or null.
+     */
+    public UserProfile cached(Long chatId) {
+        CachedProfile entry;
+        synchronized (profiles) {
+            entry = profiles.get(chatId);
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.profile;
+    }
+    
+    /**
+     * The current invalidation generation; pass it to {@link #cache(UserProfile, long)} for a
+     * profile read from MongoDB after this call.
+     */
+    public long generation() {
+        synchronized (profiles) {
+            return generation;
+        }
+    }
+    
+    /**
+     * Caches a profile loaded elsewhere (e.g. joined into the user context) and returns the
+     * instance to use. The profile is not cached if it was invalidated since
+     * {@code readGeneration}; if the chat is already cached, the cached profile wins.
+     */
+    public UserProfile cache(UserProfile profile, long readGeneration) {
+        CachedProfile entry = new CachedProfile(profile,
+                promptBuilder.patientInfo(profile, "en"), promptBuilder.patientInfo(profile, "hi"));
+        synchronized (profiles) {
+            if (readGeneration != generation) {
+                return profile;
+            }
+            CachedProfile existing = profiles.putIfAbsent(profile.getChatId(), entry);
+            return existing != null ? existing.profile : profile;
+        }
+    }
+    
+    /**
+     * The patient information block of the prompt for {@code profile}: the pre-rendered one if
+     * this is the cached profile, otherwise rendered now.
+     */
+    public String patientInfo(UserProfile profile, String language) {
+        if (profile != null && profile.getChatId() != null) {
+            CachedProfile entry;
+            synchronized (profiles) {
+                entry = profiles.get(profile.getChatId());
+            }
+            if (entry != null && entry.profile == profile) {
+                return "hi".equals(language) ? entry.hindiPatientInfo : entry.englishPatientInfo;
+            }
+        }
+        return promptBuilder.patientInfo(profile, language);
+    }
+    
+    public void invalidate(Long chatId) {
+        synchronized (profiles) {
+            profiles.remove(chatId);
+            generation++;
+        }
+    }
+    
     public UserProfile saveUserProfile(UserProfile userProfile) {
         try {
             userProfile.setUpdatedAt(LocalDateTime.now());
             UserProfile saved = userProfileRepository.save(userProfile);
+            invalidate(userProfile.getChatId());
             System.out.println("✅ User profile saved successfully for chatId: " + userProfile.getChatId());
             return saved;
         } catch (Exception e) {
+            // The write may still have been applied
+            invalidate(userProfile.getChatId());
             System.err.println("❌ Error saving user profile: " + e.getMessage());
             e.printStackTrace();
             throw e;
@@ -60,6 +186,8 @@ public class UserProfileService {
             System.out.println("✅ User profile deleted for chatId: " + chatId);
         } catch (Exception e) {
             System.err.println("❌ Error deleting user profile: " + e.getMessage());
+        } finally {
+            invalidate(chatId);
         }
     }
     
@@ -80,4 +208,22 @@ public class UserProfileService {
             return new java.util.ArrayList<>();
         }
     }
+    
+    private int cachedCount() {
+        synchronized (profiles) {
+            return profiles.size();
+        }
+    }
+    
+    private static final class CachedProfile {
+        private final UserProfile profile;
+        private final String englishPatientInfo;
+        private final String hindiPatientInfo;
+        
+        private CachedProfile(UserProfile profile, String englishPatientInfo, String hindiPatientInfo) {
+            this.profile = profile;
+            this.englishPatientInfo = englishPatientInfo;
+            this.hindiPatientInfo = hindiPatientInfo;
+        }
+    }
 }
@@ -2,81 +2,467 @@ package com.arogyasakhi.service;
 
 import com.arogyasakhi.model.UserSession;
 import com.arogyasakhi.repository.UserSessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Chat sessions (language and wizard state) behind a bounded write-behind cache.
+ *
+ * Sessions live in 16 lock-striped segments keyed by the primitive chat id, so a message reads
+ * its state and language from memory and a state change is a field update. A miss fetches or
+ * creates the session in a single {@code findAndModify} upsert. Changed fields are only marked
+ * dirty; a background flush writes them back every {@code session.cache.flush-interval-ms} as
+ * one bulk of {@code $set} upserts on {@code chat_id}, so several changes to one chat between
+ * two flushes cost a single write. Clean sessions idle for longer than the idle timeout are
+ * evicted, as is the least recently used clean session when a segment is full. Everything
+ * still dirty is flushed on shutdown.
+ *
+ * The cache assumes this process is the only writer of {@code user_sessions}.
+ */
 @Service
 public class UserSessionService {
     
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    private static final String DEFAULT_LANGUAGE = "en";
+    static final FindAndModifyOptions FIND_OR_CREATE = FindAndModifyOptions.options().upsert(true).returnNew(true);
+    
+    // Bits of CachedSession.dirtyFields
+    private static final int LANGUAGE = 1;
+    private static final int STATE = 2;
+    
     @Autowired
     private UserSessionRepository userSessionRepository;
     
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${session.cache.max-size:10000}")
+    private int maxSize;
+    
+    @Value("${session.cache.idle-timeout-minutes:30}")
+    private long idleTimeoutMinutes;
+    
+    @Value("${session.cache.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+    
+    @Value("${session.cache.flush-batch-size:500}")
+    private int flushBatchSize;
+    
+    private final Segment[] segments = new Segment[SEGMENTS];
+    
+    // Serializes flushes with deletes so a flush in progress cannot re-create a deleted session
+    private final Object writeLock = new Object();
+    
+    private ScheduledExecutorService flusher;
+    private Counter hits;
+    private Counter misses;
+    private Counter flushed;
+    private Counter flushFailures;
+    
+    @PostConstruct
+    public void init() {
+        int segmentCapacity = Math.max(1, maxSize / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+        
+        hits = meterRegistry.counter("session.cache.hits");
+        misses = meterRegistry.counter("session.cache.misses");
+        flushed = meterRegistry.counter("session.cache.flushed");
+        flushFailures = meterRegistry.counter("session.cache.flush.failures");
+        Gauge.builder("session.cache.size", this, UserSessionService::cachedCount).register(meterRegistry);
+        Gauge.builder("session.cache.dirty", this, UserSessionService::dirtyCount).register(meterRegistry);
+        
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushAndEvict, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Returns a snapshot of the chat's session; changes to it are not saved.
+     */
     public UserSession getUserSession(Long chatId) {
-        try {
-            Optional<UserSession> session = userSessionRepository.findByChatId(chatId);
-            if (session.isPresent()) {
-                return session.get();
-            } else {
-                UserSession newSession = new UserSession(chatId);
-                return userSessionRepository.save(newSession);
+        Segment segment = segmentFor(chatId);
+        synchronized (segment) {
+            return copyOf(cached(segment, chatId).session);
+        }
+    }
+    
+    /**
+     * Returns a snapshot of the chat's session if it is cached, without loading it on a miss.
+     */
+    public UserSession peek(Long chatId) {
+        Segment segment = segmentFor(chatId);
+        synchronized (segment) {
+            CachedSession entry = segment.sessions.get(chatId);
+            if (entry == null) {
+                return null;
             }
-        } catch (Exception e) {
-            System.err.println("❌ Error getting user session for chatId " + chatId + ": " + e.getMessage());
-            // Return a default session if database fails
-            return new UserSession(chatId);
+            hits.increment();
+            entry.lastAccessNanos = System.nanoTime();
+            return copyOf(entry.session);
+        }
+    }
+    
+    /**
+     * Caches a session loaded elsewhere (e.g. together with the profile) unless the chat is
+     * already cached, and returns a snapshot of the cached session. An already cached session
+     * wins because it may hold changes that have not been flushed yet.
+     */
+    public UserSession prime(UserSession loaded) {
+        long chatId = loaded.getChatId();
+        Segment segment = segmentFor(chatId);
+        synchronized (segment) {
+            CachedSession entry = segment.sessions.get(chatId);
+            if (entry == null) {
+                entry = new CachedSession();
+                entry.session = loaded;
+                if (segment.sessions.size() >= segment.capacity) {
+                    evictLeastRecentlyUsed(segment);
+                }
+                segment.sessions.put(chatId, entry);
+            }
+            entry.lastAccessNanos = System.nanoTime();
+            return copyOf(entry.session);
         }
     }
     
     public String getUserLanguage(Long chatId) {
-        try {
-            UserSession session = getUserSession(chatId);
-            return session.getLanguage();
-        } catch (Exception e) {
-            System.err.println("❌ Error getting user language: " + e.getMessage());
-            return "en"; // Default to English
+        Segment segment = segmentFor(chatId);
+        synchronized (segment) {
+            return cached(segment, chatId).session.getLanguage();
         }
     }
     
     public void updateUserLanguage(Long chatId, String language) {
-        try {
-            UserSession session = getUserSession(chatId);
-            session.setLanguage(language);
-            userSessionRepository.save(session);
-            System.out.println("✅ User language updated to " + language + " for chatId: " + chatId);
-        } catch (Exception e) {
-            System.err.println("❌ Error updating user language: " + e.getMessage());
+        Segment segment = segmentFor(chatId);
+        synchronized (segment) {
+            CachedSession entry = cached(segment, chatId);
+            entry.session.setLanguage(language);
+            entry.dirtyFields |= LANGUAGE;
+            entry.version++;
         }
+        System.out.println("✅ User language updated to " + language + " for chatId: " + chatId);
     }
     
     public String getUserState(Long chatId) {
+        Segment segment = segmentFor(chatId);
+        synchronized (segment) {
+            return cached(segment, chatId).session.getCurrentState();
+        }
+    }
+    
+    public void updateUserState(Long chatId, String state) {
+        Segment segment = segmentFor(chatId);
+        synchronized (segment) {
+            CachedSession entry = cached(segment, chatId);
+            entry.session.setCurrentState(state);
+            entry.dirtyFields |= STATE;
+            entry.version++;
+        }
+        System.out.println("✅ User state updated to " + state + " for chatId: " + chatId);
+    }
+    
+    public void deleteUserSession(Long chatId) {
+        Segment segment = segmentFor(chatId);
+        synchronized (writeLock) {
+            synchronized (segment) {
+                segment.sessions.remove(chatId);
+            }
+            try {
+                userSessionRepository.deleteByChatId(chatId);
+                System.out.println("✅ User session deleted for chatId: " + chatId);
+            } catch (Exception e) {
+                System.err.println("❌ Error deleting user session: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Returns the cached entry, loading it on a miss. Must be called holding the segment lock;
+     * a miss does its database read under that lock, which only holds up chats of the same
+     * segment and only until the session is cached.
+     */
+    private CachedSession cached(Segment segment, long chatId) {
+        CachedSession entry = segment.sessions.get(chatId);
+        if (entry != null) {
+            hits.increment();
+            entry.lastAccessNanos = System.nanoTime();
+            return entry;
+        }
+        
+        misses.increment();
+        entry = new CachedSession();
+        entry.lastAccessNanos = System.nanoTime();
         try {
-            UserSession session = getUserSession(chatId);
-            return session.getCurrentState();
+            entry.session = findOrCreate(chatId);
         } catch (Exception e) {
-            System.err.println("❌ Error getting user state: " + e.getMessage());
-            return null;
+            System.err.println("❌ Error getting user session for chatId " + chatId + ": " + e.getMessage());
+            // Serve a default session without caching it, so it can never overwrite the stored one
+            entry.session = new UserSession(chatId);
+            return entry;
+        }
+        
+        if (segment.sessions.size() >= segment.capacity) {
+            evictLeastRecentlyUsed(segment);
         }
+        segment.sessions.put(chatId, entry);
+        return entry;
     }
     
-    public void updateUserState(Long chatId, String state) {
+    /**
+     * Fetches the chat's session, creating it if it does not exist, in one atomic round-trip.
+     */
+    private UserSession findOrCreate(long chatId) {
+        Update update = findOrCreateUpdate();
         try {
-            UserSession session = getUserSession(chatId);
-            session.setCurrentState(state);
-            userSessionRepository.save(session);
-            System.out.println("✅ User state updated to " + state + " for chatId: " + chatId);
+            return mongoTemplate.findAndModify(byChatId(chatId), update, FIND_OR_CREATE, UserSession.class);
+        } catch (DuplicateKeyException e) {
+            // Another writer inserted the same chat between our match and insert; now it matches
+            return mongoTemplate.findAndModify(byChatId(chatId), update, FIND_OR_CREATE, UserSession.class);
+        }
+    }
+    
+    /**
+     * The upsert that creates a missing session with its defaults and leaves an existing one alone.
+     */
+    static Update findOrCreateUpdate() {
+        LocalDateTime now = LocalDateTime.now();
+        return new Update()
+                .setOnInsert("language", DEFAULT_LANGUAGE)
+                .setOnInsert("created_at", now)
+                .setOnInsert("updated_at", now);
+    }
+    
+    private static boolean evictLeastRecentlyUsed(Segment segment) {
+        long[] victim = new long[1];
+        long[] oldestAccess = new long[1];
+        boolean[] found = new boolean[1];
+        segment.sessions.forEach((chatId, entry) -> {
+            if (entry.dirtyFields == 0 && (!found[0] || entry.lastAccessNanos - oldestAccess[0] < 0)) {
+                victim[0] = chatId;
+                oldestAccess[0] = entry.lastAccessNanos;
+                found[0] = true;
+            }
+        });
+        // With every entry dirty the segment briefly grows past its bound until the next flush
+        if (found[0]) {
+            segment.sessions.remove(victim[0]);
+        }
+        return found[0];
+    }
+    
+    private void flushAndEvict() {
+        try {
+            flush();
+            evictIdle();
         } catch (Exception e) {
-            System.err.println("❌ Error updating user state: " + e.getMessage());
+            System.err.println("❌ Session flush failed: " + e.getMessage());
         }
     }
     
-    public void deleteUserSession(Long chatId) {
+    /**
+     * Writes every dirty session back in batches. Entries stay dirty, and so can not be evicted,
+     * until their write is acknowledged; an entry changed again while its write was in flight
+     * stays dirty for the next flush. If the write fails nothing is cleared and it is retried
+     * on the next flush.
+     */
+    private void flush() {
+        synchronized (writeLock) {
+            List<PendingWrite> batch = new ArrayList<>();
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    segment.sessions.forEach((chatId, entry) -> {
+                        if (entry.dirtyFields != 0) {
+                            batch.add(new PendingWrite(chatId, entry.dirtyFields, entry.version, entry.session));
+                        }
+                    });
+                }
+                if (batch.size() >= flushBatchSize) {
+                    write(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        }
+    }
+    
+    /**
+     * One unordered bulk write of {@code $set} upserts on {@code chat_id}. Only the fields that
+     * changed are set, so a flush never overwrites a field it did not change.
+     */
+    private void write(List<PendingWrite> batch) {
         try {
-            userSessionRepository.deleteByChatId(chatId);
-            System.out.println("✅ User session deleted for chatId: " + chatId);
+            BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserSession.class);
+            for (PendingWrite pending : batch) {
+                Update update = new Update()
+                        .set("updated_at", pending.updatedAt)
+                        .setOnInsert("created_at", pending.updatedAt);
+                if ((pending.fields & LANGUAGE) != 0) {
+                    update.set("language", pending.language);
+                }
+                if ((pending.fields & STATE) != 0) {
+                    update.set("current_state", pending.state);
+                }
+                operations.upsert(byChatId(pending.chatId), update);
+            }
+            operations.execute();
         } catch (Exception e) {
-            System.err.println("❌ Error deleting user session: " + e.getMessage());
+            flushFailures.increment();
+            System.err.println("❌ Error saving " + batch.size() + " user sessions, will retry: " + e.getMessage());
+            return;
+        }
+        
+        flushed.increment(batch.size());
+        for (PendingWrite pending : batch) {
+            Segment segment = segmentFor(pending.chatId);
+            synchronized (segment) {
+                CachedSession entry = segment.sessions.get(pending.chatId);
+                if (entry != null && entry.version == pending.version) {
+                    entry.dirtyFields = 0;
+                }
+            }
+        }
+    }
+    
+    static Query byChatId(long chatId) {
+        return Query.query(Criteria.where("chat_id").is(chatId));
+    }
+    
+    private void evictIdle() {
+        long idleNanos = TimeUnit.MINUTES.toNanos(idleTimeoutMinutes);
+        long now = System.nanoTime();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.sessions.removeIf((chatId, entry) -> entry.dirtyFields == 0 && now - entry.lastAccessNanos > idleNanos);
+                // Sessions that were dirty when the segment filled up are clean now and can go
+                while (segment.sessions.size() > segment.capacity) {
+                    if (!evictLeastRecentlyUsed(segment)) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+    
+    private int cachedCount() {
+        int count = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                count += segment.sessions.size();
+            }
+        }
+        return count;
+    }
+    
+    private int dirtyCount() {
+        int[] count = {0};
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.sessions.forEach((chatId, entry) -> {
+                    if (entry.dirtyFields != 0) {
+                        count[0]++;
+                    }
+                });
+            }
+        }
+        return count[0];
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        int unsaved = dirtyCount();
+        if (unsaved > 0) {
+            System.err.println("⚠️ Shutting down with " + unsaved + " unsaved user sessions");
+        } else {
+            System.out.println("✅ User sessions flushed");
+        }
+    }
+    
+    private Segment segmentFor(long chatId) {
+        // Top bits of the hash, so the segment's own table (which uses lower bits) still spreads keys
+        return segments[(int) ((chatId * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - SEGMENT_BITS))];
+    }
+    
+    private static UserSession copyOf(UserSession session) {
+        UserSession copy = new UserSession(session.getChatId());
+        copy.setId(session.getId());
+        copy.setLanguage(session.getLanguage());
+        copy.setCurrentState(session.getCurrentState());
+        copy.setCreatedAt(session.getCreatedAt());
+        copy.setUpdatedAt(session.getUpdatedAt());
+        return copy;
+    }
+    
+    private static final class Segment {
+        private final int capacity;
+        private final LongKeyMap<CachedSession> sessions;
+        
+        private Segment(int capacity) {
+            this.capacity = capacity;
+            this.sessions = new LongKeyMap<>(capacity);
+        }
+    }
+    
+    private static final class CachedSession {
+        private UserSession session;
+        private int dirtyFields;
+        // Bumped on every change, so a flush can tell whether its snapshot is still current
+        private long version;
+        private long lastAccessNanos;
+    }
+    
+    private static final class PendingWrite {
+        private final long chatId;
+        private final int fields;
+        private final long version;
+        private final String language;
+        private final String state;
+        private final LocalDateTime updatedAt;
+        
+        private PendingWrite(long chatId, int fields, long version, UserSession session) {
+            this.chatId = chatId;
+            this.fields = fields;
+            this.version = version;
+            this.language = session.getLanguage();
+            this.state = session.getCurrentState();
+            this.updatedAt = session.getUpdatedAt();
         }
     }
 }
@@ -0,0 +1,62 @@
+package com.arogyasakhi.benchmark;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.web.reactive.function.BodyInserter;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * Output message that keeps the body a {@link BodyInserter} writes, so benchmarks can measure
+ * request body encoding without an HTTP client around it.
+ */
+final class CapturingMessage implements ReactiveHttpOutputMessage {
+    
+    private final HttpHeaders headers = new HttpHeaders();
+    private DataBuffer body;
+    
+    static DataBuffer write(BodyInserter<Object, ReactiveHttpOutputMessage> inserter) {
+        CapturingMessage message = new CapturingMessage();
+        inserter.insert(message, null).block();
+        return message.body;
+    }
+    
+    @Override
+    public DataBufferFactory bufferFactory() {
+        return DefaultDataBufferFactory.sharedInstance;
+    }
+    
+    @Override
+    public void beforeCommit(Supplier<? extends Mono<Void>> action) {
+    }
+    
+    @Override
+    public boolean isCommitted() {
+        return body != null;
+    }
+    
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+        return Mono.from(body).doOnNext(buffer -> this.body = buffer).then();
+    }
+    
+    @Override
+    public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+        return writeWith(Mono.from(body).flatMap(Mono::from));
+    }
+    
+    @Override
+    public Mono<Void> setComplete() {
+        return Mono.empty();
+    }
+    
+    @Override
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+}
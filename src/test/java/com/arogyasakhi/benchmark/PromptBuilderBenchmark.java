@@ -0,0 +1,183 @@
+package com.arogyasakhi.benchmark;
+
+import com.arogyasakhi.model.UserProfile;
+import com.arogyasakhi.service.GeminiPromptBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prompt plus request body for one recommendation: {@link GeminiPromptBuilder} against the
+ * StringBuilder prompt and HashMap request tree that GeminiService used before it (kept below
+ * as {@code legacy*}, serialized with an ObjectMapper as the WebClient JSON encoder does).
+ * Run with {@code -prof gc} and compare {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromptBuilderBenchmark {
+    
+    private static final String SYMPTOMS = "fever since two days, headache and body ache, mild cough at night";
+    
+    @Param({"en", "hi"})
+    public String language;
+    
+    private final GeminiPromptBuilder promptBuilder = new GeminiPromptBuilder();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private UserProfile profile;
+    
+    @Setup
+    public void setUp() {
+        profile = new UserProfile(42L);
+        profile.setAge(34);
+        profile.setGender("Female");
+        profile.setWeight(61.5);
+        profile.setHeight(158.0);
+        profile.setAllergies(List.of("penicillin", "peanuts"));
+        profile.setCurrentMedications(List.of("metformin 500mg"));
+        
+        if (!promptBuilder.buildPrompt(SYMPTOMS, profile, language).equals(legacyPrompt(SYMPTOMS, profile, language))) {
+            throw new IllegalStateException("Template prompt differs from the legacy prompt");
+        }
+    }
+    
+    @Benchmark
+    public DataBuffer templates() {
+        String prompt = promptBuilder.buildPrompt(SYMPTOMS, profile, language);
+        return CapturingMessage.write(promptBuilder.requestBody(prompt));
+    }
+    
+    @Benchmark
+    public byte[] legacy() throws Exception {
+        String prompt = legacyPrompt(SYMPTOMS, profile, language);
+        return objectMapper.writeValueAsBytes(legacyRequestBody(prompt));
+    }
+    
+    private static Map<String, Object> legacyRequestBody(String prompt) {
+        Map<String, Object> requestBody = new HashMap<>();
+        
+        Map<String, Object> content = new HashMap<>();
+        Map<String, Object> part = new HashMap<>();
+        part.put("text", prompt);
+        content.put("parts", List.of(part));
+        requestBody.put("contents", List.of(content));
+        
+        Map<String, Object> generationConfig = new HashMap<>();
+        generationConfig.put("temperature", 0.3);
+        generationConfig.put("topK", 40);
+        generationConfig.put("topP", 0.95);
+        generationConfig.put("maxOutputTokens", GeminiPromptBuilder.MAX_OUTPUT_TOKENS);
+        requestBody.put("generationConfig", generationConfig);
+        
+        return requestBody;
+    }
+    
+    private static String legacyPrompt(String symptoms, UserProfile userProfile, String language) {
+        StringBuilder prompt = new StringBuilder();
+        
+        if ("hi".equals(language)) {
+            prompt.append("आप एक अनुभवी डॉक्टर हैं। मरीज के लक्षणों के लिए विस्तृत सलाह दें।\n\n");
+            
+            // Add patient information
+            if (userProfile != null && userProfile.getAge() != null) {
+                prompt.append("मरीज की जानकारी:\n");
+                prompt.append("- उम्र: ").append(userProfile.getAge()).append(" साल\n");
+                if (userProfile.getGender() != null) {
+                    prompt.append("- लिंग: ").append(userProfile.getGender()).append("\n");
+                }
+                if (userProfile.getWeight() != null && userProfile.getHeight() != null) {
+                    prompt.append("- BMI: ").append(String.format("%.1f", userProfile.getBMI())).append("\n");
+                }
+                if (userProfile.getAllergies() != null && !userProfile.getAllergies().isEmpty()) {
+                    prompt.append("- एलर्जी: ").append(String.join(", ", userProfile.getAllergies())).append("\n");
+                }
+                if (userProfile.getCurrentMedications() != null && !userProfile.getCurrentMedications().isEmpty()) {
+                    prompt.append("- वर्तमान दवाएं: ").append(String.join(", ", userProfile.getCurrentMedications())).append("\n");
+                }
+                prompt.append("\n");
+            }
+            
+            prompt.append("लक्षण: ").append(symptoms).append("\n\n");
+            prompt.append("कृपया निम्नलिखित प्रारूप में विस्तृत सलाह दें:\n\n");
+            prompt.append("🔍 गंभीरता का स्तर: (कम/मध्यम/उच्च/आपातकाल)\n\n");
+            prompt.append("🏠 घरेलू उपचार:\n");
+            prompt.append("- तुरंत राहत के लिए क्या करें\n");
+            prompt.append("- प्राकृतिक उपचार\n");
+            prompt.append("- आहार संबंधी सुझाव\n");
+            prompt.append("- जीवनशैली में बदलाव\n\n");
+            prompt.append("💊 दवा सुझाव (बिना पर्चे वाली):\n");
+            prompt.append("- दर्द निवारक दवाएं\n");
+            prompt.append("- खुराक और समय\n");
+            prompt.append("- सावधानियां\n\n");
+            prompt.append("⚠️ चेतावनी संकेत:\n");
+            prompt.append("- तुरंत डॉक्टर से मिलें यदि\n");
+            prompt.append("- आपातकालीन स्थितियां\n\n");
+            prompt.append("📞 कब डॉक्टर से संपर्क करें:\n");
+            prompt.append("- लक्षण बिगड़ने पर\n");
+            prompt.append("- कितने दिन बाद\n\n");
+            prompt.append("महत्वपूर्ण: यह केवल सामान्य सलाह है। गंभीर स्थिति में तुरंत चिकित्सक से संपर्क करें।");
+        
+        } else {
+            prompt.append("You are an experienced doctor. Provide detailed medical advice for the patient's symptoms.\n\n");
+            
+            // Add patient information
+            if (userProfile != null && userProfile.getAge() != null) {
+                prompt.append("Patient Information:\n");
+                prompt.append("- Age: ").append(userProfile.getAge()).append(" years\n");
+                if (userProfile.getGender() != null) {
+                    prompt.append("- Gender: ").append(userProfile.getGender()).append("\n");
+                }
+                if (userProfile.getWeight() != null && userProfile.getHeight() != null) {
+                    prompt.append("- BMI: ").append(String.format("%.1f", userProfile.getBMI())).append("\n");
+                }
+                if (userProfile.getAllergies() != null && !userProfile.getAllergies().isEmpty()) {
+                    prompt.append("- Allergies: ").append(String.join(", ", userProfile.getAllergies())).append("\n");
+                }
+                if (userProfile.getCurrentMedications() != null && !userProfile.getCurrentMedications().isEmpty()) {
+                    prompt.append("- Current Medications: ").append(String.join(", ", userProfile.getCurrentMedications())).append("\n");
+                }
+                prompt.append("\n");
+            }
+            
+            prompt.append("Symptoms: ").append(symptoms).append("\n\n");
+            prompt.append("Please provide detailed advice in the following format:\n\n");
+            prompt.append("🔍 SEVERITY LEVEL: (Low/Moderate/High/Emergency)\n\n");
+            prompt.append("🏠 HOME REMEDIES:\n");
+            prompt.append("- Immediate relief measures\n");
+            prompt.append("- Natural treatments\n");
+            prompt.append("- Dietary recommendations\n");
+            prompt.append("- Lifestyle modifications\n\n");
+            prompt.append("💊 MEDICATION SUGGESTIONS (Over-the-counter):\n");
+            prompt.append("- Pain relievers/fever reducers\n");
+            prompt.append("- Dosage and timing\n");
+            prompt.append("- Precautions and contraindications\n\n");
+            prompt.append("⚠️ WARNING SIGNS:\n");
+            prompt.append("- When to seek immediate medical attention\n");
+            prompt.append("- Emergency symptoms to watch for\n\n");
+            prompt.append("📞 WHEN TO CONSULT A DOCTOR:\n");
+            prompt.append("- If symptoms worsen\n");
+            prompt.append("- Timeline for medical consultation\n\n");
+            prompt.append("IMPORTANT: This is general medical advice only. Seek immediate professional medical care for serious conditions.");
+        }
+        
+        return prompt.toString();
+    }
+}
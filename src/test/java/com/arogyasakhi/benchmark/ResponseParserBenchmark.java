@@ -0,0 +1,115 @@
+package com.arogyasakhi.benchmark;
+
+import com.arogyasakhi.service.GeminiResponseParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extracting the answer from a {@code generateContent} response: {@link GeminiResponseParser}
+ * on the raw bytes against the previous path, which decoded the body to a String and walked an
+ * ObjectMapper tree ({@link #legacyText}). The response carries safety ratings and usage
+ * metadata like a real one. Run with {@code -prof gc} for allocation per parse.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseParserBenchmark {
+    
+    private static final String ENGLISH_TEXT = "🔍 SEVERITY LEVEL: Moderate\\n\\n🏠 HOME REMEDIES:\\n"
+            + "- Rest and drink plenty of fluids such as water, soups and oral rehydration solution\\n"
+            + "- Apply a cool, damp cloth to the forehead\\n- Eat light meals like khichdi and fruit\\n\\n"
+            + "💊 MEDICATION SUGGESTIONS (Over-the-counter):\\n- Paracetamol 500 mg every 6 hours if needed, "
+            + "not more than 4 doses a day\\n\\n⚠️ WARNING SIGNS:\\n- Fever above 103°F, stiff neck, rash, "
+            + "breathing difficulty\\n\\n📞 WHEN TO CONSULT A DOCTOR:\\n- If fever lasts more than 3 days";
+    
+    private static final String HINDI_TEXT = "🔍 गंभीरता का स्तर: मध्यम\\n\\n🏠 घरेलू उपचार:\\n"
+            + "- आराम करें और पानी, सूप और ओआरएस जैसे तरल पदार्थ भरपूर पिएं\\n- माथे पर ठंडी गीली पट्टी रखें\\n"
+            + "- खिचड़ी और फल जैसा हल्का भोजन करें\\n\\n💊 दवा सुझाव (बिना पर्चे वाली):\\n"
+            + "- जरूरत हो तो हर 6 घंटे में पैरासिटामोल 500 मिलीग्राम, दिन में 4 से ज्यादा नहीं\\n\\n"
+            + "⚠️ चेतावनी संकेत:\\n- 103°F से ज्यादा बुखार, गर्दन में अकड़न, चकत्ते, सांस लेने में तकलीफ\\n\\n"
+            + "📞 कब डॉक्टर से संपर्क करें:\\n- अगर बुखार 3 दिन से ज्यादा रहे";
+    
+    @Param({"en", "hi"})
+    public String language;
+    
+    private final GeminiResponseParser parser = new GeminiResponseParser();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] response;
+    
+    @Setup
+    public void setUp() throws Exception {
+        response = response("hi".equals(language) ? HINDI_TEXT : ENGLISH_TEXT).getBytes(StandardCharsets.UTF_8);
+        
+        if (!parser.parse(response).getText().trim().equals(legacy())) {
+            throw new IllegalStateException("Streaming parser and tree walk extract different text");
+        }
+    }
+    
+    @Benchmark
+    public String streaming() throws Exception {
+        return parser.parse(response).getText();
+    }
+    
+    @Benchmark
+    public String legacy() throws Exception {
+        return legacyText(new String(response, StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * What GeminiService.extractResponseText did with the body before the streaming parser.
+     */
+    private String legacyText(String responseBody) throws Exception {
+        JsonNode root = objectMapper.readTree(responseBody);
+        if (root.has("error")) {
+            JsonNode error = root.get("error");
+            return error.has("message") ? error.get("message").asText() : "Unknown API error";
+        }
+        JsonNode candidates = root.get("candidates");
+        if (candidates != null && candidates.isArray() && candidates.size() > 0) {
+            JsonNode firstCandidate = candidates.get(0);
+            if (firstCandidate.has("finishReason") && "SAFETY".equals(firstCandidate.get("finishReason").asText())) {
+                return null;
+            }
+            JsonNode content = firstCandidate.get("content");
+            if (content != null && content.has("parts")) {
+                JsonNode parts = content.get("parts");
+                if (parts.isArray() && parts.size() > 0 && parts.get(0).has("text")) {
+                    return parts.get(0).get("text").asText().trim();
+                }
+            }
+        }
+        return null;
+    }
+    
+    private static String response(String text) {
+        StringBuilder ratings = new StringBuilder();
+        for (String category : new String[] {"HARM_CATEGORY_SEXUALLY_EXPLICIT", "HARM_CATEGORY_HATE_SPEECH",
+                "HARM_CATEGORY_HARASSMENT", "HARM_CATEGORY_DANGEROUS_CONTENT"}) {
+            if (ratings.length() > 0) {
+                ratings.append(',');
+            }
+            ratings.append("{\"category\":\"").append(category).append("\",\"probability\":\"NEGLIGIBLE\"}");
+        }
+        return "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + text + "\"}],\"role\":\"model\"},"
+                + "\"finishReason\":\"STOP\",\"index\":0,\"safetyRatings\":[" + ratings + "]}],"
+                + "\"usageMetadata\":{\"promptTokenCount\":412,\"candidatesTokenCount\":236,\"totalTokenCount\":648},"
+                + "\"modelVersion\":\"gemini-1.5-flash\"}";
+    }
+}
@@ -0,0 +1,96 @@
+package com.arogyasakhi.benchmark;
+
+import com.arogyasakhi.service.SeverityDetector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * One severity/referral decision for a recommendation: {@link SeverityDetector} against what it
+ * replaced, the bot's lowercase + seven {@code contains} referral check together with the
+ * cache's emergency regex ({@code legacy}), and that referral check alone. {@code long-hindi} repeats the Hindi answer to
+ * about 20K characters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeverityDetectorBenchmark {
+    
+    private static final Pattern LEGACY_EMERGENCY_SEVERITY = Pattern.compile(
+            "(?i)(SEVERITY LEVEL|गंभीरता का स्तर)[^\\n]*(emergency|आपातकाल)");
+    
+    @Param({"english-answer", "hindi-answer", "long-hindi"})
+    public String answer;
+    
+    private final SeverityDetector detector = new SeverityDetector();
+    private String text;
+    
+    @Setup
+    public void setUp() throws IOException {
+        ReflectionTestUtils.setField(detector, "referralKeywords",
+                List.of("doctor", "emergency", "hospital", "urgent", "डॉक्टर", "आपातकाल", "अस्पताल"));
+        ReflectionTestUtils.setField(detector, "severityHeaders", List.of("severity level", "गंभीरता का स्तर"));
+        ReflectionTestUtils.setField(detector, "lowKeywords", List.of("low", "mild", "कम", "हल्का"));
+        ReflectionTestUtils.setField(detector, "moderateKeywords", List.of("moderate", "medium", "मध्यम"));
+        ReflectionTestUtils.setField(detector, "highKeywords", List.of("high", "severe", "उच्च", "गंभीर"));
+        ReflectionTestUtils.setField(detector, "emergencyKeywords", List.of("emergency", "critical", "आपातकाल", "आपातकालीन"));
+        detector.init();
+        
+        String file = answer.equals("long-hindi") ? "hindi-answer" : answer;
+        try (InputStream in = getClass().getResourceAsStream("/formatter/" + file + ".txt")) {
+            text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        if (answer.equals("long-hindi")) {
+            text = text.repeat(20_000 / text.length() + 1);
+        }
+        if (detector.detect(text).isDoctorRecommended() != legacyDoctorRecommended(text)) {
+            throw new IllegalStateException("Detector and legacy check disagree on the referral");
+        }
+    }
+    
+    @Benchmark
+    public SeverityDetector.Detection automaton() {
+        return detector.detect(text);
+    }
+    
+    @Benchmark
+    public boolean legacy() {
+        return legacyDoctorRecommended(text) | LEGACY_EMERGENCY_SEVERITY.matcher(text).find();
+    }
+    
+    // The referral check alone, which gave neither a severity nor evidence
+    @Benchmark
+    public boolean legacyReferralOnly() {
+        return legacyDoctorRecommended(text);
+    }
+    
+    private static boolean legacyDoctorRecommended(String recommendation) {
+        String lowerRecommendation = recommendation.toLowerCase();
+        return lowerRecommendation.contains("doctor") ||
+                lowerRecommendation.contains("emergency") ||
+                lowerRecommendation.contains("hospital") ||
+                lowerRecommendation.contains("urgent") ||
+                lowerRecommendation.contains("डॉक्टर") ||
+                lowerRecommendation.contains("आपातकाल") ||
+                lowerRecommendation.contains("अस्पताल");
+    }
+}
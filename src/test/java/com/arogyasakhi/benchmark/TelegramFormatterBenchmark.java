@@ -0,0 +1,110 @@
+package com.arogyasakhi.benchmark;
+
+import com.arogyasakhi.service.TelegramFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering a recommendation into Telegram messages: {@link TelegramFormatter} against the
+ * chain of regex replacements plus paragraph split the bot used before it ({@code legacy*}).
+ * Inputs are the answers from the formatter's golden-file tests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TelegramFormatterBenchmark {
+    
+    private static final String HEADER = "🩺 <b>HEALTH RECOMMENDATION</b>\n\n";
+    private static final int MAX_MESSAGE_LENGTH = 4096;
+    
+    @Param({"english-answer", "hindi-answer"})
+    public String answer;
+    
+    private final TelegramFormatter formatter = new TelegramFormatter();
+    private String text;
+    
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/formatter/" + answer + ".txt")) {
+            text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+    
+    @Benchmark
+    public List<String> singlePass() {
+        return formatter.toHtmlMessages(HEADER, text, MAX_MESSAGE_LENGTH);
+    }
+    
+    @Benchmark
+    public List<String> legacy() {
+        return legacySplit(HEADER + legacyFormat(text));
+    }
+    
+    private static String legacyFormat(String text) {
+        // Remove excessive asterisks and format properly
+        String formatted = text
+                // Replace **text** with bold formatting for Telegram
+                .replaceAll("\\*\\*([^*]+)\\*\\*", "*$1*")
+                // Replace single asterisks with bullet points
+                .replaceAll("(?m)^\\s*\\*\\s*", "• ")
+                // Clean up multiple asterisks
+                .replaceAll("\\*{3,}", "")
+                // Format section headers
+                .replaceAll("(?i)🔍\\s*SEVERITY LEVEL:", "\n🔍 *SEVERITY LEVEL:*")
+                .replaceAll("(?i)🏠\\s*HOME REMEDIES:", "\n🏠 *HOME REMEDIES:*")
+                .replaceAll("(?i)💊\\s*MEDICATION SUGGESTIONS:", "\n💊 *MEDICATION SUGGESTIONS:*")
+                .replaceAll("(?i)⚠️\\s*WARNING SIGNS:", "\n⚠️ *WARNING SIGNS:*")
+                .replaceAll("(?i)📞\\s*WHEN TO CONSULT:", "\n📞 *WHEN TO CONSULT A DOCTOR:*")
+                .replaceAll("(?i)IMPORTANT:", "\n⚠️ *IMPORTANT:*")
+                // Format Hindi headers
+                .replaceAll("(?i)🔍\\s*गंभीरता का स्तर:", "\n🔍 *गंभीरता का स्तर:*")
+                .replaceAll("(?i)🏠\\s*घरेलू उपचार:", "\n🏠 *घरेलू उपचार:*")
+                .replaceAll("(?i)💊\\s*दवा सुझाव:", "\n💊 *दवा सुझाव:*")
+                .replaceAll("(?i)⚠️\\s*चेतावनी संकेत:", "\n⚠️ *चेतावनी संकेत:*")
+                .replaceAll("(?i)📞\\s*कब डॉक्टर से संपर्क करें:", "\n📞 *कब डॉक्टर से संपर्क करें:*")
+                .replaceAll("(?i)महत्वपूर्ण:", "\n⚠️ *महत्वपूर्ण:*")
+                // Clean up extra newlines
+                .replaceAll("\n{3,}", "\n\n")
+                // Ensure proper spacing after emojis
+                .replaceAll("([🔍🏠💊⚠️📞])([^\\s])", "$1 $2");
+        
+        return formatted.trim();
+    }
+    
+    private static List<String> legacySplit(String text) {
+        List<String> parts = new ArrayList<>();
+        String remaining = text;
+        while (remaining.length() > MAX_MESSAGE_LENGTH) {
+            int cut = remaining.lastIndexOf("\n\n", MAX_MESSAGE_LENGTH);
+            if (cut <= 0) {
+                cut = remaining.lastIndexOf('\n', MAX_MESSAGE_LENGTH);
+            }
+            if (cut <= 0) {
+                cut = MAX_MESSAGE_LENGTH;
+            }
+            parts.add(remaining.substring(0, cut).trim());
+            remaining = remaining.substring(cut).trim();
+        }
+        parts.add(remaining);
+        return parts;
+    }
+}
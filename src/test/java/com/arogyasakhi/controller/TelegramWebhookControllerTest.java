@@ -0,0 +1,75 @@
+package com.arogyasakhi.controller;
+
+import com.arogyasakhi.ArogyaSakhiBot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class TelegramWebhookControllerTest {
+    
+    private static final String UPDATE = "{\"update_id\":7,\"message\":{\"message_id\":1,\"date\":0,"
+            + "\"chat\":{\"id\":42,\"type\":\"private\"},\"from\":{\"id\":42,\"is_bot\":false,\"first_name\":\"T\"},"
+            + "\"text\":\"/start\"}}";
+    
+    private ArogyaSakhiBot bot;
+    private TelegramWebhookController controller;
+    private MockMvc mockMvc;
+    
+    @BeforeEach
+    void setUp() {
+        bot = mock(ArogyaSakhiBot.class);
+        controller = new TelegramWebhookController();
+        ReflectionTestUtils.setField(controller, "arogyaSakhiBot", bot);
+        ReflectionTestUtils.setField(controller, "botMode", "webhook");
+        ReflectionTestUtils.setField(controller, "webhookSecret", "s3cret");
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+    
+    @Test
+    void acknowledgesAcceptedUpdate() throws Exception {
+        when(bot.offerUpdate(any(Update.class))).thenReturn(true);
+        
+        mockMvc.perform(post("/telegram/webhook").header("X-Telegram-Bot-Api-Secret-Token", "s3cret")
+                        .contentType(MediaType.APPLICATION_JSON).content(UPDATE))
+                .andExpect(status().isOk());
+    }
+    
+    @Test
+    void asksForRedeliveryWhenDispatcherIsSaturated() throws Exception {
+        when(bot.offerUpdate(any(Update.class))).thenReturn(false);
+        
+        mockMvc.perform(post("/telegram/webhook").header("X-Telegram-Bot-Api-Secret-Token", "s3cret")
+                        .contentType(MediaType.APPLICATION_JSON).content(UPDATE))
+                .andExpect(status().isServiceUnavailable());
+    }
+    
+    @Test
+    void rejectsWrongOrMissingSecret() throws Exception {
+        mockMvc.perform(post("/telegram/webhook").header("X-Telegram-Bot-Api-Secret-Token", "wrong")
+                        .contentType(MediaType.APPLICATION_JSON).content(UPDATE))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/telegram/webhook")
+                        .contentType(MediaType.APPLICATION_JSON).content(UPDATE))
+                .andExpect(status().isUnauthorized());
+        verify(bot, never()).offerUpdate(any(Update.class));
+    }
+    
+    @Test
+    void refusesToStartWithoutSecretInWebhookMode() {
+        ReflectionTestUtils.setField(controller, "webhookSecret", "");
+        assertThrows(IllegalStateException.class, controller::requireSecret);
+    }
+}
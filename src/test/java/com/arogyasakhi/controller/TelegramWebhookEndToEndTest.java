@@ -0,0 +1,134 @@
+package com.arogyasakhi.controller;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the application in webhook mode against a local fake Telegram server: updates are
+ * POSTed to the webhook the way Telegram does, and the bot's replies go back to the fake
+ * server's Bot API endpoint. MongoDB is not needed; the callback query used here is answered
+ * without touching it.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "telegram.bot.username=test_bot",
+        "telegram.bot.token=123:test",
+        "telegram.bot.mode=webhook",
+        "telegram.webhook.secret=s3cret",
+        "gemini.api.key=test",
+        "spring.data.mongodb.uri=mongodb://127.0.0.1:1/test?serverSelectionTimeoutMS=200&connectTimeoutMS=200",
+        "mongo.index-verification.mode=off",
+        "consultation.archive.enabled=false",
+        "consultation.writer.wal-path=target/test-data/consultations.wal"
+})
+class TelegramWebhookEndToEndTest {
+    
+    private static final BlockingQueue<String> botApiCalls = new LinkedBlockingQueue<>();
+    private static final HttpServer telegram = startFakeTelegram();
+    
+    @Autowired
+    private TestRestTemplate restTemplate;
+    
+    @DynamicPropertySource
+    static void telegramApi(DynamicPropertyRegistry registry) {
+        registry.add("telegram.bot.api-url", () -> "http://127.0.0.1:" + telegram.getAddress().getPort() + "/bot");
+    }
+    
+    @AfterAll
+    static void stopFakeTelegram() {
+        telegram.stop(0);
+    }
+    
+    @Test
+    void updatePostedByTelegramIsAcknowledgedAndAnswered() throws Exception {
+        ResponseEntity<Void> response = postUpdate(callbackQuery("cb-1"), "s3cret");
+        
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String call = nextCall("answercallbackquery");
+        assertNotNull(call, "bot never answered the callback query");
+        assertTrue(call.contains("cb-1"), call);
+    }
+    
+    @Test
+    void updateWithWrongSecretIsRejectedAndNotProcessed() throws Exception {
+        ResponseEntity<Void> response = postUpdate(callbackQuery("cb-forged"), "guess");
+        
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        String call = botApiCalls.poll(1, TimeUnit.SECONDS);
+        assertTrue(call == null || !call.contains("cb-forged"), call);
+    }
+    
+    private ResponseEntity<Void> postUpdate(String body, String secret) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("X-Telegram-Bot-Api-Secret-Token", secret);
+        return restTemplate.postForEntity("/telegram/webhook", new HttpEntity<>(body, headers), Void.class);
+    }
+    
+    private static String nextCall(String method) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            String call = botApiCalls.poll(100, TimeUnit.MILLISECONDS);
+            if (call != null && call.startsWith(method)) {
+                return call;
+            }
+        }
+        return null;
+    }
+    
+    private static String callbackQuery(String id) {
+        return "{\"update_id\":1,\"callback_query\":{\"id\":\"" + id + "\","
+                + "\"from\":{\"id\":42,\"is_bot\":false,\"first_name\":\"T\"},"
+                + "\"message\":{\"message_id\":5,\"date\":0,\"chat\":{\"id\":42,\"type\":\"private\"}},"
+                + "\"chat_instance\":\"1\",\"data\":\"unknown\"}}";
+    }
+    
+    /**
+     * Answers every Bot API method with {@code ok} and records it as "method body".
+     */
+    private static HttpServer startFakeTelegram() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", exchange -> {
+                String path = exchange.getRequestURI().getPath();
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                byte[] reply = "{\"ok\":true,\"result\":true}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, reply.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(reply);
+                }
+                // Recorded once answered, so a test that saw the call never races the shutdown
+                List<String> segments = List.of(path.split("/"));
+                botApiCalls.add(segments.get(segments.size() - 1).toLowerCase() + " " + body);
+            });
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start fake Telegram server", e);
+        }
+    }
+}
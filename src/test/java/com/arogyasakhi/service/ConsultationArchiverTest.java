@@ -0,0 +1,259 @@
+package com.arogyasakhi.service;
+
+import com.arogyasakhi.model.ConsultationBucket;
+import com.arogyasakhi.model.HealthConsultation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Archiving into monthly buckets against an in-memory stand-in for MongoDB that evaluates the
+ * bucket upserts' update pipeline, so a batch archived twice shows what ends up in the bucket.
+ */
+class ConsultationArchiverTest {
+    
+    private static final long CHAT_ID = 42L;
+    private static final String HOT = "health_consultations";
+    private static final String ARCHIVE = "health_consultation_archive";
+    
+    private final List<Document> hot = new ArrayList<>();
+    private final Map<String, Document> buckets = new LinkedHashMap<>();
+    private final List<Object[]> pendingUpserts = new ArrayList<>();
+    private AggregationUpdate lastUpdate;
+    private boolean failRemove;
+    private int compressions;
+    private ConsultationArchiver archiver;
+    
+    @BeforeEach
+    void setUp() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.getCollectionName(HealthConsultation.class)).thenReturn(HOT);
+        when(mongoTemplate.getCollectionName(ConsultationBucket.class)).thenReturn(ARCHIVE);
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq(HOT)))
+                .thenAnswer(invocation -> HealthHistoryServiceTest.run(invocation.getArgument(0), hot, document -> document));
+        when(mongoTemplate.remove(any(Query.class), eq(HOT))).thenAnswer(invocation -> {
+            if (failRemove) {
+                throw new IllegalStateException("no primary");
+            }
+            Query query = invocation.getArgument(0);
+            List<?> ids = query.getQueryObject().get("_id", Document.class).get("$in", List.class);
+            hot.removeIf(document -> ids.contains(document.get("_id")));
+            return null;
+        });
+        BulkOperations bulk = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ARCHIVE)).thenReturn(bulk);
+        when(bulk.upsert(any(Query.class), any(UpdateDefinition.class))).thenAnswer(invocation -> {
+            pendingUpserts.add(new Object[] {invocation.getArgument(0), invocation.getArgument(1)});
+            return bulk;
+        });
+        doAnswer(invocation -> {
+            for (Object[] upsert : pendingUpserts) {
+                apply((Query) upsert[0], (AggregationUpdate) upsert[1]);
+            }
+            pendingUpserts.clear();
+            return null;
+        }).when(bulk).execute();
+        // Never the same bytes twice, as compressing the same document again need not be either
+        RecommendationCompressor compressor = mock(RecommendationCompressor.class);
+        when(compressor.compress(any(byte[].class))).thenAnswer(invocation -> new byte[] {(byte) ++compressions});
+        
+        archiver = new ConsultationArchiver();
+        ReflectionTestUtils.setField(archiver, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(archiver, "recommendationCompressor", compressor);
+        ReflectionTestUtils.setField(archiver, "batchSize", 2);
+        ReflectionTestUtils.setField(archiver, "archived", new SimpleMeterRegistry().counter("consultation.archive.archived"));
+    }
+    
+    @Test
+    void bucketUpsertAppendsOnlyEntriesTheBucketDoesNotHold() {
+        consultation("fever", time(3, 5));
+        consultation("$cough", time(3, 10));
+        archiver.archiveOlderThan(time(6, 1));
+        
+        // The next batch's update, against a bucket that exists by now
+        consultation("rash", time(3, 20));
+        archiver.archiveOlderThan(time(6, 1));
+        List<Document> pipeline = lastUpdate.toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertEquals(1, pipeline.size());
+        Document set = pipeline.get(0).get("$set", Document.class);
+        
+        Document entries = set.get("entries", Document.class);
+        List<?> concat = entries.get("$concatArrays", List.class);
+        assertEquals(new Document("$ifNull", List.of("$entries", List.of())), concat.get(0));
+        Document filter = ((Document) concat.get(1)).get("$filter", Document.class);
+        List<?> input = filter.get("input", Document.class).get("$literal", List.class);
+        assertEquals(List.of("rash"), input.stream().map(entry -> ((Document) entry).getString("s")).collect(Collectors.toList()));
+        assertEquals(new Document("$not", List.of(new Document("$in",
+                List.of("$$this.i", new Document("$ifNull", List.of("$entries.i", List.of())))))), filter.get("cond"));
+        assertEquals(new Document("$min", List.of("$first_time", date(time(3, 20)))), set.get("first_time"));
+        assertEquals(new Document("$max", List.of("$last_time", date(time(3, 20)))), set.get("last_time"));
+        
+        // A symptom that looks like a field path is kept as text
+        assertEquals(List.of("fever", "$cough", "rash"), symptoms(bucket(2026, 3)));
+    }
+    
+    @Test
+    void consultationArchivedAgainAfterFailedDeleteIsNotDuplicated() {
+        consultation("fever", time(3, 5));
+        consultation("cough", time(3, 10));
+        consultation("rash", time(4, 2));
+        
+        // The first batch reaches its bucket but stays in the hot collection
+        failRemove = true;
+        assertThrows(IllegalStateException.class, () -> archiver.archiveOlderThan(time(6, 1)));
+        assertEquals(List.of("fever", "cough"), symptoms(bucket(2026, 3)));
+        assertEquals(3, hot.size());
+        
+        // The retry archives it again, now in a batch with a consultation the bucket lacks
+        failRemove = false;
+        consultation("headache", time(3, 20));
+        assertEquals(4, archiver.archiveOlderThan(time(6, 1)));
+        
+        Document march = bucket(2026, 3);
+        assertEquals(List.of("fever", "cough", "headache"), symptoms(march));
+        assertEquals(date(time(3, 5)), march.get("first_time"));
+        assertEquals(date(time(3, 20)), march.get("last_time"));
+        assertEquals(List.of("rash"), symptoms(bucket(2026, 4)));
+        assertTrue(hot.isEmpty());
+    }
+    
+    private void consultation(String symptoms, LocalDateTime time) {
+        Document consultation = new Document("_id", new ObjectId(date(time)))
+                .append("chat_id", CHAT_ID)
+                .append("symptoms", symptoms)
+                .append("severity", "LOW")
+                .append("doctor_recommended", false)
+                .append("ai_recommendation", "Rest and drink fluids")
+                .append("consultation_time", date(time));
+        hot.add(consultation);
+    }
+    
+    private static LocalDateTime time(int month, int day) {
+        return LocalDateTime.of(2026, month, day, 9, 0);
+    }
+    
+    private static Date date(LocalDateTime time) {
+        return Date.from(time.toInstant(ZoneOffset.UTC));
+    }
+    
+    private Document bucket(int year, int month) {
+        return buckets.get(ConsultationBucket.bucketId(CHAT_ID, year * 100 + month));
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<String> symptoms(Document bucket) {
+        return ((List<Document>) bucket.get("entries")).stream().map(entry -> entry.getString("s")).collect(Collectors.toList());
+    }
+    
+    private void apply(Query query, AggregationUpdate update) {
+        String id = query.getQueryObject().getString("_id");
+        Document current = buckets.getOrDefault(id, new Document("_id", id));
+        Document updated = new Document(current);
+        for (Document stage : update.toPipeline(Aggregation.DEFAULT_CONTEXT)) {
+            for (Map.Entry<String, Object> field : stage.get("$set", Document.class).entrySet()) {
+                updated.put(field.getKey(), evaluate(field.getValue(), current, null));
+            }
+        }
+        buckets.put(id, updated);
+        lastUpdate = update;
+    }
+    
+    /**
+     * Evaluates the aggregation expressions the bucket upsert uses against {@code document}.
+     */
+    private static Object evaluate(Object expression, Document document, Object current) {
+        if (expression instanceof String path && path.startsWith("$$this")) {
+            return path.equals("$$this") ? current : ((Document) current).get(path.substring("$$this.".length()));
+        }
+        if (expression instanceof String path && path.startsWith("$")) {
+            return resolve(document, path.substring(1));
+        }
+        if (expression instanceof List<?> list) {
+            return list.stream().map(item -> evaluate(item, document, current)).collect(Collectors.toList());
+        }
+        if (!(expression instanceof Document operator) || operator.size() != 1 || !operator.keySet().iterator().next().startsWith("$")) {
+            return expression;
+        }
+        String name = operator.keySet().iterator().next();
+        Object argument = operator.get(name);
+        if (name.equals("$literal")) {
+            return argument;
+        }
+        if (name.equals("$filter")) {
+            Document filter = (Document) argument;
+            List<?> input = (List<?>) evaluate(filter.get("input"), document, current);
+            return input.stream()
+                    .filter(item -> Boolean.TRUE.equals(evaluate(filter.get("cond"), document, item)))
+                    .collect(Collectors.toList());
+        }
+        List<?> arguments = (List<?>) evaluate(argument, document, current);
+        switch (name) {
+            case "$ifNull":
+                return arguments.get(0) != null ? arguments.get(0) : arguments.get(1);
+            case "$min":
+            case "$max":
+                Date result = null;
+                for (Object value : arguments) {
+                    Date date = (Date) value;
+                    if (date != null && (result == null || (name.equals("$min") ? date.before(result) : date.after(result)))) {
+                        result = date;
+                    }
+                }
+                return result;
+            case "$concatArrays":
+                List<Object> concatenated = new ArrayList<>();
+                arguments.forEach(array -> concatenated.addAll((List<?>) array));
+                return concatenated;
+            case "$in":
+                return ((List<?>) arguments.get(1)).contains(arguments.get(0));
+            case "$not":
+                return !Boolean.TRUE.equals(arguments.get(0));
+            default:
+                throw new IllegalArgumentException("Unsupported operator " + name);
+        }
+    }
+    
+    /**
+     * A field path as MongoDB resolves it, mapping over arrays ({@code entries.i} is every
+     * entry's id).
+     */
+    private static Object resolve(Object value, String path) {
+        if (value == null || path.isEmpty()) {
+            return value;
+        }
+        int dot = path.indexOf('.');
+        String field = dot < 0 ? path : path.substring(0, dot);
+        String rest = dot < 0 ? "" : path.substring(dot + 1);
+        if (value instanceof List<?> list) {
+            return list.stream().map(item -> resolve(item, path)).collect(Collectors.toList());
+        }
+        return resolve(((Document) value).get(field), rest);
+    }
+}
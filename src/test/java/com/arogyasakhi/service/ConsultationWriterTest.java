@@ -0,0 +1,231 @@
+package com.arogyasakhi.service;
+
+import com.arogyasakhi.model.HealthConsultation;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The write-ahead log of {@link ConsultationWriter} against a stubbed MongoDB: what is logged
+ * when an insert fails, and what is left in the log after a replay that stops part-way, races
+ * with an append, meets a torn line or re-inserts stored consultations. The writer thread is
+ * stopped after startup, so writes and replays are run directly.
+ */
+class ConsultationWriterTest {
+    
+    private static final int DUPLICATE_KEY = 11000;
+    
+    @TempDir
+    Path dir;
+    
+    // Symptoms of every consultation handed to a bulk insert
+    private final List<String> stored = new ArrayList<>();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private Path wal;
+    private BulkOperations bulk;
+    private ConsultationWriter writer;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        wal = dir.resolve("consultations.wal");
+        // The converter the log is written and read with, set up as Spring Boot would
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        bulk = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(HealthConsultation.class))).thenReturn(bulk);
+        when(bulk.insert(anyList())).thenAnswer(invocation -> {
+            List<?> batch = invocation.getArgument(0);
+            for (Object consultation : batch) {
+                stored.add(((HealthConsultation) consultation).getSymptoms());
+            }
+            return bulk;
+        });
+        
+        writer = new ConsultationWriter();
+        ReflectionTestUtils.setField(writer, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(writer, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(writer, "batchSize", 2);
+        ReflectionTestUtils.setField(writer, "maxDelayMs", 10L);
+        ReflectionTestUtils.setField(writer, "queueCapacity", 1);
+        ReflectionTestUtils.setField(writer, "walFile", wal.toString());
+        ReflectionTestUtils.setField(writer, "replayIntervalMs", 0L);
+        writer.init();
+        ReflectionTestUtils.setField(writer, "running", false);
+        ((Thread) ReflectionTestUtils.getField(writer, "writer")).join();
+    }
+    
+    @Test
+    void batchThatCannotBeStoredIsLoggedAndReplayed() throws Exception {
+        log("fever", "cough", "headache");
+        assertEquals(3, walLines().size());
+        assertEquals(3L, walRecords());
+        
+        // Later batches go straight to the log until a replay gets through
+        write("rash");
+        assertTrue(stored.isEmpty());
+        
+        doReturn(null).when(bulk).execute();
+        replay();
+        assertEquals(List.of("fever", "cough", "headache", "rash"), stored);
+        assertFalse(Files.exists(wal));
+        assertEquals(0L, walRecords());
+    }
+    
+    @Test
+    void replayStoppingPartWayResumesAfterTheStoredChunks() throws Exception {
+        log("a", "b", "c", "d", "e");
+        
+        // The first chunk of two is stored, then MongoDB goes away again
+        doReturn(null).doThrow(new IllegalStateException("no primary")).when(bulk).execute();
+        replay();
+        assertEquals(List.of("c", "d", "e"), walSymptoms());
+        assertEquals(3L, walRecords());
+        
+        stored.clear();
+        doReturn(null).when(bulk).execute();
+        replay();
+        assertEquals(List.of("c", "d", "e"), stored);
+        assertFalse(Files.exists(wal));
+    }
+    
+    @Test
+    void consultationsLoggedDuringReplayAreKept() throws Exception {
+        log("a", "b");
+        
+        // With the queue full, a consultation submitted while the replay inserts goes to the log
+        queue().offer(consultation("queued"));
+        doAnswer(invocation -> {
+            writer.submit(consultation("late"));
+            return null;
+        }).when(bulk).execute();
+        replay();
+        
+        assertEquals(List.of("a", "b"), stored);
+        assertEquals(List.of("late"), walSymptoms());
+        assertEquals(1L, walRecords());
+    }
+    
+    @Test
+    void tornLastLineIsSkipped() throws Exception {
+        log("a", "b");
+        // The process died halfway through appending a third line
+        Files.writeString(wal, "{\"_id\": {\"$oid\": \"6ad3", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        ReflectionTestUtils.setField(writer, "walRecords", 3L);
+        
+        doReturn(null).when(bulk).execute();
+        replay();
+        
+        assertEquals(List.of("a", "b"), stored);
+        assertFalse(Files.exists(wal));
+        assertEquals(1.0, meterRegistry.counter("consultation.writer.rejected").count());
+    }
+    
+    @Test
+    void duplicatesFromAnEarlierReplayAreIgnored() throws Exception {
+        log("a", "b");
+        
+        // Both were stored by a replay that died before it could drop them from the log
+        List<BulkWriteError> duplicates = List.of(
+                new BulkWriteError(DUPLICATE_KEY, "E11000 duplicate key error", new BsonDocument(), 0),
+                new BulkWriteError(DUPLICATE_KEY, "E11000 duplicate key error", new BsonDocument(), 1));
+        doThrow(new BulkOperationException("duplicates",
+                new MongoBulkWriteException(BulkWriteResult.unacknowledged(), duplicates, null, new ServerAddress())))
+                .when(bulk).execute();
+        replay();
+        
+        assertFalse(Files.exists(wal));
+        assertEquals(0L, walRecords());
+        assertEquals(0.0, meterRegistry.counter("consultation.writer.rejected").count());
+    }
+    
+    /**
+     * Writes a batch while MongoDB is unreachable, so it ends up in the log.
+     */
+    private void log(String... symptoms) {
+        doThrow(new IllegalStateException("no primary")).when(bulk).execute();
+        write(symptoms);
+        stored.clear();
+    }
+    
+    private void write(String... symptoms) {
+        List<HealthConsultation> batch = new ArrayList<>();
+        for (String symptom : symptoms) {
+            batch.add(consultation(symptom));
+        }
+        ReflectionTestUtils.invokeMethod(writer, "write", batch);
+    }
+    
+    private void replay() {
+        ReflectionTestUtils.invokeMethod(writer, "replayIfDue");
+    }
+    
+    private static HealthConsultation consultation(String symptoms) {
+        HealthConsultation consultation = new HealthConsultation(42L, symptoms);
+        consultation.setId(new ObjectId().toHexString());
+        return consultation;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private BlockingQueue<HealthConsultation> queue() {
+        return (BlockingQueue<HealthConsultation>) ReflectionTestUtils.getField(writer, "queue");
+    }
+    
+    private long walRecords() {
+        return (Long) ReflectionTestUtils.getField(writer, "walRecords");
+    }
+    
+    private List<String> walLines() throws Exception {
+        return Files.readAllLines(wal, StandardCharsets.UTF_8);
+    }
+    
+    private List<String> walSymptoms() throws Exception {
+        return walLines().stream()
+                .map(line -> Document.parse(line).getString("symptoms"))
+                .collect(Collectors.toList());
+    }
+}
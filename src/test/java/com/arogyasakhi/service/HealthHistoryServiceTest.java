@@ -0,0 +1,314 @@
+package com.arogyasakhi.service;
+
+import com.arogyasakhi.model.ConsultationBucket;
+import com.arogyasakhi.model.HealthConsultation;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Keyset paging of the consultation history, within the hot collection and across into the
+ * archive buckets, against an in-memory stand-in for MongoDB that evaluates the filters, sorts
+ * and limits {@link HealthHistoryService} issues.
+ */
+class HealthHistoryServiceTest {
+    
+    private static final long CHAT_ID = 42L;
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 1, 12, 0);
+    
+    private final List<HealthConsultation> hot = new ArrayList<>();
+    private final List<ConsultationBucket> buckets = new ArrayList<>();
+    private ConsultationArchiver archiver;
+    private HealthHistoryService service;
+    
+    @BeforeEach
+    void setUp() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.find(any(Query.class), eq(HealthConsultation.class)))
+                .thenAnswer(invocation -> run(invocation.getArgument(0), hot, HealthHistoryServiceTest::fields));
+        when(mongoTemplate.findOne(any(Query.class), eq(ConsultationBucket.class)))
+                .thenAnswer(invocation -> run(invocation.getArgument(0), buckets, HealthHistoryServiceTest::fields)
+                        .stream().findFirst().orElse(null));
+        archiver = mock(ConsultationArchiver.class);
+        when(archiver.horizon()).thenReturn(NOW.minusYears(10));
+        
+        service = new HealthHistoryService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(service, "consultationArchiver", archiver);
+        ReflectionTestUtils.setField(service, "pageSize", 2);
+    }
+    
+    @Test
+    void pagingThroughSameMillisecondTiesSkipsNothing() {
+        LocalDateTime tie = NOW.minusHours(1);
+        consultation("newest", NOW);
+        for (int i = 0; i < 5; i++) {
+            consultation("tie " + i, tie);
+        }
+        consultation("oldest", NOW.minusHours(2));
+        
+        List<List<String>> pages = new ArrayList<>();
+        HealthHistoryService.HistoryPage page = service.latest(CHAT_ID);
+        pages.add(symptoms(page));
+        while (page.hasOlder()) {
+            page = service.older(CHAT_ID, page.olderCursor());
+            pages.add(symptoms(page));
+        }
+        
+        List<String> all = pages.stream().flatMap(List::stream).collect(Collectors.toList());
+        assertEquals(List.of("newest", "tie 4", "tie 3", "tie 2", "tie 1", "tie 0", "oldest"), all);
+        
+        // And back again, page by page
+        for (int i = pages.size() - 2; i >= 0; i--) {
+            assertTrue(page.hasNewer());
+            page = service.newer(CHAT_ID, page.newerCursor());
+            assertEquals(pages.get(i), symptoms(page));
+        }
+        assertFalse(page.hasNewer());
+    }
+    
+    @Test
+    void olderAndNewerRoundTrip() {
+        for (int i = 0; i < 6; i++) {
+            consultation("day " + i, NOW.minusDays(i));
+        }
+        
+        HealthHistoryService.HistoryPage latest = service.latest(CHAT_ID);
+        HealthHistoryService.HistoryPage older = service.older(CHAT_ID, latest.olderCursor());
+        HealthHistoryService.HistoryPage back = service.newer(CHAT_ID, older.newerCursor());
+        
+        assertEquals(List.of("day 0", "day 1"), symptoms(latest));
+        assertEquals(List.of("day 2", "day 3"), symptoms(older));
+        assertTrue(older.hasOlder());
+        assertTrue(older.hasNewer());
+        assertEquals(symptoms(latest), symptoms(back));
+        assertFalse(back.hasNewer());
+    }
+    
+    @Test
+    void deletedCursorConsultationStillAddressesItsNeighbours() {
+        for (int i = 0; i < 5; i++) {
+            consultation("day " + i, NOW.minusDays(i));
+        }
+        HealthHistoryService.HistoryPage latest = service.latest(CHAT_ID);
+        hot.removeIf(consultation -> consultation.getSymptoms().equals("day 1"));
+        
+        assertEquals(List.of("day 2", "day 3"), symptoms(service.older(CHAT_ID, latest.olderCursor())));
+    }
+    
+    @Test
+    void fallsBackToLatestWhenNothingIsLeftPastTheCursor() {
+        for (int i = 0; i < 5; i++) {
+            consultation("day " + i, NOW.minusDays(i));
+        }
+        HealthHistoryService.HistoryPage latest = service.latest(CHAT_ID);
+        HealthHistoryService.HistoryPage older = service.older(CHAT_ID, latest.olderCursor());
+        
+        // Everything newer than the page is deleted before the user pages forward
+        hot.removeIf(consultation -> consultation.getConsultationTime().isAfter(NOW.minusDays(2)));
+        HealthHistoryService.HistoryPage page = service.newer(CHAT_ID, older.newerCursor());
+        assertEquals(List.of("day 2", "day 3"), symptoms(page));
+        assertFalse(page.hasNewer());
+        
+        // And everything older than the last page
+        hot.removeIf(consultation -> consultation.getConsultationTime().isBefore(NOW.minusDays(3)));
+        page = service.older(CHAT_ID, service.latest(CHAT_ID).olderCursor());
+        assertEquals(List.of("day 2", "day 3"), symptoms(page));
+    }
+    
+    @Test
+    void cursorRoundTripsWithinTheCallbackDataLimit() {
+        HealthConsultation consultation = consultation("fever", LocalDateTime.of(2026, 1, 2, 3, 4, 5, 6_000_000));
+        String cursor = HealthHistoryService.Cursor.of(consultation).toString();
+        
+        assertEquals(cursor, HealthHistoryService.Cursor.parse(cursor).toString());
+        assertTrue(("history:older:" + cursor).getBytes(StandardCharsets.UTF_8).length <= 64, cursor);
+        assertThrows(IllegalArgumentException.class, () -> HealthHistoryService.Cursor.parse("1767323045006"));
+        assertThrows(IllegalArgumentException.class, () -> HealthHistoryService.Cursor.parse("x.y"));
+    }
+    
+    @Test
+    void pagingCrossesFromTheHotCollectionIntoBucketsAndBack() {
+        when(archiver.horizon()).thenReturn(NOW.minusDays(3));
+        // Archived before the hot consultation of the same millisecond was recorded, so its id is lower
+        archived("archived tie", NOW.minusDays(2));
+        consultation("day 0", NOW);
+        consultation("day 1", NOW.minusDays(1));
+        consultation("day 2", NOW.minusDays(2));
+        archived("day 4", NOW.minusDays(4));
+        archived("day 40", NOW.minusDays(40));
+        archived("day 70", NOW.minusDays(70));
+        
+        List<List<String>> pages = new ArrayList<>();
+        HealthHistoryService.HistoryPage page = service.latest(CHAT_ID);
+        pages.add(symptoms(page));
+        while (page.hasOlder()) {
+            page = service.older(CHAT_ID, page.olderCursor());
+            pages.add(symptoms(page));
+        }
+        assertEquals(List.of(List.of("day 0", "day 1"), List.of("day 2", "archived tie"), List.of("day 4", "day 40"),
+                List.of("day 70")), pages);
+        
+        for (int i = pages.size() - 2; i >= 0; i--) {
+            page = service.newer(CHAT_ID, page.newerCursor());
+            assertEquals(pages.get(i), symptoms(page));
+        }
+        assertFalse(page.hasNewer());
+    }
+    
+    @Test
+    void consultationArchivedButNotYetDeletedIsShownOnce() {
+        when(archiver.horizon()).thenReturn(NOW.minusDays(3));
+        consultation("day 0", NOW);
+        // Its bucket upsert went through, the delete from the hot collection did not
+        HealthConsultation both = consultation("day 5", NOW.minusDays(5));
+        archived(both);
+        archived("day 6", NOW.minusDays(6));
+        archived("day 7", NOW.minusDays(7));
+        
+        HealthHistoryService.HistoryPage latest = service.latest(CHAT_ID);
+        assertEquals(List.of("day 0", "day 5"), symptoms(latest));
+        HealthHistoryService.HistoryPage older = service.older(CHAT_ID, latest.olderCursor());
+        assertEquals(List.of("day 6", "day 7"), symptoms(older));
+        assertEquals(List.of("day 0", "day 5"), symptoms(service.newer(CHAT_ID, older.newerCursor())));
+    }
+    
+    private HealthConsultation consultation(String symptoms, LocalDateTime time) {
+        HealthConsultation consultation = new HealthConsultation(CHAT_ID, symptoms);
+        consultation.setId(new ObjectId().toHexString());
+        consultation.setConsultationTime(time);
+        hot.add(consultation);
+        return consultation;
+    }
+    
+    private void archived(String symptoms, LocalDateTime time) {
+        HealthConsultation consultation = new HealthConsultation(CHAT_ID, symptoms);
+        consultation.setId(new ObjectId().toHexString());
+        consultation.setConsultationTime(time);
+        archived(consultation);
+    }
+    
+    /**
+     * Adds the consultation to its monthly bucket, as {@link ConsultationArchiver} would.
+     */
+    private void archived(HealthConsultation consultation) {
+        LocalDateTime time = consultation.getConsultationTime();
+        int month = time.getYear() * 100 + time.getMonthValue();
+        ConsultationBucket bucket = buckets.stream()
+                .filter(candidate -> candidate.getMonth() == month)
+                .findFirst()
+                .orElseGet(() -> {
+                    ConsultationBucket created = new ConsultationBucket();
+                    created.setId(ConsultationBucket.bucketId(CHAT_ID, month));
+                    created.setChatId(CHAT_ID);
+                    created.setMonth(month);
+                    created.setFirstTime(time);
+                    created.setLastTime(time);
+                    created.setEntries(new ArrayList<>());
+                    buckets.add(created);
+                    return created;
+                });
+        ConsultationBucket.Entry entry = new ConsultationBucket.Entry();
+        entry.setConsultationId(new ObjectId(consultation.getId()));
+        entry.setConsultationTime(time);
+        entry.setSymptoms(consultation.getSymptoms());
+        bucket.getEntries().add(entry);
+        bucket.setFirstTime(time.isBefore(bucket.getFirstTime()) ? time : bucket.getFirstTime());
+        bucket.setLastTime(time.isAfter(bucket.getLastTime()) ? time : bucket.getLastTime());
+    }
+    
+    private static List<String> symptoms(HealthHistoryService.HistoryPage page) {
+        return page.getConsultations().stream().map(HealthConsultation::getSymptoms).collect(Collectors.toList());
+    }
+    
+    private static Map<String, Object> fields(HealthConsultation consultation) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("_id", new ObjectId(consultation.getId()));
+        fields.put("chat_id", consultation.getChatId());
+        fields.put("consultation_time", consultation.getConsultationTime());
+        return fields;
+    }
+    
+    private static Map<String, Object> fields(ConsultationBucket bucket) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("_id", bucket.getId());
+        fields.put("chat_id", bucket.getChatId());
+        fields.put("month", bucket.getMonth());
+        fields.put("first_time", bucket.getFirstTime());
+        fields.put("last_time", bucket.getLastTime());
+        return fields;
+    }
+    
+    /**
+     * Applies the query's filter, sort and limit to {@code rows}.
+     */
+    static <T> List<T> run(Query query, List<T> rows, Function<T, Map<String, Object>> fields) {
+        Comparator<T> order = (a, b) -> 0;
+        for (Map.Entry<String, Object> sort : query.getSortObject().entrySet()) {
+            Comparator<T> byField = Comparator.comparing(row -> comparable(fields.apply(row).get(sort.getKey())));
+            order = order.thenComparing(((Number) sort.getValue()).intValue() < 0 ? byField.reversed() : byField);
+        }
+        return rows.stream()
+                .filter(row -> matches(query.getQueryObject(), fields.apply(row)))
+                .sorted(order)
+                .limit(query.getLimit() > 0 ? query.getLimit() : Long.MAX_VALUE)
+                .collect(Collectors.toList());
+    }
+    
+    private static boolean matches(Document filter, Map<String, Object> row) {
+        for (Map.Entry<String, Object> condition : filter.entrySet()) {
+            if (condition.getKey().equals("$or")) {
+                if (((List<?>) condition.getValue()).stream().noneMatch(branch -> matches((Document) branch, row))) {
+                    return false;
+                }
+            } else if (condition.getValue() instanceof Document) {
+                Comparable<Object> value = comparable(row.get(condition.getKey()));
+                for (Map.Entry<String, Object> operator : ((Document) condition.getValue()).entrySet()) {
+                    int comparison = value.compareTo(operator.getValue());
+                    boolean holds;
+                    switch (operator.getKey()) {
+                        case "$lt": holds = comparison < 0; break;
+                        case "$lte": holds = comparison <= 0; break;
+                        case "$gt": holds = comparison > 0; break;
+                        case "$gte": holds = comparison >= 0; break;
+                        default: throw new IllegalArgumentException("Unsupported operator " + operator.getKey());
+                    }
+                    if (!holds) {
+                        return false;
+                    }
+                }
+            } else if (!condition.getValue().equals(row.get(condition.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Comparable<Object> comparable(Object value) {
+        return (Comparable<Object>) value;
+    }
+}
@@ -0,0 +1,94 @@
+package com.arogyasakhi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecommendationCacheTest {
+    
+    private RecommendationCache cache;
+    
+    @BeforeEach
+    void setUp() {
+        SeverityDetector detector = new SeverityDetector();
+        ReflectionTestUtils.setField(detector, "referralKeywords", List.of("doctor", "emergency", "hospital", "urgent"));
+        ReflectionTestUtils.setField(detector, "severityHeaders", List.of("severity level"));
+        ReflectionTestUtils.setField(detector, "lowKeywords", List.of("low", "mild"));
+        ReflectionTestUtils.setField(detector, "moderateKeywords", List.of("moderate", "medium"));
+        ReflectionTestUtils.setField(detector, "highKeywords", List.of("high", "severe"));
+        ReflectionTestUtils.setField(detector, "emergencyKeywords", List.of("emergency", "critical"));
+        detector.init();
+        
+        cache = new RecommendationCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", 2);
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(cache, "bypassEmergency", true);
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "severityDetector", detector);
+        cache.init();
+    }
+    
+    @Test
+    void punctuationCaseAndFillerWordsDoNotChangeTheKey() {
+        assertEquals("fever headache", RecommendationCache.normalizeSymptoms("I have a Fever,  and   headache!"));
+        assertEquals(cache.keyFor("Fever and headache!", null, "en"), cache.keyFor("fever headache", null, "en"));
+    }
+    
+    @Test
+    void durationsStayWithTheirSymptom() {
+        assertNotEquals(cache.keyFor("fever 3 days, cough 10 days", null, "en"),
+                cache.keyFor("fever 10 days, cough 3 days", null, "en"));
+    }
+    
+    @Test
+    void negationsStayWithTheirSymptom() {
+        assertNotEquals(cache.keyFor("no fever, headache", null, "en"),
+                cache.keyFor("fever, no headache", null, "en"));
+    }
+    
+    @Test
+    void repeatedWordsAreKept() {
+        assertEquals("pain chest pain", RecommendationCache.normalizeSymptoms("pain, chest pain"));
+    }
+    
+    @Test
+    void expiredEntriesAreMisses() {
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 0L);
+        cache.put("k", "Rest and fluids.");
+        
+        assertEquals(Optional.empty(), cache.get("k"));
+        assertEquals(0, cache.size());
+    }
+    
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.get("a");
+        cache.put("c", "C");
+        
+        assertEquals(Optional.of("A"), cache.get("a"));
+        assertEquals(Optional.empty(), cache.get("b"));
+        assertEquals(Optional.of("C"), cache.get("c"));
+    }
+    
+    @Test
+    void emergencyAnswersAreNeverCached() {
+        cache.put("detected", "🔍 SEVERITY LEVEL: Emergency\nGo to the hospital now.");
+        cache.put("flagged", "Structured answer", true);
+        cache.put("routine", "🔍 SEVERITY LEVEL: Mild\nRest and fluids.");
+        
+        assertEquals(Optional.empty(), cache.get("detected"));
+        assertEquals(Optional.empty(), cache.get("flagged"));
+        assertTrue(cache.get("routine").isPresent());
+    }
+}
@@ -0,0 +1,70 @@
+package com.arogyasakhi.service;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Golden-file tests for {@link TelegramFormatter#toHtmlMessages}: each
+ * {@code formatter/<case>.txt} is a Gemini answer, and {@code formatter/<case>.html} holds the
+ * expected messages separated by {@value #MESSAGE_BREAK} lines.
+ */
+class TelegramFormatterTest {
+    
+    private static final String PREFIX = "🩺 <b>HEALTH RECOMMENDATION</b>\n\n";
+    private static final String MESSAGE_BREAK = "----8<----";
+    private static final Pattern TAG = Pattern.compile("</?([bi])>");
+    
+    private final TelegramFormatter formatter = new TelegramFormatter();
+    
+    @ParameterizedTest(name = "{0} (limit {1})")
+    @CsvSource({
+            "english-answer, 4096",
+            "hindi-answer, 4096",
+            "section-split, 400",
+            "line-split, 200",
+            "hard-split, 300",
+    })
+    void matchesGoldenFile(String name, int limit) throws IOException {
+        List<String> messages = formatter.toHtmlMessages(PREFIX, read(name + ".txt"), limit);
+        
+        assertEquals(read(name + ".html"), String.join("\n" + MESSAGE_BREAK + "\n", messages) + "\n");
+        for (String message : messages) {
+            assertTrue(message.length() <= limit, () -> "message longer than " + limit + ": " + message);
+            assertTagsBalanced(message);
+        }
+    }
+    
+    private static void assertTagsBalanced(String message) {
+        String open = null;
+        Matcher tag = TAG.matcher(message);
+        while (tag.find()) {
+            boolean closing = tag.group().startsWith("</");
+            if (closing) {
+                assertEquals(tag.group(1), open, () -> "unbalanced tags in: " + message);
+                open = null;
+            } else {
+                assertEquals(null, open, () -> "nested tags in: " + message);
+                open = tag.group(1);
+            }
+        }
+        assertEquals(null, open, () -> "tag left open in: " + message);
+    }
+    
+    private static String read(String resource) throws IOException {
+        try (InputStream in = TelegramFormatterTest.class.getResourceAsStream("/formatter/" + resource)) {
+            assertNotNull(in, "missing test resource formatter/" + resource);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
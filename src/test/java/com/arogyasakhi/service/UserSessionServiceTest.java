@@ -0,0 +1,155 @@
+package com.arogyasakhi.service;
+
+import com.arogyasakhi.model.UserSession;
+import com.arogyasakhi.repository.UserSessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The write-behind session cache against a stubbed MongoDB: which entries stay dirty across
+ * flushes, which may be evicted, and what is written on shutdown. Flushes are run directly; the
+ * scheduled flusher is set to an interval that never fires during a test.
+ */
+class UserSessionServiceTest {
+    
+    private final List<Update> upserts = new ArrayList<>();
+    private MongoTemplate mongoTemplate;
+    private BulkOperations bulk;
+    private UserSessionService service;
+    
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        bulk = mock(BulkOperations.class);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserSession.class)))
+                .thenAnswer(invocation -> {
+                    Query query = invocation.getArgument(0);
+                    return new UserSession((Long) query.getQueryObject().get("chat_id"));
+                });
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(UserSession.class))).thenReturn(bulk);
+        when(bulk.upsert(any(Query.class), any(Update.class))).thenAnswer(invocation -> {
+            upserts.add(invocation.getArgument(1));
+            return bulk;
+        });
+        
+        service = new UserSessionService();
+        ReflectionTestUtils.setField(service, "userSessionRepository", mock(UserSessionRepository.class));
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        // One session per segment, so two chats of the same segment compete for its only slot
+        ReflectionTestUtils.setField(service, "maxSize", 16);
+        ReflectionTestUtils.setField(service, "idleTimeoutMinutes", 30L);
+        ReflectionTestUtils.setField(service, "flushIntervalMs", 3_600_000L);
+        ReflectionTestUtils.setField(service, "flushBatchSize", 500);
+        service.init();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+    
+    @Test
+    void changeDuringInFlightFlushStaysDirty() {
+        service.updateUserState(1L, "AWAITING_NAME");
+        when(bulk.execute()).thenAnswer(invocation -> {
+            // The user answers while the first write is on its way to MongoDB
+            service.updateUserState(1L, "AWAITING_AGE");
+            return null;
+        }).thenReturn(null);
+        
+        flush();
+        assertEquals(1, dirtyCount());
+        assertEquals("AWAITING_NAME", upserts.get(0).getUpdateObject().get("$set", Document.class).get("current_state"));
+        
+        flush();
+        assertEquals(0, dirtyCount());
+        assertEquals("AWAITING_AGE", upserts.get(1).getUpdateObject().get("$set", Document.class).get("current_state"));
+    }
+    
+    @Test
+    void failedBulkKeepsEntriesDirtyAndRetriesThem() {
+        service.updateUserLanguage(1L, "hi");
+        service.updateUserState(2L, "AWAITING_NAME");
+        when(bulk.execute()).thenThrow(new IllegalStateException("no primary")).thenReturn(null);
+        
+        flush();
+        assertEquals(2, dirtyCount());
+        assertEquals(2, upserts.size());
+        
+        flush();
+        assertEquals(0, dirtyCount());
+        assertEquals(4, upserts.size());
+    }
+    
+    @Test
+    void dirtyEntriesAreNeverEvicted() {
+        long[] sameSegment = chatsInOneSegment();
+        service.updateUserState(sameSegment[0], "AWAITING_NAME");
+        
+        // Loading a second chat into the full segment may only evict a clean session
+        service.getUserLanguage(sameSegment[1]);
+        assertNotNull(service.peek(sameSegment[0]));
+        
+        ReflectionTestUtils.setField(service, "idleTimeoutMinutes", 0L);
+        ReflectionTestUtils.invokeMethod(service, "evictIdle");
+        assertNotNull(service.peek(sameSegment[0]));
+        
+        // Once written back it is an ordinary idle session
+        when(bulk.execute()).thenReturn(null);
+        flush();
+        ReflectionTestUtils.invokeMethod(service, "evictIdle");
+        assertNull(service.peek(sameSegment[0]));
+    }
+    
+    @Test
+    void shutdownFlushesEverything() {
+        when(bulk.execute()).thenReturn(null);
+        for (long chatId = 1; chatId <= 50; chatId++) {
+            service.updateUserState(chatId, "AWAITING_NAME");
+        }
+        
+        service.shutdown();
+        
+        assertEquals(0, dirtyCount());
+        assertEquals(50, upserts.size());
+    }
+    
+    private void flush() {
+        ReflectionTestUtils.invokeMethod(service, "flush");
+    }
+    
+    private int dirtyCount() {
+        Integer count = ReflectionTestUtils.invokeMethod(service, "dirtyCount");
+        return count;
+    }
+    
+    private long[] chatsInOneSegment() {
+        Object first = ReflectionTestUtils.invokeMethod(service, "segmentFor", 1L);
+        for (long chatId = 2; ; chatId++) {
+            if (ReflectionTestUtils.invokeMethod(service, "segmentFor", chatId) == first) {
+                return new long[] {1L, chatId};
+            }
+        }
+    }
+}